@@ -0,0 +1,170 @@
+package com.nlp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ *  A <code>Lexer</code> front-end that reads UTF-8 encoded bytes directly from a <code>ByteBuffer</code>,
+ *  typically a memory-mapped file, instead of going through an <code>InputStreamReader</code>.
+ *
+ *  Bytes are decoded straight into the lexer's character buffer: runs of ASCII are copied with a plain
+ *  widening loop, and only non-ASCII sequences go through UTF-8 decoding. Malformed sequences are replaced
+ *  with U+FFFD, as <code>InputStreamReader</code> would, so the produced tokens and sentence numbers are the
+ *  same as lexing the decoded text with a regular <code>Lexer</code>.
+ *
+ *  Files larger than a single mapping are lexed through consecutive mapped windows.
+ */
+
+public class ByteBufferLexer extends Lexer {
+
+	// the largest region mapped at once
+	static final long WINDOW_SIZE = 1L << 30;
+
+	private static final char REPLACEMENT = '\ufffd';
+
+	private ByteBuffer buffer;
+
+	// the mapped file, when lexing in windows, and the file offset at which the current window starts
+	private FileChannel channel;
+	private long windowStart;
+	private long windowSize;
+	private long end;
+
+	/**
+	 * Lex the bytes between the buffer's position and limit
+	 *
+	 * @param buffer
+	 */
+	public ByteBufferLexer(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Lex the file behind the given channel by mapping it into memory.
+	 * The channel may be closed once lexing is done.
+	 *
+	 * @param channel
+	 * @throws IOException
+	 */
+	public ByteBufferLexer(FileChannel channel) throws IOException {
+		this(channel, 0, channel.size());
+	}
+	
+	/**
+	 * Lex the region [start, end) of the file behind the given channel
+	 * 
+	 * @param channel
+	 * @param start
+	 * @param end
+	 * @throws IOException
+	 */
+	public ByteBufferLexer(FileChannel channel, long start, long end) throws IOException {
+		this(channel, start, end, WINDOW_SIZE);
+	}
+	
+	ByteBufferLexer(FileChannel channel, long start, long end, long windowSize) throws IOException {
+		this.channel = channel;
+		this.end = end;
+		this.windowSize = windowSize;
+		this.buffer = map(start);
+	}
+
+	private ByteBuffer map(long position) throws IOException {
+		windowStart = position;
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, end - position));
+	}
+
+	/** Maps the next window, starting at the current position, so that a sequence split by the end
+	 *  of the current window is fully contained in the new one.
+	 *
+	 *  @return false if there is nothing more to map
+	 */
+
+	private boolean remap() throws IOException {
+		if(channel==null)return false;
+		long position = windowStart + buffer.position();
+		if(position>=end || (buffer.hasRemaining() && position + buffer.remaining() >= end))return false;
+		buffer = map(position);
+		return true;
+	}
+
+	protected int read(char[] cbuf, int off, int len) throws IOException {
+		int n = 0;
+
+		while(n<len) {
+			int pos = buffer.position();
+			int limit = buffer.limit();
+
+			// ASCII fast path
+			while(n<len && pos<limit) {
+				byte b = buffer.get(pos);
+				if(b<0)break;
+				cbuf[off + n++] = (char) b;
+				pos++;
+			}
+
+			// decode a single non-ASCII sequence
+			if(n<len && pos<limit) {
+				int lead = buffer.get(pos) & 0xff;
+				int need = lead>=0xf0 ? 4 : lead>=0xe0 ? 3 : lead>=0xc0 ? 2 : 1;
+
+				if(pos + need > limit && channel!=null) {
+					buffer.position(pos);
+					if(remap())continue;
+				}
+
+				int cp = decode(pos, lead, need, limit);
+				if(cp<0) {            // malformed, replace the malformed bytes with a single character
+					cbuf[off + n++] = REPLACEMENT;
+					pos -= cp;
+				} else if(cp>=0x10000) {
+					if(n+2>len) {
+						buffer.position(pos);
+						break;
+					}
+					cbuf[off + n++] = Character.highSurrogate(cp);
+					cbuf[off + n++] = Character.lowSurrogate(cp);
+					pos += need;
+				} else {
+					cbuf[off + n++] = (char) cp;
+					pos += need;
+				}
+			}
+
+			buffer.position(pos);
+			if(pos==limit && !remap())break;
+		}
+
+		return n==0 ? -1 : n;
+	}
+
+	/** Decodes the UTF-8 sequence starting at pos
+	 *
+	 * @return the code point, or minus the number of bytes to skip if the sequence is malformed
+	 *         (the same lengths the JDK decoder reports)
+	 */
+
+	private int decode(int pos, int lead, int need, int limit) {
+		if(need==1 || lead<0xc2 || lead>0xf4)return -1;
+		int available = Math.min(need, limit - pos);
+		if(available<2)return -1;
+
+		int b1 = buffer.get(pos+1) & 0xff;
+		if((b1 & 0xc0)!=0x80)return -1;
+		if(need==2)return ((lead & 0x1f) << 6) | (b1 & 0x3f);
+
+		// reject overlong encodings, surrogates and code points above U+10FFFF
+		if((lead==0xe0 && b1<0xa0) || (lead==0xed && b1>0x9f) || (lead==0xf0 && b1<0x90) || (lead==0xf4 && b1>0x8f))return -1;
+
+		if(available<3)return -2;
+		int b2 = buffer.get(pos+2) & 0xff;
+		if((b2 & 0xc0)!=0x80)return -2;
+		if(need==3)return ((lead & 0x0f) << 12) | ((b1 & 0x3f) << 6) | (b2 & 0x3f);
+
+		if(available<4)return -3;
+		int b3 = buffer.get(pos+3) & 0xff;
+		if((b3 & 0xc0)!=0x80)return -3;
+		return ((lead & 0x07) << 18) | ((b1 & 0x3f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f);
+	}
+}
@@ -0,0 +1,171 @@
+package com.nlp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nlp.Tasks.Task;
+import com.nlp.schema.Document;
+
+
+/**
+ *  Hands the documents downstream in the order their tasks complete, rather than in the order the tasks were
+ *  submitted as <code>Tasks.waitForCompletion()</code> does : a slow document doesn't hold back the ones after
+ *  it, and a consumer that writes each document out and drops it never holds the whole corpus in memory.
+ *
+ *  The tasks are submitted to an <code>ExecutorCompletionService</code>, each wrapped so its outcome (the
+ *  document or the exception) comes back with the task. A failed task is recorded as a <code>DocumentFailure</code>
+ *  and counted, instead of being dropped. The documents are taken from a single thread, by <code>take()</code> or
+ *  <code>drain()</code>; the counters can be read from any thread.
+ */
+
+public class Completions {
+
+	/** The outcome of a task : its document, or the exception it failed with */
+
+	static class Outcome {
+		final Task task;
+		final Document document;
+		final Exception error;
+
+		Outcome(Task task, Document document, Exception error) {
+			this.task = task;
+			this.document = document;
+			this.error = error;
+		}
+	}
+
+	final CompletionService<Outcome> service;
+	final AtomicInteger submitted = new AtomicInteger();
+	final AtomicInteger completed = new AtomicInteger();
+	final AtomicInteger failed = new AtomicInteger();
+	final List<DocumentFailure> failures = Collections.synchronizedList(new ArrayList<DocumentFailure>());
+	final AtomicLong start = new AtomicLong(), firstResult = new AtomicLong();
+	int taken;
+
+	/**
+	 * @param executor  the executor running the tasks
+	 */
+
+	public Completions(Executor executor) {
+		this.service = new ExecutorCompletionService<Outcome>(executor);
+	}
+
+	/** Submits the tasks */
+
+	public void submitTasks(List<Task> tasks) {
+		start.compareAndSet(0, System.nanoTime());
+		for(final Task task : tasks) {
+			service.submit(new Callable<Outcome>() {
+				public Outcome call() {
+					try {
+						return new Outcome(task, task.call(), null);
+					} catch(Exception e) {
+						return new Outcome(task, null, e);
+					}
+				}
+			});
+			submitted.incrementAndGet();
+		}
+	}
+
+	/** Waits for the next task to complete, recording the failed tasks on the way
+	 *
+	 * @return the document of the next task to complete successfully, or null once all the submitted tasks are taken
+	 * @throws InterruptedException
+	 */
+
+	public Document take() throws InterruptedException {
+		while(taken<submitted.get()) {
+			Outcome outcome = next();
+			Document document = record(outcome);
+			if(document!=null)return document;
+		}
+		return null;
+	}
+
+	/** Hands each document to the listener as its task completes, and each failure as it happens, until all
+	 *  the submitted tasks are taken
+	 *
+	 * @param listener
+	 * @return the number of documents completed successfully
+	 * @throws InterruptedException
+	 */
+
+	public int drain(ResultListener listener) throws InterruptedException {
+		int count = 0;
+		while(taken<submitted.get()) {
+			Outcome outcome = next();
+			Document document = record(outcome);
+			if(document!=null) {
+				listener.documentCompleted(document);
+				count++;
+			} else {
+				listener.documentFailed(failures.get(failures.size() - 1));
+			}
+		}
+		return count;
+	}
+
+	private Outcome next() throws InterruptedException {
+		try {
+			return service.take().get();
+		} catch(ExecutionException e) {
+			throw new IllegalStateException(e.getCause());   // only an Error escapes the outcome of a task
+		}
+	}
+
+	/** @return the document of the outcome, or null if the task failed, which is then recorded */
+
+	private Document record(Outcome outcome) {
+		taken++;
+		firstResult.compareAndSet(0, System.nanoTime());
+		if(outcome.error==null) {
+			completed.incrementAndGet();
+			return outcome.document;
+		}
+		failures.add(new DocumentFailure(outcome.task.name, outcome.error));
+		failed.incrementAndGet();
+		return null;
+	}
+
+	/** @return the number of tasks submitted */
+
+	public int getSubmitted() {
+		return submitted.get();
+	}
+
+	/** @return the number of tasks that completed successfully, and were taken */
+
+	public int getCompleted() {
+		return completed.get();
+	}
+
+	/** @return the number of tasks that failed, and were taken */
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	/** @return the failures taken so far */
+
+	public List<DocumentFailure> getFailures() {
+		synchronized(failures) {
+			return new ArrayList<DocumentFailure>(failures);
+		}
+	}
+
+	/** @return the time from the first submission to the first task taken, in nanoseconds, or -1 if none was taken */
+
+	public long getTimeToFirstResult() {
+		long first = firstResult.get();
+		return first==0 ? -1 : first - start.get();
+	}
+}
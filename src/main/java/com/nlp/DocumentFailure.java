@@ -0,0 +1,32 @@
+package com.nlp;
+
+/**
+ *  The record of a document whose task failed : the name of the document, and the exception it failed with.
+ */
+
+public class DocumentFailure {
+
+	final String name;
+	final Throwable cause;
+
+	public DocumentFailure(String name, Throwable cause) {
+		this.name = name;
+		this.cause = cause;
+	}
+
+	/** @return the name of the document */
+
+	public String getName() {
+		return name;
+	}
+
+	/** @return the exception the task failed with */
+
+	public Throwable getCause() {
+		return cause;
+	}
+
+	public String toString() {
+		return name + " : " + cause;
+	}
+}
@@ -0,0 +1,13 @@
+package com.nlp;
+
+import com.nlp.schema.Document;
+
+/**
+ *  Notified of each document once a task has parsed and tagged it, e.g. to index the documents
+ *  as the tasks complete. Called from the tasks' threads, so implementations must be thread-safe.
+ */
+
+public interface DocumentListener {
+
+	void documentCompleted(Document document);
+}
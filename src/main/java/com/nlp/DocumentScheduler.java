@@ -0,0 +1,264 @@
+package com.nlp;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+import com.nlp.Tasks.MappedFileTask;
+import com.nlp.Tasks.Task;
+import com.nlp.schema.ColumnarDocument;
+import com.nlp.schema.Document;
+import com.nlp.schema.Documents;
+
+
+/**
+ *  Runs the tasks on a work-stealing <code>ForkJoinPool</code>, largest document first, splitting the large
+ *  documents so no single document keeps one worker busy while the others are idle at the end of the run.
+ *
+ *  The tasks are submitted by decreasing size (the zip entry's or the file's size), so the longest documents
+ *  start first and the small ones fill in the gaps at the end. A document larger than the split size is parsed
+ *  and then tagged as separate steps : a memory-mapped file of more than four split sizes is lexed in chunks
+ *  on the same pool, and the sentences of the document are tagged in ranges forked as subtasks, which the idle workers
+ *  steal. Streaming tasks are never split.
+ *
+ *  Each run reports its makespan (the wall time from the first submission to the last completion) and the
+ *  CPU time of each worker, so it can be compared with a fixed pool on the same tasks.
+ */
+
+public class DocumentScheduler {
+
+	public static final long DEFAULT_SPLIT_SIZE = 4*1024*1024;
+
+	/** The minimum number of sentences of a tagging subtask */
+
+	static final int MIN_SENTENCES = 64;
+
+	/** By decreasing size */
+
+	static final Comparator<Task> BY_SIZE = new Comparator<Task>() {
+		public int compare(Task a, Task b) {
+			return a.size==b.size ? 0 : a.size>b.size ? -1 : 1;
+		}
+	};
+
+
+	/** The makespan of a run, and the CPU time of each of its workers */
+
+	public static class Report {
+		final long makespan;
+		final long[] workerTimes;
+
+		/**
+		 * @param makespan     the wall time of the run, in nanoseconds
+		 * @param workerTimes  the CPU time of each worker, in nanoseconds
+		 */
+
+		public Report(long makespan, long[] workerTimes) {
+			this.makespan = makespan;
+			this.workerTimes = workerTimes;
+		}
+
+		/** @return the wall time of the run, in nanoseconds */
+
+		public long getMakespan() {
+			return makespan;
+		}
+
+		public int getWorkerCount() {
+			return workerTimes.length;
+		}
+
+		/** @return the CPU time of the given worker, in nanoseconds */
+
+		public long getWorkerTime(int worker) {
+			return workerTimes[worker];
+		}
+
+		/** @return the fraction of the makespan the given worker was busy */
+
+		public double getUtilization(int worker) {
+			return makespan==0 ? 0 : (double) workerTimes[worker]/makespan;
+		}
+
+		/** @return the fraction of the makespan the workers were busy, on average */
+
+		public double getUtilization() {
+			if(workerTimes.length==0)return 0;
+			double sum = 0;
+			for(int i=0;i<workerTimes.length;i++)sum += getUtilization(i);
+			return sum/workerTimes.length;
+		}
+
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("makespan %.1f ms, %d workers, utilization %.0f%% [", makespan/1e6, workerTimes.length, 100*getUtilization()));
+			for(int i=0;i<workerTimes.length;i++)sb.append(i>0 ? " " : "").append(String.format("%.0f%%", 100*getUtilization(i)));
+			return sb.append("]").toString();
+		}
+	}
+
+
+	/** A worker of the pool, keeping its CPU time once it terminates */
+
+	static class Worker extends ForkJoinWorkerThread {
+		final List<Long> cpuTimes;
+
+		Worker(ForkJoinPool pool, List<Long> cpuTimes) {
+			super(pool);
+			this.cpuTimes = cpuTimes;
+		}
+
+		protected void onTermination(Throwable exception) {
+			cpuTimes.add(cpuTime());
+			super.onTermination(exception);
+		}
+	}
+
+
+	/** Parses and tags a document, splitting it if it is larger than the split size */
+
+	class DocumentJob extends RecursiveTask<Document> {
+		private static final long serialVersionUID = 1L;
+
+		final Task task;
+
+		DocumentJob(Task task) {
+			this.task = task;
+		}
+
+		protected Document compute() {
+			try {
+				if(task.size<=splitSize || !task.isSplittable())return task.call();
+
+				task.begin();
+				Document document = task.parse();
+				int sentences = document.getSentences().size();
+				int grain = Math.max(MIN_SENTENCES, sentences/(4*parallelism));
+				new SentenceRange(task, document, 0, sentences, grain).invoke();
+				document.setDictionaryVersion(task.dictionary.getVersion());
+				return task.completed(document);
+			} catch(RuntimeException e) {
+				throw e;
+			} catch(Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+
+	/** Tags the sentences [from, to) of a document, forking its halves while it is larger than the grain. The
+	 *  ranges of a <code>ColumnarDocument</code> record their tags on their own, and append them to the document
+	 *  once tagged, so the document's tags stay in word order. */
+
+	static class SentenceRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		final Task task;
+		final Document document;
+		final int from, to;
+		final int grain;
+
+		SentenceRange(Task task, Document document, int from, int to, int grain) {
+			this.task = task;
+			this.document = document;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		protected void compute() {
+			if(to - from<=grain) {
+				if(document instanceof ColumnarDocument) {
+					ColumnarDocument.RangeTags tags = ((ColumnarDocument) document).tagRange(from, to);
+					task.tag(tags.getSentences());
+					tags.commit();
+				} else task.tag(document.getSentences().subList(from, to));
+				return;
+			}
+			int middle = (from + to)>>>1;
+			invokeAll(new SentenceRange(task, document, from, middle, grain), new SentenceRange(task, document, middle, to, grain));
+		}
+	}
+
+
+	int parallelism;
+	long splitSize;
+	Report report;
+
+	public DocumentScheduler() {
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_SPLIT_SIZE);
+	}
+
+	/**
+	 * @param parallelism  the number of workers
+	 * @param splitSize    the size of the documents that are split, and of the chunks a large file is lexed in
+	 */
+
+	public DocumentScheduler(int parallelism, long splitSize) {
+		this.parallelism = parallelism;
+		this.splitSize = splitSize;
+	}
+
+	/** Runs the tasks, largest first, and waits for their completion. The listener of each task is notified
+	 *  as it completes. A task that fails is reported and skipped, as in <code>Tasks.waitForCompletion</code>.
+	 *
+	 * @param tasks
+	 * @return the documents, in the order of the tasks
+	 * @throws InterruptedException
+	 */
+
+	public Documents run(List<Task> tasks) throws InterruptedException {
+		List<Task> ordered = new ArrayList<Task>(tasks);
+		Collections.sort(ordered, BY_SIZE);
+
+		final List<Long> cpuTimes = Collections.synchronizedList(new ArrayList<Long>());
+		ForkJoinPool pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				return new Worker(pool, cpuTimes);
+			}
+		}, null, false);
+
+		long start = System.nanoTime();
+		List<ForkJoinTask<Document>> jobs = new ArrayList<ForkJoinTask<Document>>();
+		for(Task task : ordered) {
+			if(task instanceof MappedFileTask)((MappedFileTask) task).setParallelParsing(pool, splitSize);
+			ForkJoinTask<Document> job = pool.submit(new DocumentJob(task));   // external submissions are taken in order
+			task.setFuture(job);
+			jobs.add(job);
+		}
+		// the failures are reported by waitForCompletion()
+		for(ForkJoinTask<Document> job : jobs)job.quietlyJoin();
+		long makespan = System.nanoTime() - start;
+
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+		long[] workerTimes = new long[cpuTimes.size()];
+		for(int i=0;i<workerTimes.length;i++)workerTimes[i] = cpuTimes.get(i);
+		report = new Report(makespan, workerTimes);
+
+		return Tasks.waitForCompletion(tasks);
+	}
+
+	/** @return the report of the last run, or null if there was none */
+
+	public Report getReport() {
+		return report;
+	}
+
+	/** @return the CPU time of the current thread in nanoseconds, or 0 if the JVM doesn't measure it */
+
+	static long cpuTime() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+}
@@ -1,19 +1,10 @@
 package com.nlp;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.ArrayList;
-import java.util.Enumeration;
-import java.util.HashSet;
+import java.io.File;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipEntry;
+import java.util.Map;
 import java.util.zip.ZipFile;
 
 import com.nlp.Tasks.Task;
@@ -21,8 +12,9 @@ import com.nlp.ner.NamedEntitiesTagger;
 import com.nlp.ner.NamedEntity;
 import com.nlp.schema.Document;
 import com.nlp.schema.Documents;
-import com.nlp.schema.Sentence;
-import com.nlp.schema.Token;
+import com.nlp.source.DocumentSource;
+import com.nlp.source.DocumentSources;
+import com.nlp.source.ZipDocumentSource;
 
 /**
  * 
@@ -36,27 +28,43 @@ import com.nlp.schema.Token;
 public class Driver {
 
 	public static void main(String s[]) throws Exception {
-		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()*2);
+		// Get a list of tasks. Each task is a file to parse from the zip file, or from the source 
+		// (zip, tar or gzip file, or directory) given as argument, opened when the task runs.
+		DocumentSource source = s.length>0 ? DocumentSources.open(new File(s[0])) : new ZipDocumentSource(new ZipFile("nlp_data.zip"), "nlp_data/", true);
+		List<Task> tasks = Tasks.getTasks(source, new NamedEntitiesTagger("NER.txt"));
 		
-		// Get a list of tasks. Each task is a file to parse from the zip file.
-		ZipFile zipFile = new ZipFile("nlp_data.zip");		
-		List<Task> tasks = Tasks.getTasksFromZip(zipFile, new NamedEntitiesTagger("NER.txt"));
 		
-		
-		// Submit the tasks to the executor service, and get futures
-		Tasks.submitTasks(executor, tasks);
-				
-		// wait for the tasks to complete
-		Documents documents = Tasks.waitForCompletion(tasks);
+		// Run the tasks largest first on a work-stealing pool (reporting its makespan and utilization with -Dnlp.report=true),
+		// or with -Dnlp.execution=threads on a (virtual) thread each, for slow sources, and wait for them to complete, counting the named entities of each document as its task completes
+		// The counts of each document are kept by document rather than by name, as two sources may have documents
+		// of the same name
+		final EntityAggregator aggregator = new EntityAggregator();
+		final Map<Document, Map<NamedEntity, Long>> counts = Collections.synchronizedMap(new IdentityHashMap<Document, Map<NamedEntity, Long>>());
+		DocumentListener listener = new DocumentListener() {
+			public void documentCompleted(Document document) {
+				counts.put(document, aggregator.addDocument(document));
+			}
+		};
+		Documents documents;
+		if("threads".equals(System.getProperty("nlp.execution"))) {
+			VirtualTaskRunner runner = new VirtualTaskRunner();
+			runner.submitTasks(tasks, listener);
+			documents = Tasks.waitForCompletion(tasks);
+			runner.shutdown(Long.MAX_VALUE);
+		} else {
+			for(Task task : tasks)task.setListener(listener);
+			DocumentScheduler scheduler = new DocumentScheduler();
+			documents = scheduler.run(tasks);
+			if(Boolean.getBoolean("nlp.report"))System.err.println("Scheduler : " + scheduler.getReport());
+		}
 		
 		System.out.println("Recognized named entities :");
-		for(Document document : documents.getDocuments())printNamedEntities(document);		
+		for(Document document : documents.getDocuments())printNamedEntities(counts.get(document));		
 
 		System.out.println("\nDocuments xml representation :\n");
 		printOutDocuments(documents);
 
-		executor.shutdown();
-		zipFile.close();
+		source.close();
 	}
 	
 	private static void printOutDocuments(Documents documents) {
@@ -65,17 +73,9 @@ public class Driver {
 		System.out.println(sb.toString());		
 	}
 	
-	private static void printNamedEntities(Document doc) {
-		HashSet<NamedEntity> set = new HashSet<NamedEntity>();
-		
-		for(Sentence sentence : doc.getSentences()){
-			for(Token word : sentence.getWords()) {
-				if(word.getNamedEntities()!=null) {
-					for(NamedEntity entity : word.getNamedEntities())set.add(entity);
-				}
-			}
-		}
-		
-		for(NamedEntity entity : set)System.out.println(entity);
+	/** Prints the named entities of the document, most mentioned first */
+	
+	private static void printNamedEntities(Map<NamedEntity, Long> counts) {
+		for(EntityAggregator.EntityCount count : EntityAggregator.topK(counts, Integer.MAX_VALUE))System.out.println(count.getEntity());
 	}	
 }
@@ -0,0 +1,226 @@
+package com.nlp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nlp.ner.NamedEntity;
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
+import com.nlp.schema.Token;
+
+
+/**
+ *  Counts the mentions of the named entities, per document and in the whole corpus, as the tasks complete.
+ *
+ *  Each document is counted on its own thread (e.g. as a <code>DocumentListener</code> of the tasks), in a
+ *  local map, and its counts are then added to the corpus counts, which are <code>LongAdder</code>s in a
+ *  concurrent map, so threads adding documents at the same time rarely contend. Queries read the counts
+ *  directly, without going over the documents again.
+ *
+ *  A mention is a run of consecutive tokens of a sentence tagged with the entity, which counts as many
+ *  mentions as the entity's words fit in it : <code>Carl Benjamin Boyer</code> is one mention of a three word
+ *  entity, <code>Boyer</code> alone (an inexact match) too, and <code>Bob Bob</code> two mentions of Bob.
+ *  Entities are counted by value, so the same entity in two snapshots of the dictionary is counted once.
+ */
+
+public class EntityAggregator implements DocumentListener {
+
+	/** The number of mentions of a named entity */
+
+	public static class EntityCount {
+		final NamedEntity entity;
+		final long count;
+
+		EntityCount(NamedEntity entity, long count) {
+			this.entity = entity;
+			this.count = count;
+		}
+
+		public NamedEntity getEntity() {
+			return entity;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public String toString() {
+			return entity + "=" + count;
+		}
+	}
+
+	/** By decreasing count, then by name */
+
+	static final Comparator<EntityCount> BY_COUNT = new Comparator<EntityCount>() {
+		public int compare(EntityCount a, EntityCount b) {
+			if(a.count!=b.count)return a.count>b.count ? -1 : 1;
+			return a.entity.toString().compareTo(b.entity.toString());
+		}
+	};
+
+	final ConcurrentMap<NamedEntity, LongAdder> mentions = new ConcurrentHashMap<NamedEntity, LongAdder>();
+	final ConcurrentMap<NamedEntity, LongAdder> documents = new ConcurrentHashMap<NamedEntity, LongAdder>();
+	final ConcurrentMap<String, Map<NamedEntity, Long>> documentMentions = new ConcurrentHashMap<String, Map<NamedEntity, Long>>();
+
+	public void documentCompleted(Document document) {
+		addDocument(document);
+	}
+
+	/** Counts the mentions of the document. A document with the same name as a previous one replaces its
+	 *  per document counts, and adds to the corpus counts.
+	 *
+	 * @param document
+	 * @return the number of mentions of each entity in the document
+	 */
+
+	public Map<NamedEntity, Long> addDocument(Document document) {
+		Map<NamedEntity, Long> counts = new HashMap<NamedEntity, Long>();
+
+		// the entities of the previous token and the length of their current runs, and those of the current token,
+		// swapped at each tagged token
+		Map<NamedEntity, Integer> runs = new HashMap<NamedEntity, Integer>();
+		Map<NamedEntity, Integer> next = new HashMap<NamedEntity, Integer>();
+		for(Sentence sentence : document.getSentences()) {
+			runs.clear();
+			for(Token token : sentence.getWords()) {
+				List<NamedEntity> entities = token.getNamedEntities();
+				if(entities==null) {
+					runs.clear();
+					continue;
+				}
+
+				next.clear();
+				for(NamedEntity entity : entities) {
+					if(next.containsKey(entity))continue;
+					Integer run = runs.get(entity);
+					int length = run==null ? 1 : run + 1;
+					next.put(entity, length);
+					if((length - 1) % entity.size()==0)add(counts, entity, 1);   // the run starts a new mention
+				}
+				Map<NamedEntity, Integer> swap = runs;
+				runs = next;
+				next = swap;
+			}
+		}
+
+		addCounts(document.getName(), counts);
+		return counts;
+	}
+
+	/** Adds the mentions of a document counted elsewhere, e.g. by another process. A document with the same
+	 *  name as a previous one replaces its per document counts, and adds to the corpus counts.
+	 *
+	 * @param document  the name of the document
+	 * @param counts    the number of mentions of each entity in the document
+	 */
+
+	public void addCounts(String document, Map<NamedEntity, Long> counts) {
+		for(Map.Entry<NamedEntity, Long> entry : counts.entrySet()) {
+			adder(mentions, entry.getKey()).add(entry.getValue());
+			adder(documents, entry.getKey()).increment();
+		}
+		documentMentions.put(document, Collections.unmodifiableMap(counts));
+	}
+
+	private static void add(Map<NamedEntity, Long> counts, NamedEntity entity, long count) {
+		Long previous = counts.get(entity);
+		counts.put(entity, previous==null ? count : previous + count);
+	}
+
+	private static LongAdder adder(ConcurrentMap<NamedEntity, LongAdder> map, NamedEntity entity) {
+		LongAdder adder = map.get(entity);
+		if(adder==null) {
+			LongAdder existing = map.putIfAbsent(entity, adder = new LongAdder());
+			if(existing!=null)adder = existing;
+		}
+		return adder;
+	}
+
+	/** @return the number of mentions of the entity in the corpus */
+
+	public long getCount(NamedEntity entity) {
+		LongAdder adder = mentions.get(entity);
+		return adder==null ? 0 : adder.sum();
+	}
+
+	/** @return the number of documents mentioning the entity */
+
+	public long getDocumentCount(NamedEntity entity) {
+		LongAdder adder = documents.get(entity);
+		return adder==null ? 0 : adder.sum();
+	}
+
+	/** @return the number of mentions of the entity in the given document */
+
+	public long getCount(String document, NamedEntity entity) {
+		Long count = getCounts(document).get(entity);
+		return count==null ? 0 : count;
+	}
+
+	/** @return the number of mentions of each entity in the given document, empty if the document wasn't added */
+
+	public Map<NamedEntity, Long> getCounts(String document) {
+		Map<NamedEntity, Long> counts = documentMentions.get(document);
+		return counts==null ? Collections.<NamedEntity, Long>emptyMap() : counts;
+	}
+
+	/** @return the names of the documents added */
+
+	public List<String> getDocuments() {
+		return new ArrayList<String>(documentMentions.keySet());
+	}
+
+	/** @return the k most mentioned entities of the corpus, by decreasing count (then by name) */
+
+	public List<EntityCount> topK(int k) {
+		PriorityQueue<EntityCount> top = queue(k);
+		for(Map.Entry<NamedEntity, LongAdder> entry : mentions.entrySet())offer(top, new EntityCount(entry.getKey(), entry.getValue().sum()), k);
+		return sorted(top);
+	}
+
+	/** @return the k most mentioned entities of the given document, by decreasing count (then by name) */
+
+	public List<EntityCount> topK(String document, int k) {
+		return topK(getCounts(document), k);
+	}
+
+	/** @return the k most mentioned entities of the given counts, e.g. of a document as returned by
+	 *          <code>addDocument()</code>, by decreasing count (then by name) */
+
+	public static List<EntityCount> topK(Map<NamedEntity, Long> counts, int k) {
+		PriorityQueue<EntityCount> top = queue(k);
+		for(Map.Entry<NamedEntity, Long> entry : counts.entrySet())offer(top, new EntityCount(entry.getKey(), entry.getValue()), k);
+		return sorted(top);
+	}
+
+	/** @return a queue ordered by increasing count, i.e. with the worst count at its head */
+
+	private static PriorityQueue<EntityCount> queue(int k) {
+		return new PriorityQueue<EntityCount>(Math.max(1, Math.min(k, 1024)), Collections.reverseOrder(BY_COUNT));
+	}
+
+	/** Keeps the k best counts in the queue, whose head is the worst of them */
+
+	private static void offer(PriorityQueue<EntityCount> top, EntityCount count, int k) {
+		if(k<=0)return;
+		if(top.size()<k)top.add(count);
+		else if(BY_COUNT.compare(count, top.peek())<0) {
+			top.poll();
+			top.add(count);
+		}
+	}
+
+	private static List<EntityCount> sorted(PriorityQueue<EntityCount> top) {
+		List<EntityCount> ret = new ArrayList<EntityCount>(top);
+		Collections.sort(ret, BY_COUNT);
+		return ret;
+	}
+}
@@ -0,0 +1,190 @@
+package com.nlp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
+import com.nlp.schema.SymbolTable;
+
+
+/**
+ * Keeps a parsed and tagged <code>Document</code> up to date with edits of its text.
+ *
+ * The text is divided into segments starting at clean sentence boundaries, where lexing can restart
+ * (see <code>WordSpan.getSentenceStart()</code>). An edit re-lexes from the last segment starting before it,
+ * and stops as soon as the lexer reaches a clean sentence start that is also the (shifted) start of an old
+ * segment after the edit : from there on the old sentences are unchanged, apart from their numbers.
+ * Only the re-lexed sentences are replaced in the document and tagged, the following ones are renumbered.
+ */
+
+public class IncrementalParser {
+
+	/** Sentences parsed from a clean restart point in the text */
+
+	static class Segment {
+		int start;
+		int sentenceNumber;
+		List<Sentence> sentences = new ArrayList<Sentence>();
+
+		Segment(int start, int sentenceNumber) {
+			this.start = start;
+			this.sentenceNumber = sentenceNumber;
+		}
+	}
+
+	StringBuilder text;
+	Document document;
+	NamedEntitiesTagger tagger;
+	SymbolTable symbols;
+	List<Segment> segments = new ArrayList<Segment>();
+
+	/** Parses and tags the given text
+	 *
+	 * @param documentName
+	 * @param text
+	 * @param tagger
+	 */
+
+	public IncrementalParser(String documentName, CharSequence text, NamedEntitiesTagger tagger) {
+		this.text = new StringBuilder(text);
+		this.document = new Document(documentName);
+		this.tagger = tagger;
+		this.symbols = tagger.getSymbolTable();
+
+		segments.add(new Segment(0, 0));
+		reparse(0, 0, 0);
+	}
+
+	public Document getDocument() {
+		return document;
+	}
+
+	public String getText() {
+		return text.toString();
+	}
+
+	/** Applies an edit to the text, and updates the document
+	 *
+	 * @param offset   where the edit starts
+	 * @param removed  the number of characters removed at offset
+	 * @param inserted the text inserted at offset
+	 * @return the sentences that were re-parsed and re-tagged
+	 */
+
+	public List<Sentence> edit(int offset, int removed, CharSequence inserted) {
+		if(offset<0 || removed<0 || offset + removed > text.length())throw new IndexOutOfBoundsException("Edit [" + offset + "," + (offset + removed) + ") outside of text of length " + text.length());
+
+		text.replace(offset, offset + removed, inserted.toString());
+
+		// the last segment starting strictly before the edit, so its first character is unchanged
+		int lo = 0, hi = segments.size() - 1;
+		while(lo<hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if(segments.get(mid).start<offset)lo = mid;
+			else hi = mid - 1;
+		}
+
+		return reparse(lo, offset + removed, inserted.length() - removed);
+	}
+
+	/** Re-lexes from the given segment until resynchronizing with an old segment starting at or after oldEditEnd
+	 *
+	 * @param first       the first segment to re-lex
+	 * @param oldEditEnd  the end of the edited region, before the edit
+	 * @param delta       the change in text length
+	 * @return the new sentences
+	 */
+
+	private List<Sentence> reparse(int first, int oldEditEnd, int delta) {
+		List<Segment> parsed = new ArrayList<Segment>();
+		Segment current = new Segment(segments.get(first).start, segments.get(first).sentenceNumber);
+		parsed.add(current);
+
+		int resync = segments.size();
+		int shift = 0;
+		int candidate = first + 1;
+
+		Lexer lex = new CharSequenceLexer(text, current.start);
+		lex.startAtSentence(current.sentenceNumber);
+		WordSpan span = lex.getSpan();
+		Sentence sentence = null;
+
+		while(lex.nextSpan()) {
+			int sentenceNumber = span.getSentenceNumber();
+
+			if(sentence==null || sentence.getNum()!=sentenceNumber) {
+				long start = span.getSentenceStart();
+				int position = (int) (parsed.get(0).start + start);
+
+				if(start>=0 && position>current.start) {
+					while(candidate<segments.size() && segments.get(candidate).start + delta < position)candidate++;
+
+					Segment old = candidate<segments.size() ? segments.get(candidate) : null;
+					if(old!=null && old.start>=oldEditEnd && old.start + delta==position) {
+						resync = candidate;
+						shift = sentenceNumber - old.sentenceNumber;
+						break;
+					}
+
+					current = new Segment(position, sentenceNumber);
+					parsed.add(current);
+				}
+
+				sentence = new Sentence(sentenceNumber);
+				current.sentences.add(sentence);
+			}
+
+			sentence.addWord(span.toToken(symbols));
+		}
+
+		// move and renumber the segments following the re-parsed ones
+		for(int i=resync;i<segments.size();i++) {
+			Segment segment = segments.get(i);
+			segment.start += delta;
+			segment.sentenceNumber += shift;
+			if(shift!=0)for(Sentence s : segment.sentences)s.shiftNumber(shift);
+		}
+
+		// replace the re-parsed sentences in the document, and tag them
+		int from = 0, to = 0;
+		for(int i=0;i<resync;i++) {
+			int size = segments.get(i).sentences.size();
+			if(i<first)from += size;
+			to += size;
+		}
+
+		List<Sentence> sentences = new ArrayList<Sentence>();
+		for(Segment segment : parsed)sentences.addAll(segment.sentences);
+		document.replaceSentences(from, to, sentences);
+
+		List<Segment> range = segments.subList(first, resync);
+		range.clear();
+		range.addAll(parsed);
+
+		tagger.tagSentences(sentences);
+
+		return sentences;
+	}
+
+
+	/** Lexes a character sequence from a given offset, without copying it */
+
+	static class CharSequenceLexer extends Lexer {
+		CharSequence text;
+		int position;
+
+		CharSequenceLexer(CharSequence text, int offset) {
+			this.text = text;
+			this.position = offset;
+		}
+
+		protected int read(char[] cbuf, int off, int len) {
+			if(position>=text.length())return -1;
+			int n = Math.min(len, text.length() - position);
+			for(int i=0;i<n;i++)cbuf[off + i] = text.charAt(position++);
+			return n;
+		}
+	}
+}
@@ -1,13 +1,12 @@
 package com.nlp;
 
 import java.io.CharArrayReader;
-import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.Iterator;
+import java.util.stream.Stream;
 
+import com.nlp.schema.Sentence;
 import com.nlp.schema.Token;
 
 /**    This class is a Lexer that takes a character stream Reader as input 
@@ -21,10 +20,15 @@ import com.nlp.schema.Token;
  *     The actual tokenization is implemented as a State Machine, with different characters  
  *     or character combinations from the input stream effecting the transitions between states.
  *     Certain states/transitions result in producing matched tokens, which are returned on
- *     from the Iterator's next() call.  
+ *     from the Iterator's next() call. The state machine is table driven : the character classes
+ *     and transitions are precompiled into a <code>LexerTable</code>.
  *    
  *     Characters from the input stream are read into a small buffer, in a way that allows one character 
  *     look-ahead at any time.
+ *     
+ *     Besides the Iterator, the lexer can be driven in an allocation free "span" mode : each call to
+ *     <code>nextSpan()</code> positions the reusable <code>WordSpan</code> returned by <code>getSpan()</code>
+ *     on the next word, without creating any Strings or Tokens. The Iterator is a thin adapter on top of it.
  **/
 
 public class Lexer implements Iterable<Token> {
@@ -41,169 +45,51 @@ public class Lexer implements Iterable<Token> {
     private int charsInBuffer = 0;
 
     // null char
-    private static final char nil = 0xffff;
-
-    // The various states of the state machine 
-    enum State {
-    	BEFORE_WORD,
-    	IN_MIDDLE_OF_WORD,
-    	DOT_SEQUENCE,
-    	IN_MIDDLE_OF_DIGIT
-    }
+    private static final char nil = LexerTable.NIL;
+    
+    // the compiled state machine
+    private final LexerTable table;
+    
+    // the current state of the state machine
+    private int state = LexerTable.BEFORE_WORD;
+    
+    private int dots = 0;
+    
+    // keeps track of the sentence number
+    private int sentenceNumber;
+    
+    // the position where the current sentence started, or -1 if the lexer had pending symbols at that point
+    private long sentenceStart = 0;
+    
+    // the position of the first character in the buffer, relative to the start of the input
+    private long bufferStart = 0;
+    
+    // whether the number being matched already has a decimal point
+    private boolean decimalPoint = false;
+    
+    // the currently matched word and its surrounding symbols
+    private final WordSpan span = new WordSpan();
+    
+    // final state indicator (the span holds a matched word)
+    private boolean fnl = false;
+    
+    // set once the end of the input has been reached
+    private boolean exhausted = false;
+    
+    // whether plain characters in the middle of a word are scanned and appended in bulk
+    boolean fastScan = true;
     
     private final Iterator<Token> iter = new Iterator<Token>() {
 
-    	boolean hasNext = true;
     	public boolean hasNext() {
-            return hasNext;
+            return !exhausted;
         }
 
-    	// stores symbols surrounding (before and after) the word, if any
-    	String beforeSymbol="", afterSymbol="";  
-        
-        int dots = 0;
-        
-        // keeps track of the sentence number
-        int sentenceNumber;  
-                 
-        // the current state of the state machine
-        State state = State.BEFORE_WORD;
-        
-        // the currently matched word
-        StringBuilder sb;
-        
-        // the token we will return
-        Token matchedToken = null; 
-
-        // final state indicator (when about to return a matched token)
-        boolean fnl = false;
-        
+    	/** Returns the next token, or null if the end of the input was reached without matching one */
+    	
         public Token next() {
-            // first invoke
-            if (charsInBuffer == 0) {
-                readToBuffer(0);
-            }
-            
-            sb = new StringBuilder();
-            
-			while (!fnl) {
-				char c = peek();	
-				if(c==nil){hasNext = false; if(sb.length()>0)matchTokenAndGoToState(State.BEFORE_WORD); else return null;}
-				
-				switch (state) {
-				
-				case BEFORE_WORD:
-					if (isBlank(c)) { // skip over white spaces and newlines						
-					} else if (isSurroundingSymbol(c)) {
-						beforeSymbol += c;
-					} else if (Character.isLetter(c)) {
-						sb.append(c);
-						state = State.IN_MIDDLE_OF_WORD;
-					} else if (Character.isDigit(c)) {
-						sb.append(c);
-						state = State.IN_MIDDLE_OF_DIGIT;
-					}
-					else if (c == '.') {
-						dots = 1;
-						state = State.DOT_SEQUENCE;
-					}
-					advance();
-					break;
-				case DOT_SEQUENCE:  // dot sequence in between words
-					if(c=='.'){dots++;advance();}
-					else if (c!='.') {												
-						if (dots == 1)sentenceNumber++; // just one dot (followed by a non dot) indicates an end of a sentence, more than one dot is an ellipsis 'word'						
-						state = State.BEFORE_WORD;
-					}
-					break;
-				case IN_MIDDLE_OF_WORD:
-					if(isPunctuation(c)) {						
-						while(isPunctuation(c=peek())){advance();} // skip remaining punctuation (i.e. dots, exclamation marks, question marks) 
-						matchTokenAndGoToState(State.BEFORE_WORD);
-						sentenceNumber++;
-					}					
-					else if(isBlank(c)) {
-						matchTokenAndGoToState(State.BEFORE_WORD);
-						advance();
-					} 
-					else if(isSurroundingSymbol(c)) {
-						afterSymbol += c;
-						advance();
-					}
-					else {
-						sb.append(c);
-						advance();
-					}
-					break;
-				case IN_MIDDLE_OF_DIGIT:
-					if(Character.isDigit(c))sb.append(c);
-					else if(c=='.') {						
-						if(Character.isDigit(peekNext()) && sb.indexOf(".")==-1)sb.append(c);     // if this is the first . in number, and the next character after . is a digit, then treat is as a decimal point
-						else {state = State.IN_MIDDLE_OF_WORD; continue;}                         // otherwise process as dots in middle of word 
-					}
-					else matchTokenAndGoToState(State.BEFORE_WORD);
-					advance();
-					break;
-				}
-			}
-            
-			fnl = false;
-			return matchedToken;
-        }
-        
-        private void matchTokenAndGoToState(State nextState) {
-			matchedToken = new Token(sb.toString(), beforeSymbol, afterSymbol, sentenceNumber);
-			state = State.BEFORE_WORD;
-			fnl = true;
-			beforeSymbol = "";
-			afterSymbol = "";
+        	return nextSpan() ? span.toToken() : null;
         }
-        
-        private boolean isBlank(char c) {
-			if(c=='\n' || c==' ')return true;
-			return false;
-		} 
-        
-        private boolean isSurroundingSymbol(char c) {
-			if(c=='(' || c==')' || c==';' || c==':' || c=='\'' || c=='"' || c==',')return true;
-			return false;
-		}
-        
-        public boolean isPunctuation(char c) {
-        	if(c=='.' || c=='!' || c=='?')return true;
-        	return false;
-        }
-
-		private void advance() {
-        	p++;
-        	if (p >= charsInBuffer - 1) {
-                cb[0] = cb[p];
-            	readToBuffer(1);            	
-            }
-        }
-        
-        private void readToBuffer(int offset) {
-            try {
-                int numRead = reader.read(cb, offset, cb.length-offset);
-                if (numRead != -1) {
-                    charsInBuffer = offset + numRead;                	
-                } else {
-                    cb[offset] = nil;
-                	charsInBuffer = offset+1;                	
-                }
-                p=0;
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        
-        private char peek() {
-        	return cb[p];        	
-        }
-        
-        private char peekNext() {
-        	return cb[p+1];
-        }               
 
         public void remove() {
             throw new UnsupportedOperationException("Not supported.");
@@ -216,7 +102,7 @@ public class Lexer implements Iterable<Token> {
      * @param code
      */
     public Lexer(String code) {
-        this.reader = new CharArrayReader(code.toCharArray());
+        this(new CharArrayReader(code.toCharArray()));
     }
 
     /**
@@ -225,13 +111,225 @@ public class Lexer implements Iterable<Token> {
      * @param reader
      */
     public Lexer(Reader reader) {
+        this(reader, LexerTable.DEFAULT);
+    }
+    
+    /**
+     * Lex the given reader, with the given character classes
+     * 
+     * @param reader
+     * @param table
+     */
+    public Lexer(Reader reader, LexerTable table) {
         this.reader = reader;
+        this.table = table;
+    }
+    
+    /**
+     * For subclasses that supply characters by overriding <code>read()</code>
+     */
+    protected Lexer() {
+    	this.table = LexerTable.DEFAULT;
     }
 
     public Iterator<Token> iterator() {
         return this.iter;
     }
     
+    /** @return a sequential stream of the tokens, see <code>TokenStreams</code> for splittable streams over in-memory text */
+    
+    public Stream<Token> tokens() {
+    	return TokenStreams.tokens(this);
+    }
+    
+    /** @return a sequential stream of the sentences */
+    
+    public Stream<Sentence> sentences() {
+    	return TokenStreams.sentences(this);
+    }
+    
+    /** Advances the lexer to the next word, which is then available from <code>getSpan()</code>.
+     *  The span is reused, so its content is only valid until the next call.
+     * 
+     * @return true if a word was matched, false if the end of the input was reached
+     */
+    
+    public boolean nextSpan() {
+        // first invoke
+        if (charsInBuffer == 0) {
+            readToBuffer(0);
+        }
+        
+        if (fnl) {
+        	span.clear();
+        	fnl = false;
+        }
+        
+        final byte[] classes = table.classes;
+        final byte[] transitions = table.transitions;
+        final int wordRow = LexerTable.IN_MIDDLE_OF_WORD*LexerTable.CLASSES;
+        final byte appendInWord = (byte) (LexerTable.APPEND | LexerTable.IN_MIDDLE_OF_WORD << 4);
+        
+		while (true) {
+			char c = cb[p];
+			int transition = transitions[state*LexerTable.CLASSES + classes[c]];
+			state = transition >>> 4;
+			
+			switch (transition & 0xf) {
+			case LexerTable.SKIP:
+				advance();
+				break;
+			case LexerTable.BEFORE_SYMBOL:
+				span.beforeSymbol.append(c);
+				advance();
+				break;
+			case LexerTable.AFTER_SYMBOL:
+				span.afterSymbol.append(c);
+				advance();
+				break;
+			case LexerTable.APPEND:
+				if(state==LexerTable.IN_MIDDLE_OF_WORD && fastScan) {
+					// scan ahead for the rest of the word in the buffer, and append it in bulk 
+					int i = p+1, limit = charsInBuffer-1;
+					while(i<limit && transitions[wordRow + classes[cb[i]]]==appendInWord)i++;
+					span.append(cb, p, i-p);
+					p = i-1;
+				}
+				else span.append(c);
+				advance();
+				break;
+			case LexerTable.START_NUMBER:
+				span.append(c);
+				decimalPoint = false;
+				advance();
+				break;
+			case LexerTable.DECIMAL_POINT:
+				// if this is the first . in number, and the next character after . is a digit, then treat is as a decimal point
+				if(classes[peekNext()]==LexerTable.DIGIT && !decimalPoint) {
+					span.append(c);
+					decimalPoint = true;
+					advance();
+				}
+				else state = LexerTable.IN_MIDDLE_OF_WORD;     // otherwise process as dots in middle of word
+				break;
+			case LexerTable.START_DOTS:
+				dots = 1;
+				advance();
+				break;
+			case LexerTable.DOT_IN_SEQUENCE:
+				dots++;
+				advance();
+				break;
+			case LexerTable.END_DOTS:
+				if (dots == 1)endSentence(span.beforeSymbol.length()==0); // just one dot (followed by a non dot) indicates an end of a sentence, more than one dot is an ellipsis 'word'
+				break;
+			case LexerTable.MATCH:
+				matchWord();
+				advance();
+				return true;
+			case LexerTable.MATCH_END_OF_SENTENCE:
+				matchWord();
+				endSentence(true);
+				return true;
+			case LexerTable.END_OF_INPUT:
+				exhausted = true;
+				if(span.length>0) {
+					matchWord();
+					return true;
+				}
+				return false;
+			}
+		}
+    }
+    
+    /** @return the reusable span describing the word matched by the last successful <code>nextSpan()</code> call */
+    
+    public WordSpan getSpan() {
+    	return span;
+    }
+    
+    /** @return the current sentence number, i.e. the number of sentence ends seen so far */
+    
+    public int getSentenceNumber() {
+    	return sentenceNumber;
+    }
+    
+    /** @return true until the end of the input has been reached */
+    
+    public boolean hasMoreInput() {
+    	return !exhausted;
+    }
+    
+    /** Moves on to the next sentence
+     * 
+     * @param clean true if the lexer has no pending state, so lexing could restart from here
+     */
+    
+    private void endSentence(boolean clean) {
+    	sentenceNumber++;
+    	sentenceStart = clean ? getPosition() : -1;
+    }
+    
+    /** @return the position of the next character to lex, relative to the start of the input */
+    
+    public long getPosition() {
+    	return bufferStart + p;
+    }
+    
+    /** Makes the lexer number sentences from the given number, when lexing a part of a larger input 
+     *  that starts at a sentence boundary */
+    
+    void startAtSentence(int sentenceNumber) {
+    	this.sentenceNumber = sentenceNumber;
+    }
+    
+    private void matchWord() {
+    	span.sentenceNumber = sentenceNumber;
+    	span.sentenceStart = sentenceStart;
+		fnl = true;
+    }
+
+	private void advance() {
+    	p++;
+    	if (p >= charsInBuffer - 1) {
+            cb[0] = cb[p];
+            bufferStart += p;
+        	readToBuffer(1);            	
+        }
+    }
+    
+    private void readToBuffer(int offset) {
+        try {
+            // the lexer looks one character ahead, so read until the buffer holds at least two
+            charsInBuffer = offset;
+            while (charsInBuffer < 2) {
+                int numRead = read(cb, charsInBuffer, cb.length-charsInBuffer);
+                if (numRead == -1) {
+                    cb[charsInBuffer++] = nil;
+                    break;
+                }
+                charsInBuffer += numRead;
+            }
+            p=0;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    /** Reads characters into a portion of the lexer's buffer. Blocks until some input is available.
+     * 
+     * @return the number of characters read, or -1 if the end of the input has been reached
+     * @throws IOException
+     */
+    
+    protected int read(char[] cbuf, int off, int len) throws IOException {
+    	return reader.read(cbuf, off, len);
+    }
+    
+    private char peekNext() {
+    	return cb[p+1];
+    }               
+    
     public static void main(String s[]) throws Exception {
     	//Lexer lex = new Lexer("Test ...(A') .3 .14\n\n\n");
     	
@@ -244,11 +342,7 @@ public class Lexer implements Iterable<Token> {
     	Lexer lex = new Lexer("Maxwell's equations"); 
     	
     	
-    	Iterator<Token> it = lex.iterator();
-    	
-    	while(it.hasNext()) {
-    		Token token = it.next();
-    		if(token!=null)System.out.println(token);
-    	}
+    	Iterator<Token> it = lex.tokens().iterator();
+    	while(it.hasNext())System.out.println(it.next());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package com.nlp;
+
+import java.util.Properties;
+
+/**
+ *  The compiled form of the <code>Lexer</code> state machine : a character class table, mapping every
+ *  char to one of a handful of classes, and a dense transition table indexed by (state, class), giving
+ *  the action to perform and the next state. The lexer's inner loop is then a couple of array lookups
+ *  per character, instead of a chain of comparisons.
+ *
+ *  The characters treated as blanks, surrounding symbols and sentence terminating punctuation are
+ *  configurable, so they can be adapted to a corpus without code changes. The default table can be
+ *  configured with the system properties <code>nlp.lexer.blanks</code>, <code>nlp.lexer.surroundingSymbols</code>
+ *  and <code>nlp.lexer.terminators</code>. The dot is always special, as it separates sentences, forms
+ *  ellipses and decimal points.
+ */
+
+public class LexerTable {
+
+	public static final String DEFAULT_BLANKS = " \n";
+	public static final String DEFAULT_SURROUNDING_SYMBOLS = "();:'\",";
+	public static final String DEFAULT_TERMINATORS = "!?";
+
+	public static final LexerTable DEFAULT = fromProperties(System.getProperties());
+
+	// end of input marker
+	static final char NIL = 0xffff;
+
+	// character classes
+	static final int BLANK = 0;
+	static final int SURROUNDING_SYMBOL = 1;
+	static final int LETTER = 2;
+	static final int DIGIT = 3;
+	static final int DOT = 4;
+	static final int TERMINATOR = 5;          // sentence ending punctuation other than the dot
+	static final int OTHER = 6;
+	static final int EOF = 7;
+	static final int CLASSES = 8;
+
+	// states
+	static final int BEFORE_WORD = 0;
+	static final int IN_MIDDLE_OF_WORD = 1;
+	static final int DOT_SEQUENCE = 2;
+	static final int IN_MIDDLE_OF_DIGIT = 3;
+	static final int PUNCTUATION = 4;         // punctuation run at the end of a word
+	static final int STATES = 5;
+
+	// actions
+	static final int SKIP = 0;                // advance over the character
+	static final int BEFORE_SYMBOL = 1;       // add the character to the symbols before the word
+	static final int AFTER_SYMBOL = 2;        // add the character to the symbols after the word
+	static final int APPEND = 3;              // add the character to the word
+	static final int START_NUMBER = 4;
+	static final int DECIMAL_POINT = 5;       // a dot inside a number, decided by looking ahead
+	static final int START_DOTS = 6;
+	static final int DOT_IN_SEQUENCE = 7;
+	static final int END_DOTS = 8;            // a single dot ends a sentence, more are an ellipsis
+	static final int MATCH = 9;               // the word is complete, advance over the character
+	static final int MATCH_END_OF_SENTENCE = 10;
+	static final int END_OF_INPUT = 11;
+
+	final String blanks;
+	final String surroundingSymbols;
+	final String terminators;
+
+	final byte[] classes = new byte[Character.MAX_VALUE + 1];
+
+	// for each (state, class) : the action in the low 4 bits, and the next state above them
+	final byte[] transitions = new byte[STATES * CLASSES];
+
+	/** Compile a lexer table
+	 *
+	 * @param blanks             characters separating words
+	 * @param surroundingSymbols characters recorded as symbols before or after words, e.g. quotes and parentheses
+	 * @param terminators        characters that, like the dot, end a sentence when they follow a word
+	 */
+
+	public LexerTable(String blanks, String surroundingSymbols, String terminators) {
+		this.blanks = blanks;
+		this.surroundingSymbols = surroundingSymbols;
+		this.terminators = terminators;
+
+		for(int c=0;c<=Character.MAX_VALUE;c++)classes[c] = (byte) classify((char) c);
+
+		for(int cls=0;cls<CLASSES;cls++) {
+			set(BEFORE_WORD, cls, SKIP, BEFORE_WORD);
+			set(IN_MIDDLE_OF_WORD, cls, APPEND, IN_MIDDLE_OF_WORD);
+			set(DOT_SEQUENCE, cls, END_DOTS, BEFORE_WORD);
+			set(IN_MIDDLE_OF_DIGIT, cls, MATCH, BEFORE_WORD);
+			set(PUNCTUATION, cls, MATCH_END_OF_SENTENCE, BEFORE_WORD);
+		}
+
+		set(BEFORE_WORD, SURROUNDING_SYMBOL, BEFORE_SYMBOL, BEFORE_WORD);
+		set(BEFORE_WORD, LETTER, APPEND, IN_MIDDLE_OF_WORD);
+		set(BEFORE_WORD, DIGIT, START_NUMBER, IN_MIDDLE_OF_DIGIT);
+		set(BEFORE_WORD, DOT, START_DOTS, DOT_SEQUENCE);
+		set(BEFORE_WORD, EOF, END_OF_INPUT, BEFORE_WORD);
+
+		set(IN_MIDDLE_OF_WORD, BLANK, MATCH, BEFORE_WORD);
+		set(IN_MIDDLE_OF_WORD, SURROUNDING_SYMBOL, AFTER_SYMBOL, IN_MIDDLE_OF_WORD);
+		set(IN_MIDDLE_OF_WORD, DOT, SKIP, PUNCTUATION);
+		set(IN_MIDDLE_OF_WORD, TERMINATOR, SKIP, PUNCTUATION);
+		set(IN_MIDDLE_OF_WORD, EOF, END_OF_INPUT, BEFORE_WORD);
+
+		set(DOT_SEQUENCE, DOT, DOT_IN_SEQUENCE, DOT_SEQUENCE);
+		set(DOT_SEQUENCE, EOF, END_OF_INPUT, BEFORE_WORD);
+
+		set(IN_MIDDLE_OF_DIGIT, DIGIT, APPEND, IN_MIDDLE_OF_DIGIT);
+		set(IN_MIDDLE_OF_DIGIT, DOT, DECIMAL_POINT, IN_MIDDLE_OF_DIGIT);
+		set(IN_MIDDLE_OF_DIGIT, EOF, END_OF_INPUT, BEFORE_WORD);
+
+		set(PUNCTUATION, DOT, SKIP, PUNCTUATION);
+		set(PUNCTUATION, TERMINATOR, SKIP, PUNCTUATION);
+	}
+
+	/** Compile a lexer table from the <code>nlp.lexer.*</code> properties, using the defaults for missing ones */
+
+	public static LexerTable fromProperties(Properties properties) {
+		return new LexerTable(
+				properties.getProperty("nlp.lexer.blanks", DEFAULT_BLANKS),
+				properties.getProperty("nlp.lexer.surroundingSymbols", DEFAULT_SURROUNDING_SYMBOLS),
+				properties.getProperty("nlp.lexer.terminators", DEFAULT_TERMINATORS));
+	}
+
+	private int classify(char c) {
+		if(c==NIL)return EOF;
+		if(c=='.')return DOT;
+		if(terminators.indexOf(c)!=-1)return TERMINATOR;
+		if(blanks.indexOf(c)!=-1)return BLANK;
+		if(surroundingSymbols.indexOf(c)!=-1)return SURROUNDING_SYMBOL;
+		if(Character.isLetter(c))return LETTER;
+		if(Character.isDigit(c))return DIGIT;
+		return OTHER;
+	}
+
+	private void set(int state, int cls, int action, int nextState) {
+		transitions[state*CLASSES + cls] = (byte) (action | nextState << 4);
+	}
+
+	public String getBlanks() {
+		return blanks;
+	}
+
+	public String getSurroundingSymbols() {
+		return surroundingSymbols;
+	}
+
+	public String getTerminators() {
+		return terminators;
+	}
+}
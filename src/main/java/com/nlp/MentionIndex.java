@@ -0,0 +1,349 @@
+package com.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.nlp.ner.NamedEntity;
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+
+/**
+ *  An inverted index of the corpus, from named entities and words to the places they occur at :
+ *  (document id, sentence number, position of the token in the sentence).
+ *
+ *  Documents are added concurrently, e.g. as a <code>DocumentListener</code> of the tasks, and get ids in the
+ *  order they are added. Each document is indexed on its own thread, and then appends one block of postings
+ *  per entity and word it mentions to the posting list of that entity or word. A block is the document id
+ *  followed by its postings, sorted and delta encoded (sentence numbers as the difference from the previous
+ *  posting's, positions as the difference from the previous posting's in the same sentence) as varints,
+ *  so most postings take 2 bytes.
+ *
+ *  Words are indexed ignoring case, by the id of their upper case form in a symbol table. Each token tagged
+ *  with an entity is a mention of it, so a multi-word entity has a mention for each of its words.
+ *  Sentences are identified by longs combining the document id and the sentence number, see <code>sentence()</code>.
+ */
+
+public class MentionIndex implements DocumentListener {
+
+	/** The postings of an entity or word, as blocks of varints */
+
+	static class PostingList {
+		byte[] bytes = new byte[16];
+		int length;
+
+		synchronized void append(byte[] block, int len) {
+			if(length + len > bytes.length)bytes = Arrays.copyOf(bytes, Math.max(bytes.length*2, length + len));
+			System.arraycopy(block, 0, bytes, length, len);
+			length += len;
+		}
+
+		/** @return the postings as (document, sentence, position) triples, sorted */
+
+		int[] decode() {
+			byte[] bytes;
+			int length;
+			synchronized(this) {
+				bytes = this.bytes;
+				length = this.length;
+			}
+
+			List<int[]> blocks = new ArrayList<int[]>();
+			int total = 0;
+			int[] p = {0};
+			while(p[0]<length) {
+				int document = readVarint(bytes, p);
+				int count = readVarint(bytes, p);
+				int[] block = new int[count*3];
+				int sentence = 0, position = 0;
+				for(int i=0;i<count;i++) {
+					int sentenceDelta = readVarint(bytes, p);
+					sentence += sentenceDelta;
+					position = (sentenceDelta==0 && i>0 ? position : 0) + readVarint(bytes, p);
+					block[i*3] = document;
+					block[i*3+1] = sentence;
+					block[i*3+2] = position;
+				}
+				blocks.add(block);
+				total += block.length;
+			}
+
+			// the blocks are appended in the order documents complete, sort them by document
+			int[][] sorted = blocks.toArray(new int[blocks.size()][]);
+			Arrays.sort(sorted, new Comparator<int[]>() {
+				public int compare(int[] a, int[] b) {
+					return Integer.compare(a[0], b[0]);
+				}
+			});
+
+			int[] ret = new int[total];
+			int offset = 0;
+			for(int[] block : sorted) {
+				System.arraycopy(block, 0, ret, offset, block.length);
+				offset += block.length;
+			}
+			return ret;
+		}
+	}
+
+	/** The postings of a document for one entity or word, before they are appended as a block */
+
+	static class DocumentPostings {
+		int[] postings = new int[8];   // sentence, position pairs, in text order
+		int size;
+
+		void add(int sentence, int position) {
+			if(size==postings.length)postings = Arrays.copyOf(postings, size*2);
+			postings[size++] = sentence;
+			postings[size++] = position;
+		}
+
+		int encode(int document, byte[][] buffer) {
+			int max = (2 + size) * 5;
+			if(buffer[0].length<max)buffer[0] = new byte[max];
+			byte[] block = buffer[0];
+
+			int len = writeVarint(block, 0, document);
+			len = writeVarint(block, len, size/2);
+			int sentence = 0, position = 0;
+			for(int i=0;i<size;i+=2) {
+				int sentenceDelta = postings[i] - sentence;
+				len = writeVarint(block, len, sentenceDelta);
+				len = writeVarint(block, len, postings[i+1] - (sentenceDelta==0 && i>0 ? position : 0));
+				sentence = postings[i];
+				position = postings[i+1];
+			}
+			return len;
+		}
+	}
+
+	final SymbolTable symbols;
+	final List<String> documentNames = new ArrayList<String>();
+	final ConcurrentMap<NamedEntity, PostingList> entityPostings = new ConcurrentHashMap<NamedEntity, PostingList>();
+	final ConcurrentMap<Integer, PostingList> wordPostings = new ConcurrentHashMap<Integer, PostingList>();
+
+	/** Create an index folding the words with its own symbol table */
+
+	public MentionIndex() {
+		this(new SymbolTable());
+	}
+
+	/**
+	 * @param symbols  the table to fold words with, preferably the one the tokens were interned in
+	 *                 (e.g. the tagger's), so indexing them looks their words up by id
+	 */
+
+	public MentionIndex(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	public void documentCompleted(Document document) {
+		addDocument(document);
+	}
+
+	/** Indexes the document's entity mentions and words
+	 *
+	 * @param document
+	 * @return the document's id in the index
+	 */
+
+	public int addDocument(Document document) {
+		int id;
+		synchronized(documentNames) {
+			id = documentNames.size();
+			documentNames.add(document.getName());
+		}
+
+		Map<NamedEntity, DocumentPostings> entities = new HashMap<NamedEntity, DocumentPostings>();
+		Map<Integer, DocumentPostings> words = new HashMap<Integer, DocumentPostings>();
+
+		for(Sentence sentence : document.getSentences()) {
+			List<Token> tokens = sentence.getWords();
+			for(int i=0;i<tokens.size();i++) {
+				Token token = tokens.get(i);
+
+				Integer word = foldedId(token);
+				DocumentPostings postings = words.get(word);
+				if(postings==null)words.put(word, postings = new DocumentPostings());
+				postings.add(sentence.getNum(), i);
+
+				if(token.getNamedEntities()==null)continue;
+				for(NamedEntity entity : token.getNamedEntities()) {
+					postings = entities.get(entity);
+					if(postings==null)entities.put(entity, postings = new DocumentPostings());
+					// an entity can tag a token twice, when two of its exact matches overlap (the middle word of "Bob Bob Bob" for the entity "Bob Bob")
+					if(postings.size==0 || postings.postings[postings.size-2]!=sentence.getNum() || postings.postings[postings.size-1]!=i)postings.add(sentence.getNum(), i);
+				}
+			}
+		}
+
+		byte[][] buffer = {new byte[64]};
+		for(Map.Entry<NamedEntity, DocumentPostings> entry : entities.entrySet()) {
+			int len = entry.getValue().encode(id, buffer);
+			postings(entityPostings, entry.getKey()).append(buffer[0], len);
+		}
+		for(Map.Entry<Integer, DocumentPostings> entry : words.entrySet()) {
+			int len = entry.getValue().encode(id, buffer);
+			postings(wordPostings, entry.getKey()).append(buffer[0], len);
+		}
+
+		return id;
+	}
+
+	private int foldedId(Token token) {
+		int id = token.getWordId();
+		if(id<0 || id>=symbols.size() || symbols.get(id)!=token.getStr())id = symbols.intern(token.getStr());
+		return symbols.foldedId(id);
+	}
+
+	private static <K> PostingList postings(ConcurrentMap<K, PostingList> map, K key) {
+		PostingList postings = map.get(key);
+		if(postings==null) {
+			PostingList existing = map.putIfAbsent(key, postings = new PostingList());
+			if(existing!=null)postings = existing;
+		}
+		return postings;
+	}
+
+	/** @return the number of documents in the index */
+
+	public int getDocumentCount() {
+		synchronized(documentNames) {
+			return documentNames.size();
+		}
+	}
+
+	/** @return the name of the document with the given id */
+
+	public String getDocumentName(int document) {
+		synchronized(documentNames) {
+			return documentNames.get(document);
+		}
+	}
+
+	/** @return the mentions of the entity as (document, sentence number, position) triples, sorted */
+
+	public int[] getMentions(NamedEntity entity) {
+		PostingList postings = entityPostings.get(entity);
+		return postings==null ? new int[0] : postings.decode();
+	}
+
+	/** @return the occurrences of the word, ignoring case, as (document, sentence number, position) triples, sorted */
+
+	public int[] getOccurrences(String word) {
+		int id = symbols.lookup(word);
+		if(id<0) {
+			String upperCase = SymbolTable.fold(word);
+			id = symbols.lookup(upperCase);
+			if(id<0)return new int[0];
+		}
+		PostingList postings = wordPostings.get(symbols.foldedId(id));
+		return postings==null ? new int[0] : postings.decode();
+	}
+
+	/** @return the ids of the documents mentioning the entity, sorted */
+
+	public int[] documentsMentioning(NamedEntity entity) {
+		return documents(getMentions(entity));
+	}
+
+	/** @return the ids of the documents containing the word, sorted */
+
+	public int[] documentsContaining(String word) {
+		return documents(getOccurrences(word));
+	}
+
+	/** @return the sentences mentioning the entity, sorted, see <code>sentence()</code> */
+
+	public long[] sentencesMentioning(NamedEntity entity) {
+		return sentences(getMentions(entity));
+	}
+
+	/** @return the sentences containing the word, sorted, see <code>sentence()</code> */
+
+	public long[] sentencesContaining(String word) {
+		return sentences(getOccurrences(word));
+	}
+
+	/** @return the sentences mentioning both entities, sorted, see <code>sentence()</code> */
+
+	public long[] sentencesMentioningBoth(NamedEntity a, NamedEntity b) {
+		return intersect(sentencesMentioning(a), sentencesMentioning(b));
+	}
+
+	/** @return the sentence identifier combining the document id and sentence number */
+
+	public static long sentence(int document, int sentenceNumber) {
+		return (long) document << 32 | (sentenceNumber & 0xffffffffL);
+	}
+
+	/** @return the document id of a sentence identifier */
+
+	public static int documentOf(long sentence) {
+		return (int) (sentence >>> 32);
+	}
+
+	/** @return the sentence number of a sentence identifier */
+
+	public static int sentenceNumberOf(long sentence) {
+		return (int) sentence;
+	}
+
+	private static int[] documents(int[] postings) {
+		int[] ret = new int[postings.length/3];
+		int n = 0;
+		for(int i=0;i<postings.length;i+=3)if(n==0 || ret[n-1]!=postings[i])ret[n++] = postings[i];
+		return Arrays.copyOf(ret, n);
+	}
+
+	private static long[] sentences(int[] postings) {
+		long[] ret = new long[postings.length/3];
+		int n = 0;
+		for(int i=0;i<postings.length;i+=3) {
+			long sentence = sentence(postings[i], postings[i+1]);
+			if(n==0 || ret[n-1]!=sentence)ret[n++] = sentence;
+		}
+		return Arrays.copyOf(ret, n);
+	}
+
+	private static long[] intersect(long[] a, long[] b) {
+		long[] ret = new long[Math.min(a.length, b.length)];
+		int n = 0;
+		for(int i=0, j=0; i<a.length && j<b.length;) {
+			if(a[i]<b[j])i++;
+			else if(a[i]>b[j])j++;
+			else {
+				ret[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(ret, n);
+	}
+
+	static int writeVarint(byte[] bytes, int offset, int value) {
+		while((value & ~0x7f)!=0) {
+			bytes[offset++] = (byte) (value & 0x7f | 0x80);
+			value >>>= 7;
+		}
+		bytes[offset++] = (byte) value;
+		return offset;
+	}
+
+	static int readVarint(byte[] bytes, int[] offset) {
+		int value = 0;
+		for(int shift=0;;shift+=7) {
+			byte b = bytes[offset[0]++];
+			value |= (b & 0x7f) << shift;
+			if(b>=0)return value;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.nlp;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+import com.nlp.schema.ColumnarDocument;
+import com.nlp.schema.SymbolTable;
+
+
+/**
+ * Parses a single large UTF-8 file using several threads.
+ *
+ * The file is split into chunks at safe boundaries, each chunk is lexed and parsed concurrently
+ * by its own <code>ByteBufferLexer</code>, and the resulting sentences are then stitched back together.
+ *
+ * A safe boundary is right after a blank that follows a letter : at that point the lexer has just
+ * completed a word and holds no pending state (it is not inside a number, a dot sequence or a
+ * run of surrounding symbols), so lexing from there yields exactly the same tokens as lexing the
+ * whole file. Sentence numbers restart at 0 in every chunk and are shifted by the number of sentence
+ * ends counted in the preceding chunks, a sentence spanning a chunk boundary being merged back into one.
+ * Each chunk is parsed into a <code>ColumnarDocument</code>, and the chunks are appended to the returned one.
+ */
+
+public class ParallelParser {
+
+	// default chunk size, and the size of the regions mapped while looking for a boundary
+	public static final long DEFAULT_CHUNK_SIZE = 16*1024*1024;
+	private static final int PROBE_SIZE = 64*1024;
+
+	FileChannel channel;
+	String documentName;
+	ExecutorService executor;
+	long chunkSize;
+	LexerTable table = LexerTable.DEFAULT;
+	SymbolTable symbols;
+
+	public ParallelParser(FileChannel channel, String documentName) {
+		this(channel, documentName, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param channel       the file to parse
+	 * @param documentName
+	 * @param executor      the executor to lex the chunks on. Should not be the executor of the calling task
+	 *                      if that one is bounded, as the calling task blocks waiting for the chunks, unless it
+	 *                      is a <code>ForkJoinPool</code> : a worker of the pool forks the chunks as subtasks
+	 *                      and runs them itself while joining them, rather than blocking.
+	 * @param chunkSize     the approximate size of a chunk, in bytes
+	 */
+	public ParallelParser(FileChannel channel, String documentName, ExecutorService executor, long chunkSize) {
+		this.channel = channel;
+		this.documentName = documentName;
+		this.executor = executor;
+		this.chunkSize = Math.min(chunkSize, ByteBufferLexer.WINDOW_SIZE);
+	}
+
+	/** A chunk of the file, parsed into sentences numbered from 0 */
+
+	class Chunk implements Callable<Chunk> {
+		long start, end;
+		ColumnarDocument document;
+		int sentenceEnds;       // number of sentence ends in the chunk
+
+		Chunk(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		public Chunk call() throws Exception {
+			Lexer lex = new ByteBufferLexer(channel, start, end);
+			Parser parser = new Parser(lex, documentName);
+			parser.setSymbolTable(symbols);
+			document = parser.parseColumnarDocument();
+			sentenceEnds = lex.getSentenceNumber();
+			return this;
+		}
+	}
+
+	/** Intern the words of the parsed tokens in the given table, see <code>Parser.setSymbolTable()</code> */
+	
+	public void setSymbolTable(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+
+	public ColumnarDocument parseDocument() throws Exception {
+		// the chunks share one table, so their words can be appended as is
+		if(symbols==null)symbols = new SymbolTable();
+		List<Future<Chunk>> futures = new ArrayList<Future<Chunk>>();
+
+		long size = channel.size();
+		long start = 0;
+		boolean forked = executor instanceof ForkJoinPool && ForkJoinTask.getPool()==executor;
+		while(start<size) {
+			long end = start + chunkSize >= size ? size : findBoundary(start + chunkSize, size);
+			futures.add(forked ? ForkJoinTask.adapt(new Chunk(start, end)).fork() : executor.submit(new Chunk(start, end)));
+			start = end;
+		}
+
+		ColumnarDocument doc = new ColumnarDocument(documentName, symbols);
+		int offset = 0;
+
+		for(Future<Chunk> future : futures) {
+			Chunk chunk = forked ? ((ForkJoinTask<Chunk>) future).join() : future.get();
+			doc.append(chunk.document, offset);
+			offset += chunk.sentenceEnds;
+		}
+
+		doc.trimToSize();
+		return doc;
+	}
+
+	/** Finds the first safe boundary at or after the given position
+	 *
+	 * @return the boundary, or size if there is none
+	 */
+
+	long findBoundary(long from, long size) throws IOException {
+		// bytes below 0x80 are never part of a multi-byte UTF-8 sequence, so they can be classified as is
+		byte[] classes = table.classes;
+
+		for(long position = from - 1; position < size - 1; position += PROBE_SIZE - 1) {
+			MappedByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(PROBE_SIZE, size - position));
+
+			for(int i=1;i<probe.limit();i++) {
+				byte previous = probe.get(i-1), b = probe.get(i);
+				if(previous>=0 && b>=0 && classes[previous]==LexerTable.LETTER && classes[b]==LexerTable.BLANK)return position + i + 1;
+			}
+		}
+
+		return size;
+	}
+}
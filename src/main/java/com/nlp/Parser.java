@@ -1,11 +1,11 @@
 package com.nlp;
 
 import java.io.Reader;
-import java.util.Iterator;
 
+import com.nlp.schema.ColumnarDocument;
 import com.nlp.schema.Document;
 import com.nlp.schema.Sentence;
-import com.nlp.schema.Token;
+import com.nlp.schema.SymbolTable;
 
 
 /**
@@ -19,6 +19,7 @@ public class Parser {
 	Reader reader;
 	Lexer lex;
 	String documentName;
+	SymbolTable symbols;
 	
 	public Parser(Reader reader, String documentName) {
 		this.reader = reader;
@@ -26,31 +27,99 @@ public class Parser {
 		this.documentName = documentName;
 	}
 	
+	/** Create a parser on top of the given lexer (e.g. a <code>ByteBufferLexer</code>) 
+	 * 
+	 * @param lex
+	 * @param documentName
+	 */
+	
+	public Parser(Lexer lex, String documentName) {
+		this.lex = lex;
+		this.documentName = documentName;
+	}
+	
+	/** Intern the words of the parsed tokens in the given table, so tokens share one String per distinct word
+	 *  and carry its id
+	 *  
+	 * @param symbols
+	 */
+	
+	public void setSymbolTable(SymbolTable symbols) {
+		this.symbols = symbols;
+	}
+	
 	public Document parseDocument() {
-		Document doc = new Document(documentName);
+		final Document doc = new Document(documentName);
 		
-	    Iterator<Token> it = lex.iterator();
-    	
+		try {
+			parse(new SentenceListener() {
+				public void sentence(Sentence sentence) {
+					doc.addSentence(sentence);
+				}
+			});
+		} catch(RuntimeException e) {
+			throw e;
+		} catch(Exception e) {
+			throw new RuntimeException(e);
+		}
+	    
+	    return doc;
+	}
+	
+	/** Parses the document, passing each sentence to the listener as soon as it is complete, 
+	 *  so only one sentence at a time is held in memory
+	 *  
+	 * @param listener
+	 * @return the number of sentences
+	 * @throws Exception  if thrown by the listener
+	 */
+	
+	public int parse(SentenceListener listener) throws Exception {
     	int lastSentenceNum = -1;
+    	int sentences = 0;
     	Sentence sentence = null;
     	
-	    while(it.hasNext()) {
-    		Token token = it.next();
-    		if(token!=null) {
-    			int sentenceNum = token.getSentenceNumber();
-    			
-    			if(sentenceNum!=lastSentenceNum) {
-    				if(sentence!=null)doc.addSentence(sentence);
-    				sentence = new Sentence(sentenceNum); 
-    			}
-    			
-    			sentence.addWord(token);
-    			lastSentenceNum = sentenceNum;
-    		}
+    	// drive the lexer in span mode, so the only per-word allocation is the token itself
+	    while(lex.nextSpan()) {
+	    	WordSpan span = lex.getSpan();
+			int sentenceNum = span.getSentenceNumber();
+			
+			if(sentenceNum!=lastSentenceNum) {
+				if(sentence!=null) {
+					listener.sentence(sentence);
+					sentences++;
+				}
+				sentence = new Sentence(sentenceNum); 
+			}
+			
+			sentence.addWord(symbols==null ? span.toToken() : span.toToken(symbols));
+			lastSentenceNum = sentenceNum;
     	}
 	    
-	    if(sentence!=null)doc.addSentence(sentence);
+	    if(sentence!=null) {
+	    	listener.sentence(sentence);
+	    	sentences++;
+	    }
 	    
-	    return doc;
+	    return sentences;
+	}
+	
+	/** Parses the document into a compact <code>ColumnarDocument</code>, interning the words in the parser's 
+	 *  symbol table (or a new one if none was set)
+	 *  
+	 * @return the document
+	 */
+	
+	public ColumnarDocument parseColumnarDocument() {
+		SymbolTable table = symbols!=null ? symbols : new SymbolTable();
+		ColumnarDocument doc = new ColumnarDocument(documentName, table);
+		
+		while(lex.nextSpan()) {
+			WordSpan span = lex.getSpan();
+			doc.addWord(table.intern(span), span.getBeforeSymbol(), span.getAfterSymbol(), span.getSentenceNumber());
+		}
+		
+		doc.trimToSize();
+		return doc;
 	}
 }
@@ -0,0 +1,270 @@
+package com.nlp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+
+
+/**
+ *  Processes documents in stages running concurrently : reading the bytes of a document, lexing and parsing
+ *  them, tagging the named entities, and serializing the document's xml to a writer.
+ *
+ *  Each stage has its own threads, and takes its input from a bounded queue filled by the previous stage.
+ *  A stage that is slower than the previous one makes that stage block once the queue between them is full,
+ *  and so on back to the reader, so a slow output sink throttles the whole pipeline instead of parsed documents
+ *  piling up in the heap. The queue depths show which stage is the bottleneck : the queue in front of it is full,
+ *  the ones after it are empty.
+ *
+ *  A stage is shut down by sending one poison pill per thread into its queue, the last thread of a stage to
+ *  stop sending the pills of the next stage. Documents are serialized in the order they complete, which is not
+ *  necessarily the order of the tasks. A document failing in a stage is dropped, and recorded as a
+ *  <code>DocumentFailure</code> with its name.
+ */
+
+public class Pipeline {
+
+	private static final Object PILL = new Object();
+
+	public static final String READ = "read";
+	public static final String PARSE = "parse";
+	public static final String TAG = "tag";
+	public static final String SERIALIZE = "serialize";
+
+	/** The bytes of a document, read by the first stage */
+
+	static class RawDocument {
+		String name;
+		byte[] bytes;
+
+		RawDocument(String name, byte[] bytes) {
+			this.name = name;
+			this.bytes = bytes;
+		}
+	}
+
+	/** A stage of the pipeline, transforming each item of its queue and passing the result to the next stage */
+
+	abstract class Stage<I, O> {
+		final String name;
+		final int threads;
+		final BlockingQueue<Object> queue;
+		Stage<O, ?> next;
+		final AtomicInteger running = new AtomicInteger();
+
+		Stage(String name, int threads) {
+			this.name = name;
+			this.threads = threads;
+			this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+		}
+
+		/** @return the result to pass to the next stage, or null for none */
+
+		abstract O process(I item) throws Exception;
+
+		void start(List<Thread> started) {
+			running.set(threads);
+			for(int i=0;i<threads;i++) {
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						work();
+					}
+				}, "pipeline-" + name + "-" + i);
+				thread.start();
+				started.add(thread);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private void work() {
+			try {
+				while(true) {
+					Object item = queue.take();
+					if(item==PILL)break;
+
+					try {
+						O result = process((I) item);
+						if(result!=null && next!=null)next.queue.put(result);
+					} catch(InterruptedException e) {
+						throw e;
+					} catch(Throwable e) {
+						// including errors, e.g. running out of memory on a large document
+						failures.add(new DocumentFailure(nameOf(item), e));
+					}
+				}
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				// the next stage is shut down however its last thread stops, so run() never waits for it forever
+				if(running.decrementAndGet()==0 && next!=null) {
+					try {
+						next.shutdown();
+					} catch(InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		}
+
+		void shutdown() throws InterruptedException {
+			for(int i=0;i<threads;i++)queue.put(PILL);
+		}
+	}
+
+	NamedEntitiesTagger tagger;
+	Writer out;
+	int queueCapacity = 16;
+	int readThreads = 1;
+	int parseThreads = Runtime.getRuntime().availableProcessors();
+	int tagThreads = Runtime.getRuntime().availableProcessors();
+	int serializeThreads = 1;
+
+	List<Stage<?, ?>> stages = Collections.emptyList();
+	List<DocumentFailure> failures = Collections.synchronizedList(new ArrayList<DocumentFailure>());
+
+	/**
+	 * @param tagger  the tagger to tag the documents with
+	 * @param out     where to write the xml of the documents
+	 */
+
+	public Pipeline(NamedEntitiesTagger tagger, Writer out) {
+		this.tagger = tagger;
+		this.out = out;
+	}
+
+	/** Sets the capacity of the queue in front of each stage */
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	/** Sets the number of threads of each stage */
+
+	public void setThreads(int read, int parse, int tag, int serialize) {
+		this.readThreads = read;
+		this.parseThreads = parse;
+		this.tagThreads = tag;
+		this.serializeThreads = serialize;
+	}
+
+	/** Runs the tasks' documents through the pipeline, writing the documents' xml as in <code>Documents.toXml()</code>.
+	 *  Blocks until all the documents are processed. A document failing in a stage, including failing to be
+	 *  written to the output, doesn't stop the pipeline : it is recorded in <code>getFailures()</code>.
+	 *
+	 * @param tasks
+	 * @throws IOException  if writing the start or the end of the documents' xml fails
+	 * @throws InterruptedException
+	 */
+
+	public void run(List<Task> tasks) throws IOException, InterruptedException {
+		Stage<Task, RawDocument> read = new Stage<Task, RawDocument>(READ, readThreads) {
+			RawDocument process(Task task) throws IOException {
+				InputStream is = task.open();
+				try {
+					return new RawDocument(task.name, readFully(is));
+				} finally {
+					is.close();
+				}
+			}
+		};
+		Stage<RawDocument, Document> parse = new Stage<RawDocument, Document>(PARSE, parseThreads) {
+			Document process(RawDocument raw) {
+				Parser parser = new Parser(new ByteBufferLexer(ByteBuffer.wrap(raw.bytes)), raw.name);
+				parser.setSymbolTable(tagger.getSymbolTable());
+				return parser.parseColumnarDocument();
+			}
+		};
+		Stage<Document, Document> tag = new Stage<Document, Document>(TAG, tagThreads) {
+			Document process(Document document) {
+				tagger.tag(document);
+				return document;
+			}
+		};
+		Stage<Document, Void> serialize = new Stage<Document, Void>(SERIALIZE, serializeThreads) {
+			Void process(Document document) throws IOException {
+				StringBuilder sb = new StringBuilder();
+				document.toXml(sb, "    ");
+				sb.append("\n");
+				synchronized(out) {
+					out.append(sb);
+				}
+				return null;
+			}
+		};
+		read.next = parse;
+		parse.next = tag;
+		tag.next = serialize;
+
+		List<Stage<?, ?>> all = new ArrayList<Stage<?, ?>>();
+		all.add(read);
+		all.add(parse);
+		all.add(tag);
+		all.add(serialize);
+		stages = all;
+
+		out.append("<documents>\n");
+
+		List<Thread> threads = new ArrayList<Thread>();
+		for(Stage<?, ?> stage : stages)stage.start(threads);
+
+		for(Task task : tasks)read.queue.put(task);
+		read.shutdown();
+
+		for(Thread thread : threads)thread.join();
+
+		out.append("</documents>");
+		out.flush();
+	}
+
+	/** @return the number of items waiting in the queue in front of the given stage, e.g. <code>TAG</code> */
+
+	public int getQueueDepth(String stage) {
+		for(Stage<?, ?> s : stages)if(s.name.equals(stage))return s.queue.size();
+		return 0;
+	}
+
+	/** @return the queue depth of each stage, in pipeline order */
+
+	public Map<String, Integer> getQueueDepths() {
+		Map<String, Integer> ret = new LinkedHashMap<String, Integer>();
+		for(Stage<?, ?> s : stages)ret.put(s.name, s.queue.size());
+		return ret;
+	}
+
+	/** @return the documents that failed in a stage, including writing their xml, with their errors */
+
+	public List<DocumentFailure> getFailures() {
+		synchronized(failures) {
+			return new ArrayList<DocumentFailure>(failures);
+		}
+	}
+
+	/** @return the name of the document of an item of a stage's queue */
+
+	static String nameOf(Object item) {
+		if(item instanceof Task)return ((Task) item).name;
+		if(item instanceof RawDocument)return ((RawDocument) item).name;
+		return ((Document) item).getName();
+	}
+
+	static byte[] readFully(InputStream is) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[64*1024];
+		int n;
+		while((n = is.read(buffer))!=-1)bos.write(buffer, 0, n);
+		return bos.toByteArray();
+	}
+}
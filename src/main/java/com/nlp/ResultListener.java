@@ -0,0 +1,11 @@
+package com.nlp;
+
+/**
+ *  Notified of each document as its task completes, and of each task that fails. Called by
+ *  <code>Completions.drain()</code> on the draining thread, in the order the tasks complete.
+ */
+
+public interface ResultListener extends DocumentListener {
+
+	void documentFailed(DocumentFailure failure);
+}
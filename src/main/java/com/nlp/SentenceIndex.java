@@ -0,0 +1,110 @@
+package com.nlp;
+
+import java.io.CharArrayReader;
+import java.util.Arrays;
+
+/**
+ *  An index of the places in an in-memory text where lexing can be restarted : the starts of sentences
+ *  at which the lexer has no pending state (see <code>WordSpan.getSentenceStart()</code>).
+ *
+ *  The text is divided into segments, each starting at such a place, and for each segment the index records
+ *  its start offset, the sentence number at its start, and the number of tokens and sentences before it.
+ *  Any range of segments can then be lexed on its own, yielding the same tokens and sentence numbers
+ *  as lexing the whole text. The index is built with one allocation free pass of the lexer.
+ */
+
+class SentenceIndex {
+
+	final char[] text;
+	final LexerTable table;
+
+	int segments;
+	int[] starts = new int[16];
+	int[] sentenceNumbers = new int[16];
+	long[] tokensBefore = new long[16];
+	long[] sentencesBefore = new long[16];
+
+	// token and sentence counts of the whole text
+	long tokens;
+	long sentences;
+
+	SentenceIndex(char[] text, LexerTable table) {
+		this.text = text;
+		this.table = table;
+		build();
+	}
+
+	private void build() {
+		addSegment(0, 0, 0, 0);
+
+		Lexer lex = new Lexer(new CharArrayReader(text), table);
+		WordSpan span = lex.getSpan();
+		int lastSentence = -1;
+
+		while(lex.nextSpan()) {
+			if(span.getSentenceNumber()!=lastSentence) {
+				lastSentence = span.getSentenceNumber();
+				long start = span.getSentenceStart();
+				if(start>starts[segments-1])addSegment((int) start, lastSentence, tokens, sentences);
+				sentences++;
+			}
+			tokens++;
+		}
+	}
+
+	private void addSegment(int start, int sentenceNumber, long tokensBefore, long sentencesBefore) {
+		if(segments==starts.length) {
+			starts = Arrays.copyOf(starts, segments*2);
+			sentenceNumbers = Arrays.copyOf(sentenceNumbers, segments*2);
+			this.tokensBefore = Arrays.copyOf(this.tokensBefore, segments*2);
+			this.sentencesBefore = Arrays.copyOf(this.sentencesBefore, segments*2);
+		}
+		starts[segments] = start;
+		sentenceNumbers[segments] = sentenceNumber;
+		this.tokensBefore[segments] = tokensBefore;
+		this.sentencesBefore[segments] = sentencesBefore;
+		segments++;
+	}
+
+	/** @return the offset where the given segment starts, segments being the end of the text */
+
+	int start(int segment) {
+		return segment<segments ? starts[segment] : text.length;
+	}
+
+	/** @return the number of tokens before the given segment, segments giving the total */
+
+	long tokensBefore(int segment) {
+		return segment<segments ? tokensBefore[segment] : tokens;
+	}
+
+	/** @return the number of sentences before the given segment, segments giving the total */
+
+	long sentencesBefore(int segment) {
+		return segment<segments ? sentencesBefore[segment] : sentences;
+	}
+
+	/** @return a lexer for the segments [from, to) */
+
+	Lexer lexer(int from, int to) {
+		Lexer lex = new Lexer(new CharArrayReader(text, start(from), start(to) - start(from)), table);
+		lex.startAtSentence(sentenceNumbers[from]);
+		return lex;
+	}
+
+	/** @return the segment in (from, to) closest to the middle of the range in terms of the given counts,
+	 *          or -1 if the range is a single segment */
+
+	int split(int from, int to, boolean bySentences) {
+		if(to - from < 2)return -1;
+		long middle = bySentences ? (sentencesBefore(from) + sentencesBefore(to)) / 2 : (tokensBefore(from) + tokensBefore(to)) / 2;
+
+		int lo = from + 1, hi = to - 1;
+		while(lo<hi) {
+			int mid = (lo + hi) >>> 1;
+			if((bySentences ? sentencesBefore(mid) : tokensBefore(mid)) < middle)lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,18 @@
+package com.nlp;
+
+import com.nlp.schema.Sentence;
+
+/**
+ *  Receives the sentences of a document as they are parsed, see <code>Parser.parse()</code>.
+ */
+
+public interface SentenceListener {
+
+	/** Called with each sentence once it is complete, i.e. once the lexer has moved on to the next sentence
+	 *  or reached the end of the input. The parser keeps no reference to the sentence.
+	 *
+	 * @param sentence
+	 */
+
+	void sentence(Sentence sentence) throws Exception;
+}
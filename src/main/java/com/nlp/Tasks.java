@@ -1,23 +1,33 @@
 package com.nlp;
 
+import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import com.nlp.Tasks.Task;
+import com.nlp.ner.EntityDictionary;
 import com.nlp.ner.NamedEntitiesTagger;
 import com.nlp.schema.Document;
 import com.nlp.schema.Documents;
 import com.nlp.schema.Sentence;
+import com.nlp.source.DocumentEntry;
+import com.nlp.source.DocumentSource;
+import com.nlp.source.ZipDocumentSource;
 
 
 /**
@@ -39,11 +49,15 @@ public class Tasks {
 	 *
 	 */
 	
-	static class Task implements Callable<Document> {
+	public static class Task implements Callable<Document> {
 		InputStream is;
 		String name;		
 		NamedEntitiesTagger tagger;
 		Future<Document> future;
+		DocumentListener listener;
+		EntityDictionary dictionary;
+		long size;          // the size of the document in bytes, or 0 if unknown
+		DocumentEntry entry;
 
 		public Task(InputStream is, String name, NamedEntitiesTagger tagger) {
 			this.is = is;
@@ -51,33 +65,202 @@ public class Tasks {
 			this.tagger = tagger;
 		}
 
-		/**  Parses the document and tags the named entities in it. 
+		/** A task opening the entry only when it runs */
+		
+		public Task(DocumentEntry entry, NamedEntitiesTagger tagger) {
+			this(null, entry.getName(), tagger);
+			this.entry = entry;
+			this.size = Math.max(entry.getSize(), 0);
+		}
+
+		/**  Parses the document into a compact <code>ColumnarDocument</code> and tags the named entities in it. 
 		 * 
 		 */
 		
 		public Document call() throws Exception {
-			Reader reader = new InputStreamReader(is, "UTF-8");
-			Parser parser = new Parser(reader, name);
-			Document document = parser.parseDocument();
-			
-			// tag the tokens that match the named entities			
-			for(Sentence sentence : document.getSentences()){
-				tagger.tagExact(sentence.getWords());
-				tagger.tagInexact(sentence.getWords());
+			begin();
+			Document document = parse();
+			tag(document);
+			return completed(document);
+		}
+		
+		/** parse the document, without tagging it */
+		
+		Document parse() throws Exception {
+			Reader reader = new InputStreamReader(open(), "UTF-8");
+			try {
+				Parser parser = new Parser(reader, name);
+				parser.setSymbolTable(tagger.getSymbolTable());
+				return parser.parseColumnarDocument();
+			} finally {
+				reader.close();
 			}
-			
-			reader.close();
+		}
+		
+		/** take the snapshot of the dictionary the whole document is tagged with, even if the tagger is reloaded meanwhile */
+		
+		void begin() {
+			dictionary = tagger.getDictionary();
+		}
+		
+		/** tag the tokens that match the named entities */
+		
+		void tag(Document document) {
+			tagger.tag(document, dictionary);
+		}
+		
+		void tag(Sentence sentence) {
+			tagger.tag(sentence.getWords(), dictionary);
+		}
+		
+		/** tag a range of the sentences of a document, the caller setting the document's dictionary version */
+		
+		void tag(List<Sentence> sentences) {
+			tagger.tagSentences(sentences, dictionary);
+		}
+		
+		/** @return whether the document can be parsed and tagged in separate steps, its sentences tagged in parallel */
+		
+		boolean isSplittable() {
+			return true;
+		}
+		
+		/** notify the listener, if any, of the tagged document */
+		
+		Document completed(Document document) {
+			if(listener!=null)listener.documentCompleted(document);
 			return document;
 		}
+		
+		public void setListener(DocumentListener listener) {
+			this.listener = listener;
+		}
 
+		/** @return the stream of the document's bytes, opening the entry if the task has one */
+		
+		InputStream open() throws IOException {
+			return entry!=null ? entry.open() : is;
+		}
+		
 		public void setFuture(Future<Document> future) {
 			this.future=future;
 		}
+		
+		/** @return the size of the document in bytes, or 0 if unknown */
+		
+		public long getSize() {
+			return size;
+		}
+		
+		public void setSize(long size) {
+			this.size = size;
+		}
+	}
+	
+	
+	/** A task that tags and serializes each sentence as soon as it is parsed, writing the document's xml
+	 *  to the given writer, so it holds only one sentence in memory at a time rather than the whole document.
+	 *  The returned document, which the listener is notified of, has no sentences.
+	 */
+	
+	static class StreamingTask extends Task {
+		Writer out;
+		
+		public StreamingTask(InputStream is, String name, NamedEntitiesTagger tagger, Writer out) {
+			super(is, name, tagger);
+			this.out = out;
+		}
+		
+		boolean isSplittable() {
+			return false;
+		}
+		
+		public Document call() throws Exception {
+			begin();
+			Reader reader = new InputStreamReader(open(), "UTF-8");
+			Document document = new Document(name);
+			try {
+				Parser parser = new Parser(reader, name);
+				parser.setSymbolTable(tagger.getSymbolTable());
+				
+				document.setDictionaryVersion(dictionary.getVersion());
+				final StringBuilder sb = new StringBuilder();
+				document.xmlStart(sb, "");
+				
+				parser.parse(new SentenceListener() {
+					public void sentence(Sentence sentence) throws IOException {
+						tag(sentence);
+						Document.sentenceToXml(sb, "", "    ", sentence);
+						out.append(sb);
+						sb.setLength(0);
+					}
+				});
+				
+				document.xmlEnd(sb, "");
+				out.append(sb);
+				out.flush();
+			} finally {
+				reader.close();
+			}
+			return completed(document);
+		}
+	}
+	
+	
+	/** A task that parses a plain UTF-8 file by memory-mapping it and lexing the bytes directly,
+	 *  skipping the InputStreamReader decoding and copying. Files larger than four chunks (by default 
+	 *  <code>PARALLEL_THRESHOLD</code>) are split into chunks that are lexed in parallel by a <code>ParallelParser</code>.
+	 */
+	
+	static class MappedFileTask extends Task {
+		static final long PARALLEL_THRESHOLD = 4*ParallelParser.DEFAULT_CHUNK_SIZE;
+		
+		File file;
+		ExecutorService executor;
+		long chunkSize = ParallelParser.DEFAULT_CHUNK_SIZE;
+		
+		public MappedFileTask(File file, NamedEntitiesTagger tagger) {
+			super(null, file.getName(), tagger);
+			this.file = file;
+			this.size = file.length();
+		}
+		
+		/** Lex the chunks of a large file on the given executor rather than on the common pool
+		 * 
+		 * @param executor
+		 * @param chunkSize  the size of the chunks, the file being split if it is larger than four chunks
+		 */
+		
+		void setParallelParsing(ExecutorService executor, long chunkSize) {
+			this.executor = executor;
+			this.chunkSize = chunkSize;
+		}
+		
+		InputStream open() throws IOException {
+			return new FileInputStream(file);
+		}
+		
+		Document parse() throws Exception {
+			FileInputStream fis = new FileInputStream(file);
+			try {
+				FileChannel channel = fis.getChannel();
+				if(channel.size()>4*chunkSize) {
+					ParallelParser parser = executor==null ? new ParallelParser(channel, name) : new ParallelParser(channel, name, executor, chunkSize);
+					parser.setSymbolTable(tagger.getSymbolTable());
+					return parser.parseDocument();
+				}
+				Parser parser = new Parser(new ByteBufferLexer(channel), name);
+				parser.setSymbolTable(tagger.getSymbolTable());
+				return parser.parseColumnarDocument();
+			} finally {
+				fis.close();
+			}
+		}
 	}
 	
 	
 	/** Create the tasks by assigning each nlp_data/*.txt file in the zip file
-	 *  to a task
+	 *  to a task. The entries are opened only when their tasks run.
 	 *
 	 * @param zipFile
 	 * @return
@@ -85,17 +268,40 @@ public class Tasks {
 	 */
 	
 	public static List<Task> getTasksFromZip(ZipFile zipFile, NamedEntitiesTagger tagger) throws Exception {
-		List<Task> ret = new ArrayList<Task>();		
+		return getTasks(new ZipDocumentSource(zipFile, "nlp_data/", false), tagger);
+	}
+	
+	
+	/** Create a task for each document of the source, which opens the document only when it runs
+	 *
+	 * @param source
+	 * @param tagger
+	 * @return
+	 */
+	
+	public static List<Task> getTasks(DocumentSource source, NamedEntitiesTagger tagger) {
+		List<Task> ret = new ArrayList<Task>();
+		for(Iterator<DocumentEntry> entries = source.entries(); entries.hasNext();)ret.add(new Task(entries.next(), tagger));
+		return ret;
+	}
+	
+	
+	/** Create the tasks by assigning each *.txt file in the given directory to a 
+	 *  memory-mapped file task
+	 *
+	 * @param directory
+	 * @return
+	 */
+	
+	public static List<Task> getTasksFromDirectory(File directory, NamedEntitiesTagger tagger) {
+		List<Task> ret = new ArrayList<Task>();
+		
+		File[] files = directory.listFiles();
+		if(files==null)return ret;
+		Arrays.sort(files);
 		
-		Enumeration<?> entries = zipFile.entries();		
-		while (entries.hasMoreElements()) {
-			ZipEntry zipEntry = (ZipEntry) entries.nextElement();
-			
-			String name = zipEntry.getName();
-			if (name.startsWith("nlp_data/") && name.endsWith(".txt")) {
-				Task task = new Task(zipFile.getInputStream(zipEntry), name, tagger);
-				ret.add(task);				
-			}			
+		for(File file : files) {
+			if(file.isFile() && file.getName().endsWith(".txt"))ret.add(new MappedFileTask(file, tagger));
 		}
 		
 		return ret;
@@ -112,19 +318,54 @@ public class Tasks {
 		for(Task task : tasks)task.setFuture(executor.submit(task));		
 	}
 	
-	/** Waits for the completion of the tasks
+	/** Submit the tasks to the executor, notifying the listener of each document as its task completes
+	 * 
+	 * @param executor
+	 * @param tasks
+	 * @param listener
+	 */
+	
+	public static void submitTasks(ExecutorService executor, List<Task> tasks, DocumentListener listener) {
+		for(Task task : tasks)task.setListener(listener);
+		submitTasks(executor, tasks);
+	}
+	
+	/** Waits for the completion of the tasks, in the order of the tasks. The tasks that failed are reported on
+	 *  the standard error. 
+	 *  
 	 * @param tasks 
 	 * @return A documents object containing the list of documents processed by the tasks
 	 */
 	
 	public static Documents waitForCompletion(List<Task> tasks) {
+		List<DocumentFailure> failures = new ArrayList<DocumentFailure>();
+		Documents documents = waitForCompletion(tasks, failures);
+		for(DocumentFailure failure : failures)System.err.println("Failed to process " + failure);
+		return documents;
+	}
+	
+	/** Waits for the completion of the tasks, in the order of the tasks. If the waiting thread is interrupted,
+	 *  the tasks not completed yet are recorded as failed, and the thread's interrupt status is kept. 
+	 *  
+	 * @param tasks 
+	 * @param failures  the list to add the failures of the tasks that failed to 
+	 * @return A documents object containing the list of documents processed by the tasks that completed successfully
+	 */
+	
+	public static Documents waitForCompletion(List<Task> tasks, List<DocumentFailure> failures) {
 		Documents documents = new Documents();
 		for(Task task : tasks) {
 			Future<Document> future = task.future;
 			try {
 				Document document = future.get();			    
 				documents.addDocument(document);
-			} catch(Exception e) {				
+			} catch(ExecutionException e) {				
+				failures.add(new DocumentFailure(task.name, e.getCause()));
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failures.add(new DocumentFailure(task.name, e));
+			} catch(CancellationException e) {
+				failures.add(new DocumentFailure(task.name, e));
 			}
 		}
 		return documents;
@@ -0,0 +1,184 @@
+package com.nlp;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.nlp.schema.Sentence;
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+/**
+ *  <code>Stream</code>s of the tokens and sentences of a text.
+ *
+ *  Streams over a <code>Lexer</code> are sequential. Streams over an in-memory text are backed by a
+ *  <code>SentenceIndex</code> : they know their exact size, and split on sentence boundaries, so they can
+ *  be processed with parallel streams or fork-join. The tokens and sentence numbers are the same as
+ *  lexing the whole text sequentially, and the streams are ordered, so collecting them keeps the text order.
+ */
+
+public class TokenStreams {
+
+	private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.NONNULL;
+	private static final int SIZED_CHARACTERISTICS = CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE;
+
+	/** @return a sequential stream of the lexer's tokens */
+
+	public static Stream<Token> tokens(Lexer lex) {
+		return StreamSupport.stream(new LexerSpliterator(lex, null), false);
+	}
+
+	/** @return a sequential stream of the lexer's sentences */
+
+	public static Stream<Sentence> sentences(Lexer lex) {
+		return StreamSupport.stream(new SentenceSpliterator(lex, null), false);
+	}
+
+	/** @return a sized, splittable stream of the text's tokens */
+
+	public static Stream<Token> tokens(CharSequence text) {
+		return tokens(text, null);
+	}
+
+	/** @return a sized, splittable stream of the text's tokens, whose words are interned in the given table */
+
+	public static Stream<Token> tokens(CharSequence text, SymbolTable symbols) {
+		SentenceIndex index = new SentenceIndex(toChars(text), LexerTable.DEFAULT);
+		return StreamSupport.stream(new IndexedSpliterator<Token>(index, 0, index.segments, symbols, false), false);
+	}
+
+	/** @return a sized, splittable stream of the text's sentences */
+
+	public static Stream<Sentence> sentences(CharSequence text) {
+		return sentences(text, null);
+	}
+
+	/** @return a sized, splittable stream of the text's sentences, whose words are interned in the given table */
+
+	public static Stream<Sentence> sentences(CharSequence text, SymbolTable symbols) {
+		SentenceIndex index = new SentenceIndex(toChars(text), LexerTable.DEFAULT);
+		return StreamSupport.stream(new IndexedSpliterator<Sentence>(index, 0, index.segments, symbols, true), false);
+	}
+
+	private static char[] toChars(CharSequence text) {
+		char[] chars = new char[text.length()];
+		text.toString().getChars(0, chars.length, chars, 0);
+		return chars;
+	}
+
+	private static Token toToken(WordSpan span, SymbolTable symbols) {
+		return symbols==null ? span.toToken() : span.toToken(symbols);
+	}
+
+
+	/** Tokens from a lexer, without the null token the iterator returns at the end of some inputs */
+
+	static class LexerSpliterator extends Spliterators.AbstractSpliterator<Token> {
+		Lexer lex;
+		SymbolTable symbols;
+
+		LexerSpliterator(Lexer lex, SymbolTable symbols) {
+			super(Long.MAX_VALUE, CHARACTERISTICS);
+			this.lex = lex;
+			this.symbols = symbols;
+		}
+
+		public boolean tryAdvance(Consumer<? super Token> action) {
+			if(!lex.nextSpan())return false;
+			action.accept(toToken(lex.getSpan(), symbols));
+			return true;
+		}
+	}
+
+
+	/** Groups the tokens from a lexer into sentences */
+
+	static class SentenceSpliterator extends Spliterators.AbstractSpliterator<Sentence> {
+		Lexer lex;
+		SymbolTable symbols;
+		Token pending;       // the first token of the next sentence
+
+		SentenceSpliterator(Lexer lex, SymbolTable symbols) {
+			super(Long.MAX_VALUE, CHARACTERISTICS);
+			this.lex = lex;
+			this.symbols = symbols;
+		}
+
+		public boolean tryAdvance(Consumer<? super Sentence> action) {
+			if(pending==null) {
+				if(!lex.nextSpan())return false;
+				pending = toToken(lex.getSpan(), symbols);
+			}
+
+			Sentence sentence = new Sentence(pending.getSentenceNumber());
+			sentence.addWord(pending);
+			pending = null;
+
+			while(lex.nextSpan()) {
+				Token token = toToken(lex.getSpan(), symbols);
+				if(token.getSentenceNumber()!=sentence.getNum()) {
+					pending = token;
+					break;
+				}
+				sentence.addWord(token);
+			}
+
+			action.accept(sentence);
+			return true;
+		}
+	}
+
+
+	/** Tokens or sentences of the segments [from, to) of an indexed text */
+
+	static class IndexedSpliterator<T> implements Spliterator<T> {
+		SentenceIndex index;
+		int from, to;
+		SymbolTable symbols;
+		boolean bySentences;
+
+		// created on the first advance, once the range is no longer split
+		Spliterator<?> delegate;
+		long consumed;
+
+		IndexedSpliterator(SentenceIndex index, int from, int to, SymbolTable symbols, boolean bySentences) {
+			this.index = index;
+			this.from = from;
+			this.to = to;
+			this.symbols = symbols;
+			this.bySentences = bySentences;
+		}
+
+		@SuppressWarnings("unchecked")
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if(delegate==null) {
+				Lexer lex = index.lexer(from, to);
+				delegate = bySentences ? new SentenceSpliterator(lex, symbols) : new LexerSpliterator(lex, symbols);
+			}
+			if(!((Spliterator<T>) delegate).tryAdvance(action))return false;
+			consumed++;
+			return true;
+		}
+
+		public Spliterator<T> trySplit() {
+			if(delegate!=null)return null;
+			int mid = index.split(from, to, bySentences);
+			if(mid<0)return null;
+
+			Spliterator<T> prefix = new IndexedSpliterator<T>(index, from, mid, symbols, bySentences);
+			from = mid;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			long size = bySentences ? index.sentencesBefore(to) - index.sentencesBefore(from) : index.tokensBefore(to) - index.tokensBefore(from);
+			return size - consumed;
+		}
+
+		public int characteristics() {
+			return SIZED_CHARACTERISTICS;
+		}
+	}
+}
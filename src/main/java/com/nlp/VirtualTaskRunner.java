@@ -0,0 +1,177 @@
+package com.nlp;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nlp.Tasks.Task;
+import com.nlp.schema.Document;
+
+
+/**
+ *  Runs each task on its own (virtual) thread, for documents read from slow sources such as network file systems
+ *  or decompression streams : reading a document only blocks its own thread, so thousands of documents can be
+ *  read at the same time, while lexing, parsing and tagging them is limited to as many documents at a time as
+ *  there are permits, by default one per core.
+ *
+ *  A task reads the whole document into memory first, then waits for a permit to parse and tag it. Streaming
+ *  tasks, which parse as they read, hold a permit for their whole run. So that the documents read don't pile up
+ *  in the heap when parsing and tagging is the bottleneck, a second semaphore bounds the documents in flight,
+ *  i.e. being read or read and not parsed yet : the tasks beyond it wait before reading.
+ *
+ *  The threads are virtual threads when the JVM has them (Java 21 and later, found by reflection so the code
+ *  still builds for Java 8). Otherwise they are the threads of a fixed pool with as many platform threads as
+ *  documents in flight, a much smaller number by default, and the runner says so on the standard error.
+ */
+
+public class VirtualTaskRunner {
+
+	/** The default number of documents in flight with virtual threads, and with platform threads */
+
+	public static final int DEFAULT_IN_FLIGHT = 10000;
+	public static final int DEFAULT_PLATFORM_IN_FLIGHT = 256;
+
+	final ExecutorService executor;
+	final boolean virtual;
+	final Semaphore permits;
+	final Semaphore inFlight;
+	final AtomicInteger reading = new AtomicInteger();
+	final AtomicInteger maxReading = new AtomicInteger();
+
+	public VirtualTaskRunner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public VirtualTaskRunner(int cpuPermits) {
+		this(cpuPermits, 0);
+	}
+
+	/**
+	 * @param cpuPermits   the number of documents lexed, parsed and tagged at a time
+	 * @param maxInFlight  the number of documents being read or held in memory at a time, or 0 for the default,
+	 *                     <code>DEFAULT_IN_FLIGHT</code> with virtual threads and <code>DEFAULT_PLATFORM_IN_FLIGHT</code> without
+	 */
+
+	public VirtualTaskRunner(int cpuPermits, int maxInFlight) {
+		ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+		this.virtual = virtualExecutor!=null;
+		if(maxInFlight<=0)maxInFlight = virtual ? DEFAULT_IN_FLIGHT : DEFAULT_PLATFORM_IN_FLIGHT;
+		if(virtual)this.executor = virtualExecutor;
+		else {
+			System.err.println("No virtual threads in this JVM, running the tasks on " + maxInFlight + " platform threads");
+			this.executor = Executors.newFixedThreadPool(maxInFlight);
+		}
+		this.permits = new Semaphore(cpuPermits);
+		this.inFlight = new Semaphore(maxInFlight);
+	}
+
+	/** @return an executor starting a virtual thread per task, or null if the JVM has no virtual threads */
+
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch(Exception e) {
+			return null;
+		}
+	}
+
+	/** @return whether the tasks run on virtual threads, rather than on the platform threads of a fixed pool */
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	/** Starts a thread for each task, setting its future. Wait for them with <code>Tasks.waitForCompletion()</code>.
+	 *
+	 * @param tasks
+	 */
+
+	public void submitTasks(List<Task> tasks) {
+		for(final Task task : tasks) {
+			task.setFuture(executor.submit(new Callable<Document>() {
+				public Document call() throws Exception {
+					return run(task);
+				}
+			}));
+		}
+	}
+
+	/** Submits the tasks, notifying the listener of each document as its task completes */
+
+	public void submitTasks(List<Task> tasks, DocumentListener listener) {
+		for(Task task : tasks)task.setListener(listener);
+		submitTasks(tasks);
+	}
+
+	Document run(Task task) throws Exception {
+		if(!task.isSplittable()) {
+			permits.acquire();
+			try {
+				return task.call();
+			} finally {
+				permits.release();
+			}
+		}
+
+		inFlight.acquire();
+		try {
+			task.begin();
+			byte[] bytes;
+			int count = reading.incrementAndGet();
+			for(int max; count>(max = maxReading.get()) && !maxReading.compareAndSet(max, count);) {}
+			InputStream is = task.open();
+			try {
+				bytes = Pipeline.readFully(is);
+			} finally {
+				is.close();
+				reading.decrementAndGet();
+			}
+
+			Document document;
+			permits.acquire();
+			try {
+				Parser parser = new Parser(new ByteBufferLexer(ByteBuffer.wrap(bytes)), task.name);
+				parser.setSymbolTable(task.tagger.getSymbolTable());
+				document = parser.parseColumnarDocument();
+				task.tag(document);
+			} finally {
+				permits.release();
+			}
+			return task.completed(document);
+		} finally {
+			inFlight.release();
+		}
+	}
+
+	/** @return the number of documents being read */
+
+	public int getReading() {
+		return reading.get();
+	}
+
+	/** @return the largest number of documents read at the same time */
+
+	public int getMaxReading() {
+		return maxReading.get();
+	}
+
+	/** Stops the executor once the submitted tasks complete
+	 *
+	 * @param timeout  the time to wait for the tasks, in milliseconds
+	 * @return whether the tasks completed
+	 * @throws InterruptedException
+	 */
+
+	public boolean shutdown(long timeout) throws InterruptedException {
+		executor.shutdown();
+		return executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+	}
+}
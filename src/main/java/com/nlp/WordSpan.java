@@ -0,0 +1,145 @@
+package com.nlp;
+
+import com.nlp.schema.SymbolCodes;
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+/**
+ *  A reusable, mutable view (flyweight) of the word the <code>Lexer</code> is currently positioned on.
+ *
+ *  The span does not hold its content as a String, it points into a char buffer (offset and length)
+ *  that is overwritten on the next call to <code>Lexer.nextSpan()</code>. This allows consumers to inspect
+ *  words, their surrounding symbols and sentence numbers without any per-word allocation.
+ *  Call <code>toToken()</code> to get a self-contained copy of the current word.
+ */
+
+public class WordSpan implements CharSequence {
+
+	// the word characters, valid in [0, length)
+	char[] chars = new char[64];
+	int length;
+
+	// symbols surrounding (before and after) the word, if any
+	final StringBuilder beforeSymbol = new StringBuilder();
+	final StringBuilder afterSymbol = new StringBuilder();
+
+	int sentenceNumber;
+	long sentenceStart;
+
+	void append(char c) {
+		if(length==chars.length)grow(length+1);
+		chars[length++] = c;
+	}
+
+	void append(char[] src, int offset, int len) {
+		if(length+len>chars.length)grow(length+len);
+		System.arraycopy(src, offset, chars, length, len);
+		length += len;
+	}
+
+	private void grow(int minCapacity) {
+		char[] newChars = new char[Math.max(minCapacity, chars.length*2)];
+		System.arraycopy(chars, 0, newChars, 0, length);
+		chars = newChars;
+	}
+
+	void clear() {
+		length = 0;
+		beforeSymbol.setLength(0);
+		afterSymbol.setLength(0);
+	}
+
+	/** @return the buffer holding the word characters. Only valid until the lexer advances. */
+
+	public char[] getChars() {
+		return chars;
+	}
+
+	/** @return the offset of the word's first character in <code>getChars()</code> */
+
+	public int getOffset() {
+		return 0;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if(index<0 || index>=length)throw new IndexOutOfBoundsException(String.valueOf(index));
+		return chars[index];
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		return new String(chars, start, end-start);
+	}
+
+	public int getSentenceNumber() {
+		return sentenceNumber;
+	}
+
+	/** @return the position in the lexer's input where the word's sentence starts, or -1 if the sentence 
+	 *          does not start at a clean boundary (i.e. symbols before the sentence's first word precede the boundary)
+	 *          and lexing cannot be restarted there */
+
+	public long getSentenceStart() {
+		return sentenceStart;
+	}
+
+	public CharSequence getBeforeSymbol() {
+		return beforeSymbol;
+	}
+
+	public CharSequence getAfterSymbol() {
+		return afterSymbol;
+	}
+
+	/** @return true if the given symbol is among the symbols after the word, e.g. the apostrophe in "Joe's" */
+
+	public boolean hasAfterSymbol(char symbol) {
+		for(int i=0;i<afterSymbol.length();i++)if(afterSymbol.charAt(i)==symbol)return true;
+		return false;
+	}
+
+	/** @return true if the word content equals the given string, ignoring case */
+
+	public boolean contentEqualsIgnoreCase(String str) {
+		if(str.length()!=length)return false;
+		for(int i=0;i<length;i++) {
+			char a = chars[i], b = str.charAt(i);
+			if(a!=b && Character.toUpperCase(a)!=Character.toUpperCase(b) && Character.toLowerCase(a)!=Character.toLowerCase(b))return false;
+		}
+		return true;
+	}
+
+	/** Creates a self-contained token from the current word
+	 *
+	 * @return the token
+	 */
+
+	public Token toToken() {
+		return new Token(toString(), symbolString(beforeSymbol), symbolString(afterSymbol), sentenceNumber);
+	}
+
+	/** Creates a self-contained token from the current word, interning the word in the given table,
+	 *  so that the token shares the table's String for it
+	 *
+	 * @param symbols
+	 * @return the token
+	 */
+
+	public Token toToken(SymbolTable symbols) {
+		int wordId = symbols.intern(this);
+		long symbolCodes = SymbolCodes.encode(beforeSymbol, afterSymbol);
+		if(symbolCodes==SymbolCodes.NOT_ENCODED)return new Token(symbols, wordId, beforeSymbol.toString(), afterSymbol.toString(), sentenceNumber);
+		return new Token(symbols, wordId, symbolCodes, sentenceNumber);
+	}
+
+	private static String symbolString(StringBuilder symbol) {
+		return symbol.length()==0 ? "" : symbol.toString();
+	}
+
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+}
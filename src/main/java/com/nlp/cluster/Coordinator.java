@@ -0,0 +1,482 @@
+package com.nlp.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import com.nlp.DocumentFailure;
+import com.nlp.EntityAggregator;
+import com.nlp.ner.NamedEntity;
+import com.nlp.source.DocumentEntry;
+import com.nlp.source.DocumentSource;
+import com.nlp.source.DocumentSources;
+
+
+/**
+ *  Processes a corpus with several worker JVMs on the same machine, so the corpus isn't limited by the heap
+ *  (and the garbage collection) of a single JVM.
+ *
+ *  The coordinator lists the documents of the source and partitions them in one shard per worker, by size
+ *  (the largest documents first, each to the shard with the smallest total so far) or by the hash of their
+ *  names. It launches the workers with a <code>ProcessBuilder</code>, each running <code>Worker</code> with its
+ *  own tagger and its share of the cores, and sends each worker that connects (on a loopback socket) a shard at a time. The workers stream
+ *  back the xml and the entity counts of each document, which are merged as they arrive : the counts into an
+ *  <code>EntityAggregator</code>, and the xml appended to a temporary file, so the coordinator holds the names
+ *  and the counts of the documents but not their xml, which <code>writeXml()</code> copies from the file in the
+ *  order of the source.
+ *
+ *  Each worker sends a heartbeat several times per timeout, from its own thread, while it is busy too. A worker
+ *  that exits, closes its connection or sends nothing, not even a heartbeat, for longer than the timeout (or
+ *  doesn't connect within it) is considered crashed :
+ *  its process is destroyed, the documents of its shard it didn't send back are queued again as a shard for the
+ *  other workers, and a replacement worker is launched, up to a maximum number of restarts. The run fails if
+ *  all the workers crashed and no restart is left.
+ *
+ *  Usage : java com.nlp.cluster.Coordinator source dictionary [workers]
+ */
+
+public class Coordinator {
+
+	/** The documents of a shard, by name */
+
+	static class Shard {
+		final List<String> names;
+
+		Shard(List<String> names) {
+			this.names = names;
+		}
+	}
+
+	final String source;
+	final String dictionary;
+	final int workers;
+	boolean partitionBySize = true;
+	int maxRestarts;
+	int timeout = 60000;
+	List<String> jvmArguments = Collections.emptyList();
+	Class<? extends Worker> workerClass = Worker.class;
+
+	final List<String> names = new ArrayList<String>();
+	final Set<String> processed = new HashSet<String>();
+	final Map<String, long[]> xmlRanges = new HashMap<String, long[]>();    // the offset and length of each document's xml in the spill file
+	File spillFile;
+	RandomAccessFile spill;
+	long spillSize;
+	final EntityAggregator aggregator = new EntityAggregator();
+	final List<DocumentFailure> failures = new ArrayList<DocumentFailure>();
+	final BlockingDeque<Shard> shards = new LinkedBlockingDeque<Shard>();
+	final Map<Integer, Process> launched = new HashMap<Integer, Process>();    // the workers not connected yet
+	final Map<Integer, Long> launchTimes = new HashMap<Integer, Long>();
+	final List<Thread> connections = new ArrayList<Thread>();
+	ServerSocket server;
+	int nextId, live, crashes, restarts, done;
+
+	/**
+	 * @param source      the document source (zip, tar or gzip file, or directory), opened by each worker
+	 * @param dictionary  the named entities dictionary of the workers' taggers
+	 * @param workers     the number of workers
+	 */
+
+	public Coordinator(String source, String dictionary, int workers) {
+		this.source = source;
+		this.dictionary = dictionary;
+		this.workers = workers;
+		this.maxRestarts = workers;
+	}
+
+	/** Partition the documents by size (the default), or by the hash of their names */
+
+	public void setPartitionBySize(boolean partitionBySize) {
+		this.partitionBySize = partitionBySize;
+	}
+
+	/** Sets the maximum number of workers launched to replace crashed ones, by default the number of workers */
+
+	public void setMaxRestarts(int maxRestarts) {
+		this.maxRestarts = maxRestarts;
+	}
+
+	/** Sets the time in milliseconds after which a worker that sent nothing, not even a heartbeat, is considered crashed */
+
+	public void setTimeout(int timeout) {
+		this.timeout = timeout;
+	}
+
+	/** Sets the arguments of the workers' JVMs, e.g. <code>-Xmx2g</code> */
+
+	public void setJvmArguments(List<String> jvmArguments) {
+		this.jvmArguments = jvmArguments;
+	}
+
+	/** Sets the main class of the workers, <code>Worker</code> or a subclass of it with its own <code>main()</code> */
+
+	public void setWorkerClass(Class<? extends Worker> workerClass) {
+		this.workerClass = workerClass;
+	}
+
+	/** Processes the documents of the source with the workers, and waits for all of them to be processed
+	 *
+	 * @throws IOException  if the source can't be read, or all the workers crashed
+	 * @throws InterruptedException
+	 */
+
+	public void run() throws IOException, InterruptedException {
+		Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+		DocumentSource documents = DocumentSources.open(new File(source));
+		try {
+			for(Iterator<DocumentEntry> it = documents.entries(Collections.<String>emptySet()); it.hasNext();) {     // the names and sizes, without spilling a tar.gz
+				DocumentEntry entry = it.next();
+				sizes.put(entry.getName(), entry.getSize());
+			}
+		} finally {
+			documents.close();
+		}
+		names.addAll(sizes.keySet());
+		for(List<String> shard : partitionBySize ? partitionBySize(sizes, workers) : partitionByHash(names, workers)) {
+			if(!shard.isEmpty())shards.add(new Shard(shard));
+		}
+
+		spillFile = File.createTempFile("documents", ".xml");
+		spill = new RandomAccessFile(spillFile, "rw");
+
+		server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		server.setSoTimeout(100);
+		try {
+			synchronized(this) {
+				for(int i=0;i<workers;i++)launch();
+			}
+			while(!isDone()) {
+				accept();
+				checkLaunched();
+				synchronized(this) {
+					if(live==0 && !isDone())throw new IOException("All the workers crashed, " + (names.size() - done) + " documents not processed");
+				}
+			}
+			for(Thread connection : connections())connection.join(timeout);
+		} finally {
+			// a replacement launched while the last documents were completed isn't needed anymore
+			List<Process> unused;
+			synchronized(this) {
+				unused = new ArrayList<Process>(launched.values());
+				launched.clear();
+			}
+			for(Process process : unused)process.destroy();
+			for(Process process : unused)process.waitFor(timeout, TimeUnit.MILLISECONDS);
+			server.close();
+		}
+	}
+
+	/** Launches a worker process */
+
+	private synchronized void launch() throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(jvmArguments);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(workerClass.getName());
+		command.add(server.getInetAddress().getHostAddress());
+		command.add(Integer.toString(server.getLocalPort()));
+		command.add(Integer.toString(nextId));
+		command.add(source);
+		command.add(dictionary);
+		command.add(Integer.toString(Math.max(1, timeout/4)));
+		command.add(Integer.toString(Math.max(1, Runtime.getRuntime().availableProcessors()/workers)));     // the worker's threads, sharing the cores
+
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		launched.put(nextId, builder.start());
+		launchTimes.put(nextId++, System.currentTimeMillis());
+		live++;
+	}
+
+	/** Accepts the connection of a worker, if one is waiting, and starts serving it on its own thread */
+
+	private void accept() throws IOException {
+		final Socket socket;
+		try {
+			socket = server.accept();
+		} catch(SocketTimeoutException e) {
+			return;
+		}
+		socket.setSoTimeout(timeout);
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		final int id;
+		final Process process;
+		try {
+			if(in.readByte()!=Protocol.HELLO)throw new IOException("Unexpected message");
+			id = in.readInt();
+		} catch(IOException e) {
+			socket.close();
+			return;
+		}
+		synchronized(this) {
+			process = launched.remove(id);
+		}
+		if(process==null) {
+			socket.close();
+			return;
+		}
+
+		Thread connection = new Thread(new Runnable() {
+			public void run() {
+				serve(id, process, socket, in, out);
+			}
+		}, "coordinator-worker-" + id);
+		synchronized(this) {
+			connections.add(connection);
+		}
+		connection.start();
+	}
+
+	/** Detects the workers that exited, or didn't connect within the timeout */
+
+	private void checkLaunched() throws IOException {
+		synchronized(this) {
+			int dead = 0;
+			for(Iterator<Map.Entry<Integer, Process>> it = launched.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Integer, Process> worker = it.next();
+				Process process = worker.getValue();
+				if(!process.isAlive() || System.currentTimeMillis() - launchTimes.get(worker.getKey())>timeout) {
+					process.destroy();
+					it.remove();
+					dead++;
+				}
+			}
+			for(int i=0;i<dead;i++)crashed();     // launching the replacements outside the iteration
+		}
+	}
+
+	/** Sends the shards to a worker until there is none left, then says bye */
+
+	private void serve(int id, Process process, Socket socket, DataInputStream in, DataOutputStream out) {
+		Shard shard = null;
+		Set<String> received = new HashSet<String>();
+		try {
+			while(true) {
+				shard = shards.poll(100, TimeUnit.MILLISECONDS);
+				if(shard==null) {
+					if(isDone())break;
+					continue;     // another worker may crash, and its shard come back
+				}
+
+				received.clear();
+				Protocol.writeShard(out, shard.names);
+				for(byte type; (type = in.readByte())!=Protocol.DONE;) {
+					if(type==Protocol.HEARTBEAT)continue;     // the timeout of the socket is reset by any message
+					String name = Protocol.readString(in);
+					if(type==Protocol.DOCUMENT) {
+						byte[] document = Protocol.readBytes(in);
+						documentCompleted(name, document, Protocol.readCounts(in));
+					} else if(type==Protocol.FAILED) {
+						documentFailed(name, Protocol.readString(in));
+					} else {
+						throw new IOException("Unexpected message " + type);
+					}
+					received.add(name);
+				}
+				shard = null;
+			}
+
+			out.writeByte(Protocol.BYE);
+			out.flush();
+			process.waitFor(timeout, TimeUnit.MILLISECONDS);
+			synchronized(this) {
+				live--;
+			}
+		} catch(Exception e) {
+			// the worker crashed, or hung : its unfinished documents go back to the queue for the other workers
+			if(shard!=null) {
+				List<String> remaining = new ArrayList<String>();
+				for(String name : shard.names)if(!received.contains(name))remaining.add(name);
+				if(!remaining.isEmpty())shards.addFirst(new Shard(remaining));
+			}
+			try {
+				crashed();
+			} catch(IOException launchFailure) {
+				launchFailure.printStackTrace();
+			}
+		} finally {
+			process.destroy();
+			try {
+				socket.close();
+			} catch(IOException e) {
+			}
+		}
+	}
+
+	/** Counts a crashed worker, and launches a replacement if any restart is left */
+
+	private synchronized void crashed() throws IOException {
+		crashes++;
+		live--;
+		if(restarts<maxRestarts && !isDone()) {
+			restarts++;
+			launch();
+		}
+	}
+
+	/** Appends the xml of the document (in UTF-8) to the spill file, and adds its counts */
+
+	private synchronized void documentCompleted(String name, byte[] xml, Map<NamedEntity, Long> counts) throws IOException {
+		if(!processed.add(name))return;
+		spill.seek(spillSize);
+		spill.write(xml);
+		xmlRanges.put(name, new long[] { spillSize, xml.length });
+		spillSize += xml.length;
+		aggregator.addCounts(name, counts);
+		done++;
+	}
+
+	private synchronized void documentFailed(String name, String error) {
+		if(!processed.add(name))return;
+		failures.add(new DocumentFailure(name, new IOException(error)));
+		done++;
+	}
+
+	private synchronized boolean isDone() {
+		return done==names.size();
+	}
+
+	private synchronized List<Thread> connections() {
+		return new ArrayList<Thread>(connections);
+	}
+
+	/** @return the documents of each shard, by the hash of their names */
+
+	static List<List<String>> partitionByHash(List<String> names, int count) {
+		List<List<String>> ret = new ArrayList<List<String>>();
+		for(int i=0;i<count;i++)ret.add(new ArrayList<String>());
+		for(String name : names)ret.get((name.hashCode() & Integer.MAX_VALUE) % count).add(name);
+		return ret;
+	}
+
+	/** @return the documents of each shard, the largest first, each to the shard with the smallest total size */
+
+	static List<List<String>> partitionBySize(final Map<String, Long> sizes, int count) {
+		List<String> names = new ArrayList<String>(sizes.keySet());
+		Collections.sort(names, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return Long.compare(sizes.get(b), sizes.get(a));
+			}
+		});
+
+		List<List<String>> ret = new ArrayList<List<String>>();
+		long[] totals = new long[count];
+		for(int i=0;i<count;i++)ret.add(new ArrayList<String>());
+		for(String name : names) {
+			int smallest = 0;
+			for(int i=1;i<count;i++)if(totals[i]<totals[smallest])smallest = i;
+			ret.get(smallest).add(name);
+			totals[smallest] += Math.max(sizes.get(name), 1);
+		}
+		return ret;
+	}
+
+	/** @return the names of the documents, in the order of the source */
+
+	public List<String> getDocumentNames() {
+		return names;
+	}
+
+	/** @return the xml of the given document, or null if it wasn't processed */
+
+	public synchronized String getXml(String document) throws IOException {
+		long[] range = xmlRanges.get(document);
+		if(range==null)return null;
+		byte[] bytes = new byte[(int) range[1]];
+		spill.seek(range[0]);
+		spill.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/** Writes the xml of the processed documents, in the order of the source, as <code>Documents.toXml()</code>.
+	 *  Only one document at a time is read from the spill file. */
+
+	public synchronized void writeXml(Writer out) throws IOException {
+		out.write("<documents>\n");
+		for(String name : names) {
+			String document = getXml(name);
+			if(document!=null)out.append(document).append("\n");
+		}
+		out.write("</documents>");
+		out.flush();
+	}
+
+	/** Deletes the spill file of the documents' xml, once written */
+
+	public synchronized void close() throws IOException {
+		if(spill!=null)spill.close();
+		if(spillFile!=null)spillFile.delete();
+		spill = null;
+		spillFile = null;
+	}
+
+	/** @return the entity counts of the processed documents */
+
+	public EntityAggregator getAggregator() {
+		return aggregator;
+	}
+
+	/** @return the documents the workers failed to process */
+
+	public synchronized List<DocumentFailure> getFailures() {
+		return new ArrayList<DocumentFailure>(failures);
+	}
+
+	/** @return the number of workers that crashed */
+
+	public synchronized int getCrashes() {
+		return crashes;
+	}
+
+	public static void main(String s[]) throws Exception {
+		if(s.length<2) {
+			System.err.println("Usage : java com.nlp.cluster.Coordinator source dictionary [workers]");
+			System.exit(2);
+		}
+		Coordinator coordinator = new Coordinator(s[0], s[1], s.length>2 ? Integer.parseInt(s[2]) : Runtime.getRuntime().availableProcessors());
+		coordinator.run();
+
+		System.out.println("Recognized named entities :");
+		for(String name : coordinator.getDocumentNames()) {
+			for(EntityAggregator.EntityCount count : coordinator.getAggregator().topK(name, Integer.MAX_VALUE))System.out.println(count.getEntity());
+		}
+		System.out.println("\nDocuments xml representation :\n");
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+		coordinator.writeXml(out);
+		out.write(System.lineSeparator());
+		out.flush();
+		coordinator.close();
+		for(DocumentFailure failure : coordinator.getFailures())System.err.println("Failed to process " + failure);
+		if(coordinator.getCrashes()>0)System.err.println(coordinator.getCrashes() + " worker(s) crashed");
+	}
+}
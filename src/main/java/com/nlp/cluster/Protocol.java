@@ -0,0 +1,105 @@
+package com.nlp.cluster;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.nlp.ner.NamedEntity;
+
+
+/**
+ *  The messages between the coordinator and its workers, each a type byte followed by its fields :
+ *
+ *  <pre>
+ *  HELLO    worker id                                      worker to coordinator, once connected
+ *  SHARD    document count, document names                 coordinator to worker
+ *  DOCUMENT name, xml, entity count, (parts, count)...     worker to coordinator, for each document of the shard
+ *  FAILED   name, error                                    worker to coordinator, for a document it can't process
+ *  DONE                                                    worker to coordinator, once the shard is processed
+ *  BYE                                                     coordinator to worker, when there is no shard left
+ *  HEARTBEAT                                               worker to coordinator, periodically from its connection
+ *  </pre>
+ *
+ *  The heartbeats are sent by their own thread of the worker, also while it loads its tagger or processes a
+ *  long document, so a worker is only considered hung when its JVM doesn't run anymore, not when it is busy.
+ *
+ *  Strings are written as their length in bytes and their UTF-8 bytes, so the xml of a document can exceed
+ *  the 64KB of <code>writeUTF()</code>.
+ */
+
+final class Protocol {
+
+	static final byte HELLO = 1;
+	static final byte SHARD = 2;
+	static final byte DOCUMENT = 3;
+	static final byte FAILED = 4;
+	static final byte DONE = 5;
+	static final byte BYE = 6;
+	static final byte HEARTBEAT = 7;
+
+	private Protocol() {
+	}
+
+	static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	/** @return the UTF-8 bytes of a string, without decoding them */
+
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	static void writeHeartbeat(DataOutputStream out) throws IOException {
+		synchronized(out) {
+			out.writeByte(HEARTBEAT);
+			out.flush();
+		}
+	}
+
+	static void writeShard(DataOutputStream out, List<String> names) throws IOException {
+		out.writeByte(SHARD);
+		out.writeInt(names.size());
+		for(String name : names)writeString(out, name);
+		out.flush();
+	}
+
+	static void writeDocument(DataOutputStream out, String name, String xml, Map<NamedEntity, Long> counts) throws IOException {
+		out.writeByte(DOCUMENT);
+		writeString(out, name);
+		writeString(out, xml);
+		out.writeInt(counts.size());
+		for(Map.Entry<NamedEntity, Long> entry : counts.entrySet()) {
+			NamedEntity entity = entry.getKey();
+			out.writeInt(entity.size());
+			for(int i=0;i<entity.size();i++)writeString(out, entity.getPart(i));
+			out.writeLong(entry.getValue());
+		}
+		out.flush();
+	}
+
+	/** @return the entity counts of a DOCUMENT message, read after its name and xml */
+
+	static Map<NamedEntity, Long> readCounts(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<NamedEntity, Long> counts = new HashMap<NamedEntity, Long>();
+		for(int e=0;e<size;e++) {
+			String[] parts = new String[in.readInt()];
+			for(int i=0;i<parts.length;i++)parts[i] = readString(in);
+			counts.put(new NamedEntity(parts), in.readLong());
+		}
+		return counts;
+	}
+}
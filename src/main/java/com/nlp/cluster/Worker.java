@@ -0,0 +1,207 @@
+package com.nlp.cluster;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.nlp.Completions;
+import com.nlp.DocumentFailure;
+import com.nlp.EntityAggregator;
+import com.nlp.ResultListener;
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.ner.NamedEntity;
+import com.nlp.schema.Document;
+import com.nlp.source.DocumentEntry;
+import com.nlp.source.DocumentSource;
+import com.nlp.source.DocumentSources;
+
+
+/**
+ *  A worker process of a <code>Coordinator</code> : connects to the coordinator, and parses and tags the
+ *  documents of each shard it is sent with its own <code>NamedEntitiesTagger</code>, reading them from the
+ *  same document source as the coordinator, and sends back the xml and the entity counts of each document.
+ *  It exits when the coordinator has no shard left, or when its connection is lost.
+ *
+ *  For each shard, the worker lists the source for the shard's documents only (so a gzipped tar file spills
+ *  those only), and runs a <code>Task</code> for each of them on a pool of the given number of threads, as the
+ *  listing reaches them. The documents are sent back from <code>Completions.drain()</code> as they complete.
+ *
+ *  The worker connects before opening the source and loading its tagger, and a daemon thread sends a heartbeat
+ *  every given number of milliseconds from then on, so the coordinator doesn't take a worker that loads a large
+ *  dictionary or processes a long document for a hung one.
+ *
+ *  Usage : java com.nlp.cluster.Worker host port id source dictionary heartbeat [threads]
+ *
+ *  A subclass with its own <code>main()</code> calling <code>run()</code> can be launched instead (see
+ *  <code>Coordinator.setWorkerClass()</code>), e.g. to observe the shards and the documents sent in tests.
+ */
+
+public class Worker {
+
+	int id;
+	DocumentSource source;
+	NamedEntitiesTagger tagger;
+	ExecutorService executor;
+
+	public static void main(String s[]) throws Exception {
+		new Worker().run(s);
+	}
+
+	/** Connects to the coordinator and processes the shards it sends, with the arguments of <code>main()</code> */
+
+	protected void run(String s[]) throws Exception {
+		if(s.length<6) {
+			System.err.println("Usage : java " + getClass().getName() + " host port id source dictionary heartbeat [threads]");
+			System.exit(2);
+		}
+		id = Integer.parseInt(s[2]);
+		int threads = s.length>6 ? Integer.parseInt(s[6]) : Runtime.getRuntime().availableProcessors();
+		Socket socket = new Socket(s[0], Integer.parseInt(s[1]));
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeByte(Protocol.HELLO);
+			out.writeInt(id);
+			out.flush();
+			startHeartbeat(out, Long.parseLong(s[5]));
+
+			source = DocumentSources.open(new File(s[3]));
+			executor = Executors.newFixedThreadPool(threads);
+			try {
+				tagger = new NamedEntitiesTagger(s[4]);
+				serve(in, out);
+			} finally {
+				executor.shutdownNow();
+				source.close();
+			}
+		} finally {
+			socket.close();
+		}
+	}
+
+	/** Starts a daemon thread sending a heartbeat every interval, until the connection is closed */
+
+	static Thread startHeartbeat(final DataOutputStream out, final long interval) {
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while(true) {
+						Thread.sleep(interval);
+						Protocol.writeHeartbeat(out);
+					}
+				} catch(InterruptedException e) {
+				} catch(IOException e) {
+					// the connection is closed
+				}
+			}
+		}, "worker-heartbeat");
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/** Processes the shards the coordinator sends, once said hello, until it says bye */
+
+	void serve(DataInputStream in, DataOutputStream out) throws IOException, InterruptedException {
+		while(true) {
+			byte type = in.readByte();
+			if(type==Protocol.BYE)return;
+			if(type!=Protocol.SHARD)throw new IOException("Unexpected message " + type);
+
+			int count = in.readInt();
+			Set<String> names = new LinkedHashSet<String>();
+			for(int i=0;i<count;i++)names.add(Protocol.readString(in));
+			shardReceived(names);
+			process(names, out);
+			synchronized(out) {
+				out.writeByte(Protocol.DONE);
+				out.flush();
+			}
+		}
+	}
+
+	/** Runs a task for each document of the shard, sending each document back as it completes */
+
+	private void process(Set<String> names, final DataOutputStream out) throws IOException, InterruptedException {
+		Completions completions = new Completions(executor);
+		Set<String> missing = new HashSet<String>(names);
+		for(Iterator<DocumentEntry> it = source.entries(names); it.hasNext();) {
+			DocumentEntry entry = it.next();
+			if(missing.remove(entry.getName()))completions.submitTasks(Collections.singletonList(new Task(entry, tagger)));
+		}
+		for(String name : missing)sendFailure(out, name, new FileNotFoundException("No document " + name + " in the source").toString());
+
+		try {
+			completions.drain(new ResultListener() {
+				public void documentCompleted(Document document) {
+					try {
+						send(out, document);
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+
+				public void documentFailed(DocumentFailure failure) {
+					try {
+						sendFailure(out, failure.getName(), failure.getCause().toString());
+					} catch(IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private void send(DataOutputStream out, Document document) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		document.toXml(sb, "    ");
+		Map<NamedEntity, Long> counts = new EntityAggregator().addDocument(document);
+		synchronized(out) {
+			Protocol.writeDocument(out, document.getName(), sb.toString(), counts);
+		}
+		documentSent(document.getName());
+	}
+
+	private void sendFailure(DataOutputStream out, String name, String error) throws IOException {
+		synchronized(out) {
+			out.writeByte(Protocol.FAILED);
+			Protocol.writeString(out, name);
+			Protocol.writeString(out, error);
+			out.flush();
+		}
+		documentSent(name);
+	}
+
+	/** Called with the names of each shard, before its documents are processed */
+
+	protected void shardReceived(Set<String> names) throws InterruptedException {
+	}
+
+	/** Called once a document, or its failure, was sent to the coordinator, from the thread sending it */
+
+	protected void documentSent(String name) {
+	}
+
+	/** @return the id the coordinator gave the worker */
+
+	protected int getId() {
+		return id;
+	}
+}
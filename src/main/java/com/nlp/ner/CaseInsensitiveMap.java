@@ -0,0 +1,106 @@
+package com.nlp.ner;
+
+/**
+ *  An open addressing hash map from words to values, ignoring case.
+ *
+ *  Keys are looked up by any range of a <code>CharSequence</code>, hashing and comparing the characters'
+ *  upper case forms in place, so a lookup allocates nothing : no upper case copy of the word, and no
+ *  substring to drop a possessive 's (just look up a shorter range). Case is folded one character at a time
+ *  with <code>Character.toUpperCase(char)</code>, so the rare characters whose upper case form is longer
+ *  (e.g. the German sharp s) only match themselves.
+ *
+ *  Not thread-safe for updates. Once filled, it can be read by any number of threads.
+ */
+
+public class CaseInsensitiveMap<V> {
+
+	private String[] keys = new String[16];
+	private Object[] values = new Object[16];
+	private int[] hashes = new int[16];
+	private int size;
+
+	/** Associates the value with the word, replacing the value of any word equal to it ignoring case
+	 *
+	 * @param key
+	 * @param value
+	 * @return the previous value, or null
+	 */
+
+	@SuppressWarnings("unchecked")
+	public V put(CharSequence key, V value) {
+		int hash = hash(key, 0, key.length());
+		int mask = keys.length - 1;
+		int slot = hash & mask;
+		for(; keys[slot]!=null; slot = (slot + 1) & mask) {
+			if(hashes[slot]==hash && equalsIgnoreCase(keys[slot], key, 0, key.length())) {
+				V previous = (V) values[slot];
+				values[slot] = value;
+				return previous;
+			}
+		}
+
+		keys[slot] = key.toString();
+		values[slot] = value;
+		hashes[slot] = hash;
+		if(++size*2>keys.length)resize();
+		return null;
+	}
+
+	/** @return the value of the given word ignoring case, or null */
+
+	public V get(CharSequence key) {
+		return get(key, 0, key.length());
+	}
+
+	/** @return the value of the word formed by the characters [start, end) of the given sequence ignoring case, or null */
+
+	@SuppressWarnings("unchecked")
+	public V get(CharSequence key, int start, int end) {
+		int hash = hash(key, start, end);
+		int mask = keys.length - 1;
+		for(int slot = hash & mask; keys[slot]!=null; slot = (slot + 1) & mask) {
+			if(hashes[slot]==hash && equalsIgnoreCase(keys[slot], key, start, end))return (V) values[slot];
+		}
+		return null;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private void resize() {
+		String[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+		keys = new String[oldKeys.length*2];
+		values = new Object[oldKeys.length*2];
+		hashes = new int[oldKeys.length*2];
+		int mask = keys.length - 1;
+
+		for(int i=0;i<oldKeys.length;i++) {
+			if(oldKeys[i]==null)continue;
+			int slot = oldHashes[i] & mask;
+			while(keys[slot]!=null)slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			values[slot] = oldValues[i];
+			hashes[slot] = oldHashes[i];
+		}
+	}
+
+	/** @return the hash of the word formed by the characters [start, end), ignoring case */
+
+	static int hash(CharSequence word, int start, int end) {
+		int h = 0;
+		for(int i=start;i<end;i++)h = 31*h + Character.toUpperCase(word.charAt(i));
+		return h ^ (h >>> 16) * 0x45d9f3b;
+	}
+
+	private static boolean equalsIgnoreCase(String key, CharSequence word, int start, int end) {
+		if(key.length()!=end-start)return false;
+		for(int i=0;i<key.length();i++) {
+			char a = key.charAt(i), b = word.charAt(start + i);
+			if(a!=b && Character.toUpperCase(a)!=Character.toUpperCase(b))return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,173 @@
+package com.nlp.ner;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.nlp.schema.SymbolTable;
+
+
+/**
+ *  Compiles a list of named entities (one per line, with its parts separated by a space) into a binary file,
+ *  which a <code>MappedEntityDictionary</code> maps in memory instead of loading it in the heap.
+ *
+ *  The file is a header of ints followed by int arrays, then char arrays, all big endian :
+ *  <pre>
+ *  header       MAGIC, FORMAT, entities, parts, words, hash slots, nodes, edges, word chars, part chars
+ *  wordStarts   [words+1]    start of each distinct word (upper case, a character at a time) in the word pool
+ *  hashSlots    [hash slots] word + 1 (0 for an empty slot), open addressing by CaseInsensitiveMap.hash()
+ *  anyWord      [words]      the (last) entity having the word as one of its parts
+ *  entityParts  [entities+1] index of each entity's first part
+ *  partStarts   [parts+1]    start of each part (as written in the list) in the part pool
+ *  nodeEdges    [nodes+1]    index of each node's first edge, for the Aho-Corasick automaton over the words
+ *  nodeDepths   [nodes]
+ *  nodeFailures [nodes]
+ *  nodeOutputs  [nodes]
+ *  nodeEntities [nodes]      the entity ended by the node, or -1
+ *  edgeWords    [edges]      the word of each edge, sorted for each node
+ *  edgeNodes    [edges]      the node each edge leads to
+ *  wordPool     [word chars]
+ *  partPool     [part chars]
+ *  </pre>
+ *
+ *  Run with : java -cp target/classes com.nlp.ner.DictionaryCompiler NER.txt NER.dict
+ */
+
+public class DictionaryCompiler {
+
+	static final int MAGIC = 0x4e455244;   // "NERD"
+	static final int FORMAT = 1;
+	static final int HEADER_INTS = 10;
+
+	public static void main(String s[]) throws Exception {
+		if(s.length!=2) {
+			System.err.println("Usage : DictionaryCompiler <named entities file> <compiled file>");
+			System.exit(1);
+		}
+		compile(s[0], s[1]);
+	}
+
+	/** Compiles a UTF-8 file of named entities into the given file */
+
+	public static void compile(String file, String compiledFile) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			OutputStream out = new FileOutputStream(compiledFile);
+			try {
+				compile(reader, out);
+			} finally {
+				out.close();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** Compiles the named entities of the reader, one per line, writing the binary dictionary to the stream
+	 *
+	 * @param reader
+	 * @param os
+	 * @throws IOException
+	 */
+
+	public static void compile(Reader reader, OutputStream os) throws IOException {
+		List<NamedEntity> entities = HeapEntityDictionary.read(reader);
+
+		// the distinct words, coded by their index
+		CaseInsensitiveMap<Integer> wordIndexes = new CaseInsensitiveMap<Integer>();
+		List<String> words = new ArrayList<String>();
+		int parts = 0;
+		for(NamedEntity entity : entities) {
+			entity.partIds = new int[entity.size()];
+			for(int i=0;i<entity.size();i++) {
+				Integer index = wordIndexes.get(entity.getPart(i));
+				if(index==null) {
+					index = words.size();
+					words.add(SymbolTable.fold(entity.getPart(i)));
+					wordIndexes.put(entity.getPart(i), index);
+				}
+				entity.partIds[i] = index;
+			}
+			parts += entity.size();
+		}
+
+		int[] anyWord = new int[words.size()];
+		IdentityHashMap<NamedEntity, Integer> entityIndexes = new IdentityHashMap<NamedEntity, Integer>();
+		for(int e=0;e<entities.size();e++) {
+			for(int word : entities.get(e).partIds)anyWord[word] = e;
+			entityIndexes.put(entities.get(e), e);
+		}
+
+		int hashSlots = 2;
+		while(hashSlots<words.size()*2)hashSlots *= 2;
+		int[] slots = new int[hashSlots];
+		for(int w=0;w<words.size();w++) {
+			int slot = CaseInsensitiveMap.hash(words.get(w), 0, words.get(w).length()) & (hashSlots-1);
+			while(slots[slot]!=0)slot = (slot + 1) & (hashSlots-1);
+			slots[slot] = w + 1;
+		}
+
+		EntityTrie trie = new EntityTrie(entities);
+		int nodes = trie.size();
+		int edges = nodes - 1;
+
+		int wordChars = 0, partChars = 0;
+		for(String word : words)wordChars += word.length();
+		for(NamedEntity entity : entities)for(int i=0;i<entity.size();i++)partChars += entity.getPart(i).length();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 64*1024));
+		int[] header = {MAGIC, FORMAT, entities.size(), parts, words.size(), hashSlots, nodes, edges, wordChars, partChars};
+		for(int value : header)out.writeInt(value);
+
+		int start = 0;
+		for(String word : words) {
+			out.writeInt(start);
+			start += word.length();
+		}
+		out.writeInt(start);
+
+		for(int slot : slots)out.writeInt(slot);
+		for(int entity : anyWord)out.writeInt(entity);
+
+		int part = 0;
+		for(NamedEntity entity : entities) {
+			out.writeInt(part);
+			part += entity.size();
+		}
+		out.writeInt(part);
+
+		start = 0;
+		for(NamedEntity entity : entities) {
+			for(int i=0;i<entity.size();i++) {
+				out.writeInt(start);
+				start += entity.getPart(i).length();
+			}
+		}
+		out.writeInt(start);
+
+		int edge = 0;
+		for(int node=0;node<nodes;node++) {
+			out.writeInt(edge);
+			edge += trie.childCount(node);
+		}
+		out.writeInt(edge);
+		for(int node=0;node<nodes;node++)out.writeInt(trie.depth(node));
+		for(int node=0;node<nodes;node++)out.writeInt(trie.failure(node));
+		for(int node=0;node<nodes;node++)out.writeInt(trie.output(node));
+		for(int node=0;node<nodes;node++)out.writeInt(trie.entity(node)==null ? -1 : entityIndexes.get(trie.entity(node)));
+		for(int node=0;node<nodes;node++)for(int i=0;i<trie.childCount(node);i++)out.writeInt(trie.childWord(node, i));
+		for(int node=0;node<nodes;node++)for(int i=0;i<trie.childCount(node);i++)out.writeInt(trie.childAt(node, i));
+
+		for(String word : words)out.writeChars(word);
+		for(NamedEntity entity : entities)for(int i=0;i<entity.size();i++)out.writeChars(entity.getPart(i));
+		out.flush();
+	}
+}
@@ -0,0 +1,120 @@
+package com.nlp.ner;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+
+/**
+ *  An immutable snapshot of a dictionary of named entities, indexed for the <code>NamedEntitiesTagger</code>.
+ *
+ *  A snapshot is fully built before it is published, and never changes afterwards, so any number of threads
+ *  can tag with it without locking. Reloading the dictionary builds a new snapshot, with a new version,
+ *  and leaves the old one intact for the documents still being tagged with it.
+ *
+ *  The entities are found by an Aho-Corasick automaton over word codes (see <code>EntityTrie</code>) : the
+ *  tagger reads the codes of the tokens' words with <code>wordCode()</code>, and feeds them to <code>next()</code>.
+ *  A snapshot is either loaded in the heap from a text file (<code>HeapEntityDictionary</code>), or mapped
+ *  from a file compiled by the <code>DictionaryCompiler</code> (<code>MappedEntityDictionary</code>).
+ */
+
+public abstract class EntityDictionary {
+
+	private final long version;
+	private volatile FuzzyIndex fuzzyIndex;
+
+	protected EntityDictionary(long version) {
+		this.version = version;
+	}
+
+	/** Loads a snapshot from a file, mapping it if it was compiled by the <code>DictionaryCompiler</code>,
+	 *  and reading it as text (one named entity per line) otherwise
+	 *
+	 * @param file
+	 * @param symbols  the table to intern the words of a text dictionary in
+	 * @param version  the version of the snapshot
+	 * @throws IOException
+	 */
+
+	public static EntityDictionary load(String file, SymbolTable symbols, long version) throws IOException {
+		if(isCompiled(file))return new MappedEntityDictionary(file, version);
+		return HeapEntityDictionary.load(file, symbols, version);
+	}
+
+	/** @return true if the file starts with the magic number of a compiled dictionary */
+
+	public static boolean isCompiled(String file) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			return in.available()>=4 && in.readInt()==DictionaryCompiler.MAGIC;
+		} finally {
+			in.close();
+		}
+	}
+
+	/** @return the version of this snapshot */
+
+	public long getVersion() {
+		return version;
+	}
+
+	/** @return the number of named entities */
+
+	public abstract int size();
+
+	/** @return the named entity at the given index, in dictionary order */
+
+	public abstract NamedEntity getEntity(int index);
+
+	/** @return the parts of the named entity at the given index */
+
+	String[] getParts(int index) {
+		return getEntity(index).parts;
+	}
+
+	/** @return the index for approximate matching of the words of the entities, built on first use and kept
+	 *          with the snapshot (until asked for other parameters) */
+
+	FuzzyIndex fuzzyIndex(int maxDistance, int minLength) {
+		FuzzyIndex index = fuzzyIndex;
+		if(index==null || index.maxDistance!=maxDistance || index.minLength!=minLength) {
+			synchronized(this) {
+				index = fuzzyIndex;
+				if(index==null || index.maxDistance!=maxDistance || index.minLength!=minLength)fuzzyIndex = index = new FuzzyIndex(this, maxDistance, minLength);
+			}
+		}
+		return index;
+	}
+
+	/** @return the code of the token's word for <code>next()</code>, or -1 if the word is in no named entity */
+
+	abstract int wordCode(Token token);
+
+	/** @return the entity having the first length characters of the token's word as one of its parts
+	 *          ignoring case, or null */
+
+	abstract NamedEntity anyWord(Token token, int length);
+
+	/** @return the state of the automaton after reading the given word code (-1 for a word that is in no entity) */
+
+	abstract int next(int state, int word);
+
+	/** @return the first node ending an entity among the state and its suffixes, or -1 if none */
+
+	abstract int output(int state);
+
+	/** @return the next node ending an entity after the given output node, or -1 if none */
+
+	abstract int nextOutput(int node);
+
+	/** @return the entity ended by the given output node */
+
+	abstract NamedEntity entity(int node);
+
+	/** @return the depth of the given node. For an output node, the number of words of its entity */
+
+	abstract int depth(int node);
+}
@@ -0,0 +1,209 @@
+package com.nlp.ner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ *  An Aho-Corasick automaton over words, finding all the named entities in a sentence in a single
+ *  left to right pass, in time linear in the sentence length whatever the size of the dictionary.
+ *
+ *  Words are identified by the symbol table ids of their upper case forms (<code>NamedEntity.partIds</code>),
+ *  so matching ignores case. The trie's nodes are numbered, each with its children as parallel arrays of
+ *  word ids (sorted, for binary search) and node numbers. Each node has a failure link to the node of its
+ *  longest proper suffix in the trie, and an output link to the nearest node along the failure links that
+ *  ends an entity, so all the entities ending at a word are enumerated without scanning the failure chain.
+ */
+
+class EntityTrie {
+
+	static final int ROOT = 0;
+	private static final int[] NONE = new int[0];
+
+	private int nodes;
+	private int[][] childWords = new int[16][];
+	private int[][] children = new int[16][];
+	private int[] childCounts = new int[16];
+	private int[] depths = new int[16];
+	private int[] failures = new int[16];
+	private int[] outputs = new int[16];
+	private NamedEntity[] entities = new NamedEntity[16];
+	private HashMap<Long, Integer> edges;    // (node << 32 | word) -> child, while adding the entities
+
+	/** Builds the automaton from entities whose part ids are set. Of two entities with the same parts, the last one is kept.
+	 *
+	 * @param dictionary
+	 */
+
+	EntityTrie(List<NamedEntity> dictionary) {
+		newNode(0);
+		edges = new HashMap<Long, Integer>();
+		for(NamedEntity entity : dictionary)add(entity);
+		edges = null;
+		sortChildren();
+		link();
+	}
+
+	private int newNode(int depth) {
+		if(nodes==depths.length) {
+			int capacity = nodes*2;
+			childWords = Arrays.copyOf(childWords, capacity);
+			children = Arrays.copyOf(children, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+			depths = Arrays.copyOf(depths, capacity);
+			failures = Arrays.copyOf(failures, capacity);
+			outputs = Arrays.copyOf(outputs, capacity);
+			entities = Arrays.copyOf(entities, capacity);
+		}
+		childWords[nodes] = NONE;
+		children[nodes] = NONE;
+		depths[nodes] = depth;
+		return nodes++;
+	}
+
+	private void add(NamedEntity entity) {
+		int node = ROOT;
+		for(int word : entity.partIds) {
+			Long edge = (long) node << 32 | (word & 0xffffffffL);
+			Integer child = edges.get(edge);
+			if(child==null) {
+				child = addChild(node, word);
+				edges.put(edge, child);
+			}
+			node = child;
+		}
+		entities[node] = entity;
+	}
+
+	private int child(int node, int word) {
+		int i = Arrays.binarySearch(childWords[node], 0, childCounts[node], word);
+		return i>=0 ? children[node][i] : -1;
+	}
+
+	/** Appends a child to the node. The children are sorted by word once they are all added */
+
+	private int addChild(int node, int word) {
+		int child = newNode(depths[node] + 1);
+
+		int count = childCounts[node];
+		if(count==childWords[node].length) {
+			childWords[node] = Arrays.copyOf(childWords[node], Math.max(2, count*2));
+			children[node] = Arrays.copyOf(children[node], Math.max(2, count*2));
+		}
+		childWords[node][count] = word;
+		children[node][count] = child;
+		childCounts[node]++;
+		return child;
+	}
+
+	/** Sorts the children of each node by word, for binary search */
+
+	private void sortChildren() {
+		for(int node=0;node<nodes;node++) {
+			int count = childCounts[node];
+			if(count<2)continue;
+
+			long[] sorted = new long[count];
+			for(int i=0;i<count;i++)sorted[i] = (long) childWords[node][i] << 32 | children[node][i];
+			Arrays.sort(sorted);
+			for(int i=0;i<count;i++) {
+				childWords[node][i] = (int) (sorted[i] >> 32);
+				children[node][i] = (int) sorted[i];
+			}
+		}
+	}
+
+	/** Computes the failure and output links, breadth first so a node's suffixes are linked before it */
+
+	private void link() {
+		int[] queue = new int[nodes];
+		int head = 0, tail = 0;
+
+		failures[ROOT] = ROOT;
+		outputs[ROOT] = -1;
+		for(int i=0;i<childCounts[ROOT];i++) {
+			int child = children[ROOT][i];
+			failures[child] = ROOT;
+			outputs[child] = entities[child]!=null ? child : -1;
+			queue[tail++] = child;
+		}
+
+		while(head<tail) {
+			int node = queue[head++];
+			for(int i=0;i<childCounts[node];i++) {
+				int child = children[node][i];
+				int failure = next(failures[node], childWords[node][i]);
+				failures[child] = failure;
+				outputs[child] = entities[child]!=null ? child : outputs[failure];
+				queue[tail++] = child;
+			}
+		}
+	}
+
+	/** @return the state after reading the given word id (-1 for a word that is in no entity) */
+
+	int next(int state, int word) {
+		if(word<0)return ROOT;
+		while(true) {
+			int child = child(state, word);
+			if(child>=0)return child;
+			if(state==ROOT)return ROOT;
+			state = failures[state];
+		}
+	}
+
+	/** @return the first node ending an entity among the state and its suffixes, or -1 if none */
+
+	int output(int state) {
+		return outputs[state];
+	}
+
+	/** @return the next node ending an entity after the given output node, or -1 if none */
+
+	int nextOutput(int node) {
+		return outputs[failures[node]];
+	}
+
+	/** @return the entity ended by the given output node */
+
+	NamedEntity entity(int node) {
+		return entities[node];
+	}
+
+	/** @return the number of nodes */
+
+	int size() {
+		return nodes;
+	}
+
+	/** @return the number of children of the given node */
+
+	int childCount(int node) {
+		return childCounts[node];
+	}
+
+	/** @return the word leading to the i-th child of the node, by increasing word */
+
+	int childWord(int node, int i) {
+		return childWords[node][i];
+	}
+
+	/** @return the i-th child of the node, by increasing word */
+
+	int childAt(int node, int i) {
+		return children[node][i];
+	}
+
+	/** @return the node of the longest proper suffix of the given node */
+
+	int failure(int node) {
+		return failures[node];
+	}
+
+	/** @return the depth of the given node, i.e. the number of words read to reach it. For an output node,
+	 *          the number of words of its entity */
+
+	int depth(int node) {
+		return depths[node];
+	}
+}
@@ -0,0 +1,137 @@
+package com.nlp.ner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.nlp.schema.SymbolTable;
+
+
+/**
+ *  A symmetric delete index over the words of the named entities, finding the words within a maximum edit
+ *  (Levenshtein) distance of a misspelled word without comparing it to every word of the dictionary.
+ *
+ *  Each word is indexed under all the strings obtained by deleting up to <code>maxDistance</code> of its
+ *  characters. Two words within that distance share one of these strings, so a lookup generates the deletes of
+ *  the misspelled word, and only computes the distance to the words indexed under them. A lookup costs
+ *  O(length^maxDistance) hash lookups plus the few candidate comparisons, whatever the size of the dictionary,
+ *  at the cost of an index holding O(length^maxDistance) entries per word : this is meant for distances of 1 or 2.
+ *
+ *  Words are compared ignoring case (one character at a time, as in <code>CaseInsensitiveMap</code>), and words
+ *  shorter than <code>minLength</code> are neither indexed nor looked up, as they would match too many others.
+ */
+
+class FuzzyIndex {
+
+	private static final int[] NONE = new int[0];
+
+	final int maxDistance;
+	final int minLength;
+
+	private final String[] words;             // the distinct upper case words
+	private final int[] wordEntities;         // the (last) entity having each word as one of its parts
+	private final HashMap<String, int[]> deletes = new HashMap<String, int[]>();
+
+	/**
+	 * @param dictionary
+	 * @param maxDistance  the maximum edit distance of a match
+	 * @param minLength    the minimum length of the words matched approximately
+	 */
+
+	FuzzyIndex(EntityDictionary dictionary, int maxDistance, int minLength) {
+		this.maxDistance = maxDistance;
+		this.minLength = minLength;
+
+		HashMap<String, Integer> wordIds = new HashMap<String, Integer>();
+		int[] entities = new int[16];
+		for(int e=0;e<dictionary.size();e++) {
+			for(String part : dictionary.getParts(e)) {
+				if(part.length()<minLength)continue;
+				String word = SymbolTable.fold(part);
+				Integer id = wordIds.get(word);
+				if(id==null)wordIds.put(word, id = wordIds.size());
+				if(id==entities.length)entities = Arrays.copyOf(entities, id*2);
+				entities[id] = e;
+			}
+		}
+
+		words = new String[wordIds.size()];
+		wordEntities = Arrays.copyOf(entities, wordIds.size());
+		for(String word : wordIds.keySet())words[wordIds.get(word)] = word;
+
+		for(int id=0;id<words.length;id++) {
+			for(String delete : deletes(words[id])) {
+				int[] ids = deletes.get(delete);
+				ids = ids==null ? new int[1] : Arrays.copyOf(ids, ids.length + 1);
+				ids[ids.length-1] = id;
+				deletes.put(delete, ids);
+			}
+		}
+	}
+
+	/** @return the word and the strings obtained by deleting up to maxDistance of its characters */
+
+	private Set<String> deletes(String word) {
+		Set<String> ret = new HashSet<String>();
+		ret.add(word);
+		addDeletes(word, maxDistance, ret);
+		return ret;
+	}
+
+	private static void addDeletes(String word, int distance, Set<String> deletes) {
+		for(int i=0;i<word.length();i++) {
+			String delete = word.substring(0, i) + word.substring(i + 1);
+			if(deletes.add(delete) && distance>1)addDeletes(delete, distance - 1, deletes);
+		}
+	}
+
+	/** @return the index of the entity having the closest word to the characters [0, length) of the given word
+	 *          as one of its parts, or -1 if none is within the maximum distance. Of two words at the same distance,
+	 *          the one appearing first in the dictionary is chosen, and of the entities having that word, the last
+	 *          one, as for the exact lookups of <code>EntityDictionary.anyWord()</code>. */
+
+	int match(CharSequence word, int length) {
+		if(length<minLength)return -1;
+		String query = SymbolTable.fold(word, 0, length);
+
+		int best = -1, bestDistance = maxDistance + 1;
+		Set<Integer> compared = new HashSet<Integer>();
+		for(String delete : deletes(query)) {
+			int[] ids = deletes.get(delete);
+			for(int id : ids==null ? NONE : ids) {
+				if(!compared.add(id))continue;
+				int distance = distance(query, words[id], Math.min(bestDistance, maxDistance));
+				if(distance>maxDistance)continue;
+				if(distance<bestDistance || (distance==bestDistance && id<best)) {
+					best = id;
+					bestDistance = distance;
+				}
+			}
+		}
+		return best<0 ? -1 : wordEntities[best];
+	}
+
+	/** @return the Levenshtein distance between the words, or max + 1 if it is more than max */
+
+	static int distance(String a, String b, int max) {
+		if(Math.abs(a.length() - b.length())>max)return max + 1;
+
+		int[] previous = new int[b.length() + 1], current = new int[b.length() + 1];
+		for(int j=0;j<=b.length();j++)previous[j] = j;
+		for(int i=1;i<=a.length();i++) {
+			current[0] = i;
+			int rowMin = i;
+			for(int j=1;j<=b.length();j++) {
+				int cost = a.charAt(i-1)==b.charAt(j-1) ? 0 : 1;
+				current[j] = Math.min(Math.min(current[j-1] + 1, previous[j] + 1), previous[j-1] + cost);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if(rowMin>max)return max + 1;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return Math.min(previous[b.length()], max + 1);
+	}
+}
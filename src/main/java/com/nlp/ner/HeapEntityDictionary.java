@@ -0,0 +1,163 @@
+package com.nlp.ner;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+
+/**
+ *  A dictionary loaded in the heap from a list of named entities, one per line with its parts separated by a space.
+ *
+ *  The words of the entities are interned in a symbol table, by their upper case forms, and are coded by these
+ *  ids : tokens interned in the same table are looked up by their ids, the other ones by their text.
+ */
+
+public class HeapEntityDictionary extends EntityDictionary {
+
+	private final SymbolTable symbols;
+	private final List<NamedEntity> entities;
+
+	/**
+	 *  A map from any word of the named entity to the rest of the words in that entity (e.g. Carl -> NamedEntity[Carl,Benjamin,Boyer])
+	 */
+
+	private final CaseInsensitiveMap<NamedEntity> dictionaryByAnyWord = new CaseInsensitiveMap<NamedEntity>();
+
+	/**
+	 *  A map from any word of the named entities to the id of its upper case form in the symbol table,
+	 *  for the words of tokens that were not interned in it
+	 */
+
+	private final CaseInsensitiveMap<Integer> partIdsByWord = new CaseInsensitiveMap<Integer>();
+
+	/**
+	 *  The same dictionary, indexed by the symbol table id of the upper case form of the words, for tokens
+	 *  interned in the symbol table
+	 */
+
+	private final NamedEntity[] anyWordById;
+
+	/**
+	 *  An automaton finding the named entities made of consecutive words, for exact matches
+	 */
+
+	private final EntityTrie trie;
+
+
+	/** Builds a snapshot of the given named entities
+	 *
+	 * @param reader   the named entities, one per line
+	 * @param symbols  the table to intern the words of the entities in
+	 * @param version  the version of the snapshot
+	 * @throws IOException
+	 */
+
+	public HeapEntityDictionary(Reader reader, SymbolTable symbols, long version) throws IOException {
+		super(version);
+		this.symbols = symbols;
+		this.entities = read(reader);
+
+		for(NamedEntity entity : entities) {
+			entity.partIds = new int[entity.size()];
+			for(int i=0;i<entity.size();i++) {
+				dictionaryByAnyWord.put(entity.getPart(i), entity);
+				entity.partIds[i] = symbols.intern(SymbolTable.fold(entity.getPart(i)));
+				partIdsByWord.put(entity.getPart(i), entity.partIds[i]);
+			}
+		}
+
+		anyWordById = new NamedEntity[symbols.size()];
+		for(NamedEntity entity : entities) {
+			for(int id : entity.partIds)anyWordById[id] = entity;
+		}
+
+		trie = new EntityTrie(entities);
+	}
+
+	/** Builds a snapshot of the named entities of a UTF-8 file, see <code>HeapEntityDictionary(Reader, SymbolTable, long)</code> */
+
+	public static HeapEntityDictionary load(String file, SymbolTable symbols, long version) throws IOException {
+		Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			return new HeapEntityDictionary(reader, symbols, version);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/** @return the named entities of the lines of the reader */
+
+	static List<NamedEntity> read(Reader reader) throws IOException {
+		List<NamedEntity> entities = new ArrayList<NamedEntity>();
+		BufferedReader lines = new BufferedReader(reader);
+		String line;
+		while((line=lines.readLine())!=null)if(line.trim().length()>0)entities.add(new NamedEntity(line.split(" ")));  // parts separated by a space
+		return entities;
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+
+	public int size() {
+		return entities.size();
+	}
+
+	public NamedEntity getEntity(int index) {
+		return entities.get(index);
+	}
+
+	/** @return the id of the upper case form of the token's word, or -1 if the token was not interned in the symbol table */
+
+	private int foldedId(Token token) {
+		int id = token.getWordId();
+		if(id<0 || id>=symbols.size() || symbols.get(id)!=token.getStr())return -1;
+		return symbols.foldedId(id);
+	}
+
+	int wordCode(Token token) {
+		int folded = foldedId(token);
+		if(folded>=0)return folded;
+		Integer id = partIdsByWord.get(token.getStr());
+		return id==null ? -1 : id;
+	}
+
+	NamedEntity anyWord(Token token, int length) {
+		String str = token.getStr();
+		int folded = foldedId(token);
+		if(folded>=0 && length<str.length()) {
+			int id = symbols.lookup(str, 0, length);
+			folded = id<0 ? -1 : symbols.foldedId(id);
+		}
+		if(folded>=0)return folded<anyWordById.length ? anyWordById[folded] : null;
+
+		return dictionaryByAnyWord.get(str, 0, length);
+	}
+
+	int next(int state, int word) {
+		return trie.next(state, word);
+	}
+
+	int output(int state) {
+		return trie.output(state);
+	}
+
+	int nextOutput(int node) {
+		return trie.nextOutput(node);
+	}
+
+	NamedEntity entity(int node) {
+		return trie.entity(node);
+	}
+
+	int depth(int node) {
+		return trie.depth(node);
+	}
+}
@@ -0,0 +1,181 @@
+package com.nlp.ner;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.nlp.schema.Token;
+
+
+/**
+ *  A dictionary mapped in memory from a file compiled by the <code>DictionaryCompiler</code>.
+ *
+ *  Opening it only maps the file, so it takes no time whatever the size of the dictionary, and the dictionary
+ *  stays out of the heap : the words, the hash index and the automaton are read from the mapped file
+ *  (paged in by the OS as they are used), and a <code>NamedEntity</code> is created only for the entities
+ *  that are actually found, cached so each entity has a single instance.
+ *
+ *  Tokens are looked up by their text in the file's hash index, whatever symbol table they were interned in.
+ *  The file must be smaller than 2GB.
+ */
+
+public class MappedEntityDictionary extends EntityDictionary {
+
+	private final IntBuffer ints;
+	private final CharBuffer chars;
+
+	private final int entityCount, hashMask;
+	private final int wordStarts, hashSlots, anyWord, entityParts, partStarts;
+	private final int nodeEdges, nodeDepths, nodeFailures, nodeOutputs, nodeEntities, edgeWords, edgeNodes;
+	private final int partPool;
+
+	private final ConcurrentMap<Integer, NamedEntity> entities = new ConcurrentHashMap<Integer, NamedEntity>();
+
+	/**
+	 * @param file     a file compiled by the <code>DictionaryCompiler</code>
+	 * @param version  the version of the snapshot
+	 * @throws IOException  if the file can't be mapped, or is not a compiled dictionary
+	 */
+
+	public MappedEntityDictionary(String file, long version) throws IOException {
+		super(version);
+
+		ByteBuffer buffer;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if(channel.size()>Integer.MAX_VALUE)throw new IOException("Compiled dictionary is larger than 2GB : " + file);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());   // the mapping outlives the channel
+		} finally {
+			raf.close();
+		}
+
+		IntBuffer header = buffer.asIntBuffer();
+		if(header.remaining()<DictionaryCompiler.HEADER_INTS || header.get(0)!=DictionaryCompiler.MAGIC)throw new IOException("Not a compiled dictionary : " + file);
+		if(header.get(1)!=DictionaryCompiler.FORMAT)throw new IOException("Unsupported compiled dictionary format " + header.get(1) + " : " + file);
+
+		entityCount = header.get(2);
+		int parts = header.get(3), words = header.get(4), slots = header.get(5), nodes = header.get(6), edges = header.get(7);
+		int wordChars = header.get(8);
+		hashMask = slots - 1;
+
+		wordStarts = DictionaryCompiler.HEADER_INTS;
+		hashSlots = wordStarts + words + 1;
+		anyWord = hashSlots + slots;
+		entityParts = anyWord + words;
+		partStarts = entityParts + entityCount + 1;
+		nodeEdges = partStarts + parts + 1;
+		nodeDepths = nodeEdges + nodes + 1;
+		nodeFailures = nodeDepths + nodes;
+		nodeOutputs = nodeFailures + nodes;
+		nodeEntities = nodeOutputs + nodes;
+		edgeWords = nodeEntities + nodes;
+		edgeNodes = edgeWords + edges;
+		int intCount = edgeNodes + edges;
+
+		ints = header;
+		ByteBuffer charBytes = buffer.duplicate();
+		charBytes.position(intCount*4);
+		chars = charBytes.slice().asCharBuffer();
+		partPool = wordChars;
+	}
+
+	public int size() {
+		return entityCount;
+	}
+
+	public NamedEntity getEntity(int index) {
+		NamedEntity entity = entities.get(index);
+		if(entity==null) {
+			NamedEntity existing = entities.putIfAbsent(index, entity = new NamedEntity(getParts(index)));
+			if(existing!=null)entity = existing;
+		}
+		return entity;
+	}
+
+	/** @return the parts of the entity, read from the file without caching the entity */
+
+	String[] getParts(int index) {
+		int from = ints.get(entityParts + index), to = ints.get(entityParts + index + 1);
+		String[] parts = new String[to - from];
+		for(int i=0;i<parts.length;i++) {
+			int start = ints.get(partStarts + from + i), end = ints.get(partStarts + from + i + 1);
+			char[] part = new char[end - start];
+			for(int c=0;c<part.length;c++)part[c] = chars.get(partPool + start + c);
+			parts[i] = new String(part);
+		}
+		return parts;
+	}
+
+	/** @return the index of the word formed by the characters [start, end) ignoring case, or -1 if it is in no entity */
+
+	private int word(CharSequence word, int start, int end) {
+		int hash = CaseInsensitiveMap.hash(word, start, end);
+		for(int slot = hash & hashMask, w; (w = ints.get(hashSlots + slot))!=0; slot = (slot + 1) & hashMask) {
+			if(equalsIgnoreCase(w - 1, word, start, end))return w - 1;
+		}
+		return -1;
+	}
+
+	private boolean equalsIgnoreCase(int w, CharSequence word, int start, int end) {
+		int from = ints.get(wordStarts + w), to = ints.get(wordStarts + w + 1);
+		if(to - from!=end - start)return false;
+		for(int i=0;i<to-from;i++) {
+			if(chars.get(from + i)!=Character.toUpperCase(word.charAt(start + i)))return false;
+		}
+		return true;
+	}
+
+	int wordCode(Token token) {
+		return word(token.getStr(), 0, token.getStr().length());
+	}
+
+	NamedEntity anyWord(Token token, int length) {
+		int w = word(token.getStr(), 0, length);
+		return w<0 ? null : getEntity(ints.get(anyWord + w));
+	}
+
+	int next(int state, int word) {
+		if(word<0)return EntityTrie.ROOT;
+		while(true) {
+			int child = child(state, word);
+			if(child>=0)return child;
+			if(state==EntityTrie.ROOT)return EntityTrie.ROOT;
+			state = ints.get(nodeFailures + state);
+		}
+	}
+
+	private int child(int node, int word) {
+		int lo = ints.get(nodeEdges + node), hi = ints.get(nodeEdges + node + 1) - 1;
+		while(lo<=hi) {
+			int mid = (lo + hi) >>> 1;
+			int midWord = ints.get(edgeWords + mid);
+			if(midWord<word)lo = mid + 1;
+			else if(midWord>word)hi = mid - 1;
+			else return ints.get(edgeNodes + mid);
+		}
+		return -1;
+	}
+
+	int output(int state) {
+		return ints.get(nodeOutputs + state);
+	}
+
+	int nextOutput(int node) {
+		return ints.get(nodeOutputs + ints.get(nodeFailures + node));
+	}
+
+	NamedEntity entity(int node) {
+		int entity = ints.get(nodeEntities + node);
+		return entity<0 ? null : getEntity(entity);
+	}
+
+	int depth(int node) {
+		return ints.get(nodeDepths + node);
+	}
+}
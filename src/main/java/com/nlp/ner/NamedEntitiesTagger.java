@@ -1,14 +1,14 @@
 package com.nlp.ner;
 
-import java.io.BufferedReader;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
+import com.nlp.schema.SymbolTable;
 import com.nlp.schema.Token;
 
 
@@ -20,20 +20,30 @@ import com.nlp.schema.Token;
 
 public class NamedEntitiesTagger {
 
-	private BufferedReader reader;
-	
-	
 	/**
-	 *  A map from the first word of the named entity to the rest of the words in that entity (e.g. Carl -> NamedEntity[Carl,Benjamin,Boyer])
+	 *  The current snapshot of the dictionary. Each tagging call reads it once and uses that snapshot
+	 *  throughout, so a reload swapping it doesn't affect the calls in progress.
 	 */
 	
-	private HashMap<String, NamedEntity> dictionaryByFirstWord = new HashMap<String, NamedEntity>();
+	private volatile EntityDictionary dictionary;
 	
-	/**
-	 *  A map from any word of the named entity to the rest of the words in that entity (e.g. Carl -> NamedEntity[Carl,Benjamin,Boyer])
-	 */	
+	private SymbolTable symbols;
 	
-	private HashMap<String, NamedEntity> dictionaryByAnyWord = new HashMap<String, NamedEntity>();
+	/** The settings of approximate matching, replaced as a whole so tagging never sees half of a change */
+	
+	private static final class FuzzySettings {
+		static final FuzzySettings DISABLED = new FuzzySettings(0, 0);
+		
+		final int maxEditDistance;     // of approximate matches of the words of capitalized tokens, 0 if disabled
+		final int minWordLength;       // of these words
+		
+		FuzzySettings(int maxEditDistance, int minWordLength) {
+			this.maxEditDistance = maxEditDistance;
+			this.minWordLength = minWordLength;
+		}
+	}
+	
+	private volatile FuzzySettings fuzzy = FuzzySettings.DISABLED;
 	
 	
 	/** Create a named entities tagger by loading the list of named entities from a file 
@@ -42,72 +52,234 @@ public class NamedEntitiesTagger {
 	 */
 	
 	public NamedEntitiesTagger(String file) throws Exception {
-		this.reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
-		load();
-		reader.close();
+		this(file, new SymbolTable());
 	}
 	
 	public NamedEntitiesTagger(Reader reader) throws Exception {
-		this.reader = new BufferedReader(reader);
-		load();		
+		this(reader, new SymbolTable());
+	}
+	
+	/** Create a named entities tagger by loading the list of named entities from a file. 
+	 *  Tokens interned in the given symbol table are looked up by their word ids.
+	 *   
+	 * @param file
+	 * @param symbols
+	 * @throws Exception
+	 */
+	
+	public NamedEntitiesTagger(String file, SymbolTable symbols) throws Exception {
+		this.symbols = symbols;
+		this.dictionary = EntityDictionary.load(file, symbols, 1);
 	}
 	
-	private void load() throws IOException {
-		String line;
-		while((line=reader.readLine())!=null)if(line.trim().length()>0)addLine(line);		
+	public NamedEntitiesTagger(Reader reader, SymbolTable symbols) throws Exception {
+		this.symbols = symbols;
+		this.dictionary = new HeapEntityDictionary(reader, symbols, 1);
 	}
 	
-	private void addLine(String line) {
-		String parts[] = line.split(" ");  // split the named entity into parts, separated by a space 
-		NamedEntity entity = new NamedEntity(parts);
-		dictionaryByFirstWord.put(parts[0].toUpperCase(), entity);
-		
-		for(String part : parts)dictionaryByAnyWord.put(part.toUpperCase(), entity);
+	/** Create a named entities tagger with the given dictionary, e.g. a <code>MappedEntityDictionary</code>
+	 * 
+	 * @param dictionary
+	 * @param symbols  the table the documents are parsed with
+	 */
+	
+	public NamedEntitiesTagger(EntityDictionary dictionary, SymbolTable symbols) {
+		this.symbols = symbols;
+		this.dictionary = dictionary;
 	}
 	
-	private NamedEntity getCandidateMatch(String word) {
-		return dictionaryByFirstWord.get(word.toUpperCase());
+	/** Reloads the dictionary from a file, mapping it if it was compiled by the <code>DictionaryCompiler</code>, 
+	 *  see <code>reload(Reader)</code> */
+	
+	public synchronized EntityDictionary reload(String file) throws IOException {
+		return swap(EntityDictionary.load(file, symbols, dictionary.getVersion() + 1));
+	}
+	
+	/** Builds a new snapshot of the dictionary on the calling thread, and swaps it in once it is complete. 
+	 *  Tagging goes on meanwhile with the previous snapshot, and the calls in progress finish with it. 
+	 *  
+	 * @param reader  the named entities, one per line
+	 * @return the new snapshot, whose version is the previous one's plus one
+	 * @throws IOException
+	 */
+	
+	public synchronized EntityDictionary reload(Reader reader) throws IOException {
+		return swap(new HeapEntityDictionary(reader, symbols, dictionary.getVersion() + 1));
+	}
+	
+	private EntityDictionary swap(EntityDictionary reloaded) {
+		FuzzySettings fuzzy = this.fuzzy;
+		if(fuzzy.maxEditDistance>0)reloaded.fuzzyIndex(fuzzy.maxEditDistance, fuzzy.minWordLength);  // built before the swap, like the rest of the snapshot
+		dictionary = reloaded;
+		return reloaded;
+	}
+	
+	/** Enables approximate matching : a token that is not tagged otherwise, whose word is capitalized and has at 
+	 *  least minWordLength characters, is tagged with an entity having a word within the given edit distance of it
+	 *  (e.g. a misspelled name). The words are looked up in a symmetric delete index built for each snapshot of the
+	 *  dictionary, so the cost of a lookup doesn't grow with the size of the dictionary.
+	 *  
+	 * @param maxEditDistance  the maximum (Levenshtein) distance, typically 1 or 2, or 0 to disable approximate matching
+	 * @param minWordLength    the minimum length of the words matched approximately
+	 */
+	
+	public synchronized void setFuzzyMatching(int maxEditDistance, int minWordLength) {
+		if(maxEditDistance>0)dictionary.fuzzyIndex(maxEditDistance, minWordLength);
+		this.fuzzy = maxEditDistance>0 ? new FuzzySettings(maxEditDistance, minWordLength) : FuzzySettings.DISABLED;
+	}
+	
+	/** @return the current snapshot of the dictionary, e.g. to tag all the sentences of a document with the same one */
+	
+	public EntityDictionary getDictionary() {
+		return dictionary;
+	}
+	
+	/** @return the symbol table, whose interned tokens are looked up by id */
+	
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+	
+	/** A named entity found in a sentence */
+	
+	private static class Match implements Comparable<Match> {
+		int start;
+		NamedEntity entity;
+		
+		Match(int start, NamedEntity entity) {
+			this.start = start;
+			this.entity = entity;
+		}
+		
+		public int compareTo(Match other) {
+			if(start!=other.start)return start<other.start ? -1 : 1;
+			return other.entity.size() - entity.size();
+		}
 	}
 	
 	
 	/** Scan through the given list of tokens and tag the ones that match
-	 *  the named entities exactly  
+	 *  the named entities exactly. All the matches are tagged, including overlapping ones and entities sharing
+	 *  their first word, a token getting the entities by the position they start at, longest first.
 	 * 
 	 * @param tokens The list of tokens to tag
 	 */
 	
 	public void tagExact(List<Token> tokens) {
+		EntityDictionary dictionary = this.dictionary;
+		List<Match> matches = null;
+		
+		int state = EntityTrie.ROOT;
 		for(int i=0;i<tokens.size();i++) {
-			Token token = tokens.get(i);
-					
-			NamedEntity candidateEntity = getCandidateMatch(token.getStr());
+			state = dictionary.next(state, dictionary.wordCode(tokens.get(i)));
 			
-			// look ahead to see if all the named entity parts exactly (ignoring case) match the tokens ahead
-			if(match(tokens, i, candidateEntity)) { 
-				tag(tokens, i, candidateEntity);
+			for(int node = dictionary.output(state); node>=0; node = dictionary.nextOutput(node)) {
+				if(matches==null)matches = new ArrayList<Match>();
+				matches.add(new Match(i - dictionary.depth(node) + 1, dictionary.entity(node)));
 			}
-			
 		}
-	}
 		
-	private boolean match(List<Token> tokens, int idx, NamedEntity entity) {
-		if(entity==null)return false;
-		if (idx + entity.size() > tokens.size())return false;
-				
+		if(matches==null)return;
+		Collections.sort(matches);
+		for(Match match : matches)tag(tokens, match.start, match.entity);
+	}
+	
+	private void tag(List<Token> tokens, int idx, NamedEntity entity) {
 		for (int i = 0; i < entity.size(); i++) {
-			if (!entity.getPart(i).equalsIgnoreCase(tokens.get(idx+i).getStr()))return false;
+			tokens.get(idx+i).tagWithNamedEntity(entity);
+		}
+	}
+	
+	
+	/** Tags the given tokens in a single pass, with the same results as <code>tagExact()</code> followed by
+	 *  <code>tagInexact()</code>.
+	 *  
+	 *  The exact matches are found by the automaton as it reads the tokens. Once the automaton's state shows
+	 *  that no match found later can start before some token, the tokens up to it are final : they are tagged
+	 *  with the matches starting before it, and the ones that are still untagged are matched inexactly.
+	 * 
+	 * @param tokens The list of tokens to tag
+	 */
+	
+	public void tag(List<Token> tokens) {
+		tag(tokens, dictionary);
+	}
+	
+	/** Tags the given tokens with the given snapshot of the dictionary, see <code>tag(List&lt;Token&gt;)</code> */
+	
+	public void tag(List<Token> tokens, EntityDictionary dictionary) {
+		tag(dictionary, tokens, null);
+	}
+	
+	/** Tags the sentences of the document, see <code>tag(List&lt;Token&gt;)</code> */
+	
+	public void tag(Document document) {
+		tag(document, dictionary);
+	}
+	
+	/** Tags the sentences of the document with the given snapshot of the dictionary, and records its version in the document */
+	
+	public void tag(Document document, EntityDictionary dictionary) {
+		tagSentences(document.getSentences(), dictionary);
+		document.setDictionaryVersion(dictionary.getVersion());
+	}
+	
+	/** Tags the given sentences, see <code>tag(List&lt;Token&gt;)</code> */
+	
+	public void tagSentences(List<Sentence> sentences) {
+		tagSentences(sentences, dictionary);
+	}
+	
+	/** Tags the given sentences with the given snapshot of the dictionary */
+	
+	public void tagSentences(List<Sentence> sentences, EntityDictionary dictionary) {
+		List<Match> matches = null;
+		for(Sentence sentence : sentences)matches = tag(dictionary, sentence.getWords(), matches);
+	}
+	
+	/** @return the list of pending matches, reused across the sentences of a batch */
+	
+	private List<Match> tag(EntityDictionary dictionary, List<Token> tokens, List<Match> matches) {
+		int done = 0;
+		int state = EntityTrie.ROOT;
+		
+		for(int i=0;i<tokens.size();i++) {
+			state = dictionary.next(state, dictionary.wordCode(tokens.get(i)));
+			
+			for(int node = dictionary.output(state); node>=0; node = dictionary.nextOutput(node)) {
+				if(matches==null)matches = new ArrayList<Match>();
+				matches.add(new Match(i - dictionary.depth(node) + 1, dictionary.entity(node)));
+			}
+			
+			// later matches extend the words of the current state, so they start at or after it
+			int start = i + 1 - dictionary.depth(state);
+			if(start>done) {
+				finish(dictionary, tokens, done, start, matches);
+				done = start;
+			}
 		}
 		
-		return true;
+		finish(dictionary, tokens, done, tokens.size(), matches);
+		return matches;
 	}
 	
+	/** Tags the tokens [from, to), which no match found later can cover : exactly with the found matches
+	 *  starting before to, then inexactly */
 	
-	private void tag(List<Token> tokens, int idx, NamedEntity entity) {
-		if(entity==null)return;
-		if (idx + entity.size() > tokens.size())return;
-				
-		for (int i = 0; i < entity.size(); i++) {
-			tokens.get(idx+i).tagWithNamedEntity(entity);
+	private void finish(EntityDictionary dictionary, List<Token> tokens, int from, int to, List<Match> matches) {
+		if(matches!=null && !matches.isEmpty()) {
+			Collections.sort(matches);
+			int n = 0;
+			for(; n<matches.size() && matches.get(n).start<to; n++)tag(tokens, matches.get(n).start, matches.get(n).entity);
+			matches.subList(0, n).clear();
+		}
+		
+		for(int i=from;i<to;i++) {
+			Token token = tokens.get(i);
+			if(token.getNamedEntities()==null) {
+				NamedEntity entity = getInexactMatch(dictionary, token);
+				if(entity!=null)token.tagWithNamedEntity(entity);
+			}
 		}
 	}
 	
@@ -119,34 +291,40 @@ public class NamedEntitiesTagger {
 	 */
 	
 	public void tagInexact(List<Token> tokens) {
+		EntityDictionary dictionary = this.dictionary;
 		for(int i=0;i<tokens.size();i++) {
 			Token token = tokens.get(i);
 			
 			// only tag tokens that don't already have exact named entity matches  
 			if(token.getNamedEntities()==null) {
-			String toMatch = fromPossessive(token);			
-			NamedEntity entity = dictionaryByAnyWord.get(toMatch.toUpperCase());
+			NamedEntity entity = getInexactMatch(dictionary, token);
 			if(entity!=null)token.tagWithNamedEntity(entity);
 			}			
 		}
 	}
 	
-	/** Normalize the token's value from possessive to regular
-	 *  For example if "Bob's" is a token with content "Bob" and after symbol '
-	 *  this function will return Bob 
-	 *   
-	 * @param token
-	 * @return
-	 */
-	private String fromPossessive(Token token) {		
+	/** Looks up the token's word in the dictionary of any word, without its trailing s if the token is possessive 
+	 *  (e.g. "Bob's" is a token with content "Bobs" and after symbol ', and is looked up as Bob), then approximately
+	 *  if enabled */
+	
+	private NamedEntity getInexactMatch(EntityDictionary dictionary, Token token) {
 		String str = token.getStr();
-		if (str != null && str.length() > 0) {
-			if (token.getAfterSymbol() != null && token.getAfterSymbol().indexOf("'") != -1) {
-				if (Character.toLowerCase(str.charAt(str.length() - 1)) == 's')str = str.substring(0, str.length() - 1);				
-			}
-		}
+		int length = isPossessive(token) ? str.length() - 1 : str.length();
+		NamedEntity entity = dictionary.anyWord(token, length);
 		
-		return str==null?"":str;
+		FuzzySettings fuzzy = this.fuzzy;
+		if(entity==null && fuzzy.maxEditDistance>0 && length>0 && Character.isUpperCase(str.charAt(0))) {
+			int index = dictionary.fuzzyIndex(fuzzy.maxEditDistance, fuzzy.minWordLength).match(str, length);
+			if(index>=0)entity = dictionary.getEntity(index);
+		}
+		return entity;
+	}
+	
+	private boolean isPossessive(Token token) {
+		String str = token.getStr();
+		return str != null && str.length() > 0 && 
+			   token.hasAfterSymbol('\'') &&
+			   Character.toLowerCase(str.charAt(str.length() - 1)) == 's';
 	}
 
-}
\ No newline at end of file
+}
@@ -1,8 +1,12 @@
 package com.nlp.ner;
 
+import java.util.Arrays;
+
 public class NamedEntity {
 
 	String parts[];
+	int partIds[];      // ids of the upper case parts, in the tagger's symbol table
+	private int hash;
 
 	public NamedEntity(String parts[]) {
 		this.parts = parts;		
@@ -16,6 +20,20 @@ public class NamedEntity {
 		return parts[i];		
 	}
 	
+	/** Named entities are equal if they have the same parts, e.g. the same entity in two snapshots of a dictionary */
+	
+	public boolean equals(Object other) {
+		if(this==other)return true;
+		if(!(other instanceof NamedEntity))return false;
+		return Arrays.equals(parts, ((NamedEntity) other).parts);
+	}
+	
+	public int hashCode() {
+		int h = hash;
+		if(h==0)hash = h = Arrays.hashCode(parts);
+		return h;
+	}
+	
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		for(int i=0;i<parts.length;i++)sb.append(parts[i]).append(i<parts.length-1?" ":"");
@@ -0,0 +1,460 @@
+package com.nlp.schema;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.nlp.ner.NamedEntity;
+
+/**
+ *  A compact, column oriented (struct of arrays) document.
+ *
+ *  Instead of a <code>Sentence</code> and a <code>Token</code> object per word, with their own Strings and lists,
+ *  the words are stored as ids in a <code>SymbolTable</code> in an int column, with a byte of flags per word.
+ *  Sentences are stored as the index of their first word and their number. The few words that have surrounding
+ *  symbols (encoded with <code>SymbolCodes</code>) or named entities have them recorded in sparse side columns.
+ *  This takes a few bytes per word.
+ *
+ *  <code>getSentences()</code> and <code>getWords()</code> present the document as read-only lists of
+ *  sentences and tokens, created on access, so existing code (e.g. the tagger and the xml output) works unchanged.
+ *  Tagging a token of this view records the named entity in the document.
+ */
+
+public class ColumnarDocument extends Document {
+
+	// word flags
+	static final byte SYMBOLS = 1;       // the word has surrounding symbols
+	static final byte SYMBOL_IDS = 2;    // which can't be encoded, and are stored as ids in the symbol table
+
+	final SymbolTable symbols;
+
+	// one entry per word
+	int words;
+	int[] wordIds = new int[64];
+	byte[] flags = new byte[64];
+
+	// one entry per sentence
+	int sentenceCount;
+	int[] sentenceStarts = new int[16];     // index of the sentence's first word
+	int[] sentenceNumbers = new int[16];
+
+	// the symbols of the words having some, by increasing word index : their SymbolCodes encoding, or the
+	// ids plus one of the before and after symbols (0 for none) in the low and high 32 bits
+	int symbolWords;
+	int[] symbolWordIndexes = new int[16];
+	long[] symbolCodes = new long[16];
+
+	// the named entities of words, as (word index << 32 | tag order) keys, and the entity tagged in that order
+	int tags;
+	long[] tagKeys = new long[0];
+	int[] tagEntities = new int[0];
+	boolean tagsSorted = true;
+	List<NamedEntity> entities = new ArrayList<NamedEntity>();
+	IdentityHashMap<NamedEntity, Integer> entityIds = new IdentityHashMap<NamedEntity, Integer>();
+
+	List<Sentence> sentenceView = new SentenceList(null);
+
+	/**
+	 * @param name
+	 * @param symbols  the table the words and symbols are interned in
+	 */
+
+	public ColumnarDocument(String name, SymbolTable symbols) {
+		super(name);
+		this.symbols = symbols;
+	}
+
+	/** Appends a word to the document, starting a new sentence if the sentence number changes
+	 *
+	 * @param wordId         the id of the word in the document's symbol table
+	 * @param beforeSymbol
+	 * @param afterSymbol
+	 * @param sentenceNumber
+	 */
+
+	public void addWord(int wordId, CharSequence beforeSymbol, CharSequence afterSymbol, int sentenceNumber) {
+		if(sentenceCount==0 || sentenceNumbers[sentenceCount-1]!=sentenceNumber) {
+			if(sentenceCount==sentenceStarts.length) {
+				sentenceStarts = Arrays.copyOf(sentenceStarts, sentenceCount*2);
+				sentenceNumbers = Arrays.copyOf(sentenceNumbers, sentenceCount*2);
+			}
+			sentenceStarts[sentenceCount] = words;
+			sentenceNumbers[sentenceCount++] = sentenceNumber;
+		}
+
+		if(words==wordIds.length) {
+			wordIds = Arrays.copyOf(wordIds, words*2);
+			flags = Arrays.copyOf(flags, words*2);
+		}
+
+		byte flag = 0;
+		if(beforeSymbol.length()>0 || afterSymbol.length()>0) {
+			flag = SYMBOLS;
+			long codes = SymbolCodes.encode(beforeSymbol, afterSymbol);
+			if(codes==SymbolCodes.NOT_ENCODED) {
+				flag |= SYMBOL_IDS;
+				codes = symbolId(beforeSymbol) | (long) symbolId(afterSymbol) << 32;
+			}
+
+			if(symbolWords==symbolWordIndexes.length) {
+				symbolWordIndexes = Arrays.copyOf(symbolWordIndexes, symbolWords*2);
+				symbolCodes = Arrays.copyOf(symbolCodes, symbolWords*2);
+			}
+			symbolWordIndexes[symbolWords] = words;
+			symbolCodes[symbolWords++] = codes;
+		}
+
+		wordIds[words] = wordId;
+		flags[words++] = flag;
+	}
+
+	/** Appends the words of an untagged document sharing this document's symbol table, e.g. a chunk of a file
+	 *  parsed separately, shifting their sentence numbers. A sentence whose shifted number is the number of the
+	 *  last sentence of this document continues it.
+	 *
+	 * @param chunk
+	 * @param sentenceOffset  the amount to add to the sentence numbers of the chunk
+	 */
+
+	public void append(ColumnarDocument chunk, int sentenceOffset) {
+		if(chunk.symbols!=symbols)throw new IllegalArgumentException("The documents have different symbol tables");
+		if(chunk.tags>0)throw new IllegalArgumentException("The appended document is tagged");
+
+		int first = words;
+		for(int i=0;i<chunk.sentenceCount;i++) {
+			int number = chunk.sentenceNumbers[i] + sentenceOffset;
+			if(sentenceCount>0 && sentenceNumbers[sentenceCount-1]==number)continue;
+			if(sentenceCount==sentenceStarts.length) {
+				sentenceStarts = Arrays.copyOf(sentenceStarts, Math.max(16, sentenceCount*2));
+				sentenceNumbers = Arrays.copyOf(sentenceNumbers, Math.max(16, sentenceCount*2));
+			}
+			sentenceStarts[sentenceCount] = first + chunk.sentenceStarts[i];
+			sentenceNumbers[sentenceCount++] = number;
+		}
+
+		if(words + chunk.words > wordIds.length) {
+			wordIds = Arrays.copyOf(wordIds, Math.max(words*2, words + chunk.words));
+			flags = Arrays.copyOf(flags, wordIds.length);
+		}
+		System.arraycopy(chunk.wordIds, 0, wordIds, words, chunk.words);
+		System.arraycopy(chunk.flags, 0, flags, words, chunk.words);
+		words += chunk.words;
+
+		if(symbolWords + chunk.symbolWords > symbolWordIndexes.length) {
+			symbolWordIndexes = Arrays.copyOf(symbolWordIndexes, Math.max(symbolWords*2, symbolWords + chunk.symbolWords));
+			symbolCodes = Arrays.copyOf(symbolCodes, symbolWordIndexes.length);
+		}
+		for(int i=0;i<chunk.symbolWords;i++) {
+			symbolWordIndexes[symbolWords] = first + chunk.symbolWordIndexes[i];
+			symbolCodes[symbolWords++] = chunk.symbolCodes[i];
+		}
+	}
+
+	/** Releases the unused capacity of the columns, once the document is fully parsed */
+
+	public void trimToSize() {
+		wordIds = Arrays.copyOf(wordIds, words);
+		flags = Arrays.copyOf(flags, words);
+		sentenceStarts = Arrays.copyOf(sentenceStarts, sentenceCount);
+		sentenceNumbers = Arrays.copyOf(sentenceNumbers, sentenceCount);
+		symbolWordIndexes = Arrays.copyOf(symbolWordIndexes, symbolWords);
+		symbolCodes = Arrays.copyOf(symbolCodes, symbolWords);
+	}
+
+	/** @return the number of words in the document */
+
+	public int getWordCount() {
+		return words;
+	}
+
+	public SymbolTable getSymbolTable() {
+		return symbols;
+	}
+
+	public void addSentence(Sentence sentence) {
+		throw new UnsupportedOperationException("A columnar document is read-only, use addWord()");
+	}
+
+	public void replaceSentences(int from, int to, List<Sentence> replacement) {
+		throw new UnsupportedOperationException("A columnar document is read-only");
+	}
+
+	/** @return a read-only view of the sentences */
+
+	public List<Sentence> getSentences() {
+		return sentenceView;
+	}
+
+	private int symbolId(CharSequence symbol) {
+		return symbol.length()==0 ? 0 : symbols.intern(symbol) + 1;
+	}
+
+	/** @return the encoded symbols of the word, or the ids of its symbols if flagged with <code>SYMBOL_IDS</code> */
+
+	private long symbolCodes(int word) {
+		if((flags[word] & SYMBOLS)==0)return SymbolCodes.NONE;
+		return symbolCodes[Arrays.binarySearch(symbolWordIndexes, 0, symbolWords, word)];
+	}
+
+	private String symbol(long ids, boolean after) {
+		int id = (int) (after ? ids >>> 32 : ids);
+		return id==0 ? "" : symbols.get(id - 1);
+	}
+
+	synchronized void tag(int word, NamedEntity entity) {
+		Integer id = entityIds.get(entity);
+		if(id==null) {
+			id = entities.size();
+			entities.add(entity);
+			entityIds.put(entity, id);
+		}
+
+		if(tags==tagKeys.length) {
+			tagKeys = Arrays.copyOf(tagKeys, Math.max(16, tags*2));
+			tagEntities = Arrays.copyOf(tagEntities, Math.max(16, tags*2));
+		}
+		if(tags>0 && (int) (tagKeys[tags-1] >>> 32) > word)tagsSorted = false;
+		tagKeys[tags] = (long) word << 32 | tags;
+		tagEntities[tags] = id;
+		tags++;
+	}
+
+	/** Merges sorted tags, e.g. those of a range, into the document's, keeping them in word order. Their tag order
+	 *  follows the document's, so the tags of a word keep the order they were tagged in. Only the document's tags
+	 *  after the first merged word are moved.
+	 *
+	 * @param keys      (word index << 32 | index in tagged) keys, sorted
+	 * @param tagged
+	 * @param count
+	 */
+
+	synchronized void mergeTags(long[] keys, NamedEntity[] tagged, int count) {
+		if(count==0)return;
+		sortTags();
+		if(tags + count > tagKeys.length) {
+			tagKeys = Arrays.copyOf(tagKeys, Math.max(16, Math.max(tags*2, tags + count)));
+			tagEntities = Arrays.copyOf(tagEntities, tagKeys.length);
+		}
+
+		long[] merged = new long[count];
+		for(int i=0;i<count;i++) {
+			NamedEntity entity = tagged[(int) keys[i]];
+			Integer id = entityIds.get(entity);
+			if(id==null) {
+				id = entities.size();
+				entities.add(entity);
+				entityIds.put(entity, id);
+			}
+			merged[i] = (keys[i] >>> 32) << 32 | (tags + i);
+			tagEntities[tags + i] = id;
+		}
+
+		// from the end, the new keys having a larger tag order than the document's of the same word
+		int i = tags - 1, j = count - 1;
+		for(int k=tags + count - 1;j>=0;k--)tagKeys[k] = i>=0 && tagKeys[i]>merged[j] ? tagKeys[i--] : merged[j--];
+		tags += count;
+	}
+
+	/** @return whether the tags are in word order, so looking a word up doesn't sort them first */
+
+	public synchronized boolean areTagsSorted() {
+		return tagsSorted;
+	}
+
+	private void sortTags() {
+		if(!tagsSorted) {
+			Arrays.sort(tagKeys, 0, tags);
+			tagsSorted = true;
+		}
+	}
+
+	/** @return the named entities of the word in tagging order, or null if it has none */
+
+	synchronized List<NamedEntity> namedEntities(int word) {
+		sortTags();
+
+		List<NamedEntity> ret = null;
+		for(int i=first(tagKeys, tags, word);i<tags && (tagKeys[i] >>> 32)==word;i++) {
+			if(ret==null)ret = new ArrayList<NamedEntity>(2);
+			ret.add(entities.get(tagEntities[(int) tagKeys[i]]));
+		}
+		return ret;
+	}
+
+	/** @return the first of the sorted keys of the word, i.e. the insertion point of (word << 32) */
+
+	private static int first(long[] keys, int size, int word) {
+		int lo = 0, hi = size;
+		while(lo<hi) {
+			int mid = (lo + hi) >>> 1;
+			if((keys[mid] >>> 32) < word)lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+
+	/** @return the tags of the sentences [from, to), recorded apart from the document's until committed */
+
+	public RangeTags tagRange(int from, int to) {
+		if(from<0 || to>sentenceCount || from>to)throw new IndexOutOfBoundsException(from + ", " + to);
+		return new RangeTags(from, to);
+	}
+
+
+	/** The tags of a range of the sentences, e.g. one of the ranges tagged by several threads. Interleaved in the
+	 *  document's columns, the tags of concurrent ranges wouldn't be in word order, and each lookup would sort
+	 *  them all again : a range records its tags on its own, and <code>commit()</code> merges them into the
+	 *  document's at once, which stay in word order. A range is tagged by a single thread.
+	 */
+
+	public class RangeTags {
+		final int from, to;
+		final boolean documentTagged;     // whether the tokens' lookups must include the document's tags
+		int tags;
+		long[] keys = new long[0];        // (word index << 32 | tag order) keys, as in the document
+		NamedEntity[] tagged = new NamedEntity[0];
+		boolean sorted = true;
+
+		RangeTags(int from, int to) {
+			this.from = from;
+			this.to = to;
+			synchronized(ColumnarDocument.this) {
+				this.documentTagged = ColumnarDocument.this.tags>0;
+			}
+		}
+
+		/** @return a view of the sentences of the range, whose tokens are tagged in the range */
+
+		public List<Sentence> getSentences() {
+			return new SentenceList(this);
+		}
+
+		void tag(int word, NamedEntity entity) {
+			if(tags==keys.length) {
+				keys = Arrays.copyOf(keys, Math.max(16, tags*2));
+				tagged = Arrays.copyOf(tagged, Math.max(16, tags*2));
+			}
+			if(tags>0 && (int) (keys[tags-1] >>> 32) > word)sorted = false;
+			keys[tags] = (long) word << 32 | tags;
+			tagged[tags++] = entity;
+		}
+
+		List<NamedEntity> namedEntities(int word) {
+			List<NamedEntity> ret = documentTagged ? ColumnarDocument.this.namedEntities(word) : null;
+			sort();
+			for(int i=first(keys, tags, word);i<tags && (keys[i] >>> 32)==word;i++) {
+				if(ret==null)ret = new ArrayList<NamedEntity>(2);
+				ret.add(tagged[(int) keys[i]]);
+			}
+			return ret;
+		}
+
+		private void sort() {
+			if(!sorted) {
+				Arrays.sort(keys, 0, tags);
+				sorted = true;
+			}
+		}
+
+		/** Merges the tags of the range into the document's, once the range is tagged */
+
+		public void commit() {
+			sort();
+			mergeTags(keys, tagged, tags);
+			tags = 0;
+		}
+	}
+
+
+	/** The sentences of the document, or of a range of them */
+
+	private class SentenceList extends AbstractList<Sentence> implements RandomAccess {
+		final RangeTags range;     // null for all the sentences
+
+		SentenceList(RangeTags range) {
+			this.range = range;
+		}
+
+		public Sentence get(int index) {
+			if(index<0 || index>=size())throw new IndexOutOfBoundsException(String.valueOf(index));
+			int sentence = range==null ? index : range.from + index;
+			int end = sentence+1<sentenceCount ? sentenceStarts[sentence+1] : words;
+			return new ColumnarSentence(sentenceNumbers[sentence], new TokenList(sentenceStarts[sentence], end, sentenceNumbers[sentence], range));
+		}
+
+		public int size() {
+			return range==null ? sentenceCount : range.to - range.from;
+		}
+	}
+
+	/** The words [from, to) of a sentence of the document */
+
+	private class TokenList extends AbstractList<Token> implements RandomAccess {
+		final int from, to, sentenceNumber;
+		final RangeTags range;
+
+		TokenList(int from, int to, int sentenceNumber, RangeTags range) {
+			this.from = from;
+			this.to = to;
+			this.sentenceNumber = sentenceNumber;
+			this.range = range;
+		}
+
+		public Token get(int index) {
+			if(index<0 || index>=to-from)throw new IndexOutOfBoundsException(String.valueOf(index));
+			int word = from + index;
+			long codes = symbolCodes(word);
+			if((flags[word] & SYMBOL_IDS)!=0)return new ColumnarToken(word, symbol(codes, false), symbol(codes, true), sentenceNumber, range);
+			return new ColumnarToken(word, codes, sentenceNumber, range);
+		}
+
+		public int size() {
+			return to - from;
+		}
+	}
+
+	/** A sentence of the document, whose words can't be changed */
+
+	private class ColumnarSentence extends Sentence {
+
+		ColumnarSentence(int num, List<Token> words) {
+			super(num, words);
+		}
+
+		public void shiftNumber(int delta) {
+			throw new UnsupportedOperationException("A columnar document is read-only");
+		}
+	}
+
+	/** A word of the document, whose named entities are stored in the document, or in the range it is tagged in */
+
+	private class ColumnarToken extends Token {
+		final int word;
+		final RangeTags range;
+
+		ColumnarToken(int word, long codes, int sentenceNumber, RangeTags range) {
+			super(symbols, wordIds[word], codes, null, null, sentenceNumber);
+			this.word = word;
+			this.range = range;
+		}
+
+		ColumnarToken(int word, String beforeSymbol, String afterSymbol, int sentenceNumber, RangeTags range) {
+			super(symbols, wordIds[word], SymbolCodes.NOT_ENCODED, beforeSymbol, afterSymbol, sentenceNumber);
+			this.word = word;
+			this.range = range;
+		}
+
+		public List<NamedEntity> getNamedEntities() {
+			return range==null ? namedEntities(word) : range.namedEntities(word);
+		}
+
+		public void tagWithNamedEntity(NamedEntity entity) {
+			if(range==null)tag(word, entity);
+			else range.tag(word, entity);
+		}
+	}
+}
@@ -13,6 +13,7 @@ public class Document {
 	
 	String name;
 	List<Sentence> sentences;
+	long dictionaryVersion;
 	
 	public Document(String name) {
 		this.name = name;
@@ -23,6 +24,19 @@ public class Document {
 		sentences.add(sentence);
 	}
 	
+	/** Replaces the sentences [from, to) with the given ones
+	 * 
+	 * @param from
+	 * @param to
+	 * @param replacement
+	 */
+	
+	public void replaceSentences(int from, int to, List<Sentence> replacement) {
+		List<Sentence> range = sentences.subList(from, to);
+		range.clear();
+		range.addAll(replacement);
+	}
+	
 	public List<Sentence> getSentences() {
 		return sentences;
 	}
@@ -31,6 +45,16 @@ public class Document {
 		return name;
 	}
 	
+	/** @return the version of the dictionary the document was tagged with, or 0 if it wasn't tagged */
+	
+	public long getDictionaryVersion() {
+		return dictionaryVersion;
+	}
+	
+	public void setDictionaryVersion(long dictionaryVersion) {
+		this.dictionaryVersion = dictionaryVersion;
+	}
+	
 	
 	/** Outputs an xml representation of this document to the given StringBuilder.
 	 * 
@@ -39,13 +63,44 @@ public class Document {
 	 */
 	
 	public void toXml(StringBuilder sb, String indent) {
-		sb.append(indent).append("<document name=\"").append(name).append("\">\n");
+		xmlStart(sb, indent);
 		String newIndent = "    " + indent;
-		for(Sentence sentence : sentences){
-			sb.append(indent);
-			sentence.toXml(sb,  newIndent);
-			sb.append("\n");
-		}
+		for(Sentence sentence : getSentences())sentenceToXml(sb, indent, newIndent, sentence);
+		xmlEnd(sb, indent);
+	}
+	
+	/** Outputs the opening tag of this document's xml representation, so the sentences can be output
+	 *  one at a time with <code>sentenceToXml()</code>, e.g. while the document is being parsed.
+	 * 
+	 * @param sb      StringBuilder to print to
+	 * @param indent  indentation to use
+	 */
+	
+	public void xmlStart(StringBuilder sb, String indent) {
+		sb.append(indent).append("<document name=\"").append(name).append("\">\n");
+	}
+	
+	/** Outputs a sentence of this document, as in <code>toXml()</code>
+	 * 
+	 * @param sb              StringBuilder to print to
+	 * @param indent          indentation of the document
+	 * @param sentenceIndent  indentation of the sentence, i.e. 4 spaces more than the document's
+	 * @param sentence
+	 */
+	
+	public static void sentenceToXml(StringBuilder sb, String indent, String sentenceIndent, Sentence sentence) {
+		sb.append(indent);
+		sentence.toXml(sb, sentenceIndent);
+		sb.append("\n");
+	}
+	
+	/** Outputs the closing tag of this document's xml representation
+	 * 
+	 * @param sb      StringBuilder to print to
+	 * @param indent  indentation to use
+	 */
+	
+	public void xmlEnd(StringBuilder sb, String indent) {
 		sb.append(indent).append("</document>");
 	}
 }
@@ -18,6 +18,13 @@ public class Sentence {
 		this.words = new ArrayList<Token>();
 	}
 	
+	/** Create a sentence backed by the given list of words, e.g. a view of a <code>ColumnarDocument</code> */
+	
+	Sentence(int num, List<Token> words) {
+		this.num = num;
+		this.words = words;
+	}
+	
 	public void addWord(Token token) {
 		words.add(token);		
 	}
@@ -26,6 +33,21 @@ public class Sentence {
 		return words;
 	}
 	
+	public int getNum() {
+		return num;
+	}
+	
+	/** Renumbers this sentence and its words, e.g. when the sentence was parsed from 
+	 *  a chunk in the middle of a document
+	 * 
+	 * @param delta  the amount to add to the sentence number
+	 */
+	
+	public void shiftNumber(int delta) {
+		num += delta;
+		for(Token word : words)word.sentenceNumber += delta;
+	}
+	
 	/** Outputs an xml representation of this sentence to the given StringBuilder.
 	 * 
 	 * @param sb      StringBuilder to print to
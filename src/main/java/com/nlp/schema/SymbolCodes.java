@@ -0,0 +1,103 @@
+package com.nlp.schema;
+
+import java.util.Arrays;
+
+/**
+ *  A compact encoding of the symbols surrounding a word (see <code>Token</code>) into a single long.
+ *
+ *  The default surrounding symbols form a tiny alphabet of 7 characters, so each one gets a 3 bit code.
+ *  Each side (before symbols in the low 32 bits, after symbols in the high 32 bits) is encoded as :
+ *  <pre>
+ *    bits 0-2    the number of symbols (at most 7)
+ *    bits 3-9    a bitset of the symbols present, for constant time membership tests
+ *    bits 10-30  the 3 bit codes of the symbols, in order
+ *  </pre>
+ *  Symbols that are longer or use characters outside the alphabet (e.g. with a configured <code>LexerTable</code>)
+ *  can't be encoded, and are kept as Strings.
+ */
+
+public final class SymbolCodes {
+
+	public static final String ALPHABET = "();:'\",";
+
+	/** The value of sequences that can't be encoded */
+	public static final long NOT_ENCODED = -1L;
+
+	/** The encoding of no symbols on either side */
+	public static final long NONE = 0L;
+
+	private static final int MAX_SYMBOLS = 7;
+	private static final int MASK_SHIFT = 3;
+	private static final int CODES_SHIFT = 10;
+
+	private static final byte[] CODES = new byte[128];
+	private static final String[] SINGLE = new String[ALPHABET.length()];
+
+	static {
+		Arrays.fill(CODES, (byte) -1);
+		for(int i=0;i<ALPHABET.length();i++) {
+			CODES[ALPHABET.charAt(i)] = (byte) i;
+			SINGLE[i] = String.valueOf(ALPHABET.charAt(i));
+		}
+	}
+
+	private SymbolCodes() {
+	}
+
+	/** @return the encoding of the given before and after symbols, or <code>NOT_ENCODED</code> */
+
+	public static long encode(CharSequence before, CharSequence after) {
+		long b = encodeSide(before);
+		if(b<0)return NOT_ENCODED;
+		long a = encodeSide(after);
+		if(a<0)return NOT_ENCODED;
+		return b | a << 32;
+	}
+
+	private static long encodeSide(CharSequence symbols) {
+		int n = symbols.length();
+		if(n>MAX_SYMBOLS)return -1;
+
+		long side = n;
+		for(int i=0;i<n;i++) {
+			int code = code(symbols.charAt(i));
+			if(code<0)return -1;
+			side |= 1L << (MASK_SHIFT + code) | (long) code << (CODES_SHIFT + 3*i);
+		}
+		return side;
+	}
+
+	private static int code(char c) {
+		return c<CODES.length ? CODES[c] : -1;
+	}
+
+	private static int side(long codes, boolean after) {
+		return (int) (after ? codes >>> 32 : codes);
+	}
+
+	/** @return true if the given symbol is among the encoded symbols of the given side */
+
+	public static boolean contains(long codes, boolean after, char symbol) {
+		int code = code(symbol);
+		return code>=0 && (side(codes, after) >>> (MASK_SHIFT + code) & 1)!=0;
+	}
+
+	/** @return the number of encoded symbols on the given side */
+
+	public static int count(long codes, boolean after) {
+		return side(codes, after) & MAX_SYMBOLS;
+	}
+
+	/** @return the symbols of the given side, "" for none */
+
+	public static String decode(long codes, boolean after) {
+		int side = side(codes, after);
+		int n = side & MAX_SYMBOLS;
+		if(n==0)return "";
+		if(n==1)return SINGLE[side >>> CODES_SHIFT & 7];
+
+		char[] chars = new char[n];
+		for(int i=0;i<n;i++)chars[i] = ALPHABET.charAt(side >>> (CODES_SHIFT + 3*i) & 7);
+		return new String(chars);
+	}
+}
@@ -0,0 +1,181 @@
+package com.nlp.schema;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ *  A thread-safe interning table, mapping word text to a dense int id (0, 1, 2, ...).
+ *
+ *  A corpus has few distinct words compared to its number of tokens, so sharing one table between all the
+ *  parsing tasks lets every token reference a single canonical String (and its id) instead of its own copy.
+ *
+ *  The table is lock-striped : a word is hashed to one of a fixed number of stripes, each an open addressing
+ *  hash table guarded by its own lock, so concurrent tasks rarely contend. Words can be looked up by any
+ *  <code>CharSequence</code> (e.g. a <code>WordSpan</code>), without creating a String unless the word is new.
+ *  The id to String mapping is stored in chunks that are never moved, so <code>get(id)</code> takes no lock.
+ */
+
+public class SymbolTable {
+
+	private static final int STRIPES = 64;
+	private static final int CHUNK_BITS = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int MAX_CHUNKS = 1 << 16;
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+	private final AtomicInteger nextId = new AtomicInteger();
+
+	// id -> word, and id -> id of the upper case form of the word (plus one, 0 when not computed yet)
+	private final AtomicReferenceArray<AtomicReferenceArray<String>> words = new AtomicReferenceArray<AtomicReferenceArray<String>>(MAX_CHUNKS);
+	private final AtomicReferenceArray<AtomicIntegerArray> foldedIds = new AtomicReferenceArray<AtomicIntegerArray>(MAX_CHUNKS);
+
+	public SymbolTable() {
+		for(int i=0;i<STRIPES;i++)stripes[i] = new Stripe();
+	}
+
+	/** An open addressing hash table of ids, for the words hashing to this stripe */
+
+	private class Stripe {
+		int[] ids = new int[64];          // id + 1, 0 for an empty slot
+		int[] hashes = new int[64];
+		int size;
+
+		synchronized int find(CharSequence word, int start, int end, int hash) {
+			int mask = ids.length - 1;
+			for(int slot = hash & mask; ids[slot]!=0; slot = (slot + 1) & mask) {
+				if(hashes[slot]==hash && contentEquals(get(ids[slot]-1), word, start, end))return ids[slot]-1;
+			}
+			return -1;
+		}
+
+		synchronized int intern(CharSequence word, int start, int end, int hash) {
+			int mask = ids.length - 1;
+			int slot = hash & mask;
+			for(; ids[slot]!=0; slot = (slot + 1) & mask) {
+				if(hashes[slot]==hash && contentEquals(get(ids[slot]-1), word, start, end))return ids[slot]-1;
+			}
+
+			int id = add(word.subSequence(start, end).toString());
+			ids[slot] = id + 1;
+			hashes[slot] = hash;
+			if(++size*2>ids.length)resize();
+			return id;
+		}
+
+		private void resize() {
+			int[] oldIds = ids, oldHashes = hashes;
+			ids = new int[oldIds.length*2];
+			hashes = new int[oldIds.length*2];
+			int mask = ids.length - 1;
+
+			for(int i=0;i<oldIds.length;i++) {
+				if(oldIds[i]==0)continue;
+				int slot = oldHashes[i] & mask;
+				while(ids[slot]!=0)slot = (slot + 1) & mask;
+				ids[slot] = oldIds[i];
+				hashes[slot] = oldHashes[i];
+			}
+		}
+	}
+
+	private int add(String word) {
+		int id = nextId.getAndIncrement();
+		int chunk = id >>> CHUNK_BITS;
+		if(chunk>=MAX_CHUNKS)throw new IllegalStateException("Symbol table is full");
+
+		// the folded ids chunk is published first, so it is there for anyone seeing the words chunk
+		if(words.get(chunk)==null) {
+			foldedIds.compareAndSet(chunk, null, new AtomicIntegerArray(CHUNK_SIZE));
+			words.compareAndSet(chunk, null, new AtomicReferenceArray<String>(CHUNK_SIZE));
+		}
+		words.get(chunk).set(id & (CHUNK_SIZE-1), word);
+		return id;
+	}
+
+	/** @return the id of the given word, adding it to the table if needed */
+
+	public int intern(CharSequence word) {
+		return intern(word, 0, word.length());
+	}
+
+	/** @return the id of the word formed by the characters [start, end) of the given sequence, adding it to the table if needed */
+
+	public int intern(CharSequence word, int start, int end) {
+		int hash = hash(word, start, end);
+		return stripe(hash).intern(word, start, end, hash);
+	}
+
+	/** @return the id of the given word, or -1 if it is not in the table */
+
+	public int lookup(CharSequence word) {
+		return lookup(word, 0, word.length());
+	}
+
+	/** @return the id of the word formed by the characters [start, end) of the given sequence, or -1 if it is not in the table */
+
+	public int lookup(CharSequence word, int start, int end) {
+		int hash = hash(word, start, end);
+		return stripe(hash).find(word, start, end, hash);
+	}
+
+	/** @return the word with the given id */
+
+	public String get(int id) {
+		return words.get(id >>> CHUNK_BITS).get(id & (CHUNK_SIZE-1));
+	}
+
+	/** @return the id of the upper case form of the word with the given id, which is how case is ignored
+	 *          when looking words up in dictionaries */
+
+	public int foldedId(int id) {
+		AtomicIntegerArray chunk = foldedIds.get(id >>> CHUNK_BITS);
+		int folded = chunk.get(id & (CHUNK_SIZE-1)) - 1;
+		if(folded<0) {
+			String word = get(id);
+			String upperCase = fold(word);
+			folded = upperCase.equals(word) ? id : intern(upperCase);
+			chunk.set(id & (CHUNK_SIZE-1), folded + 1);
+		}
+		return folded;
+	}
+
+	/** @return the word with each character in upper case, which is how case is ignored everywhere : one
+	 *          character at a time with <code>Character.toUpperCase(char)</code>, so the result doesn't depend
+	 *          on the default locale (e.g. the Turkish dotted I), and has the length of the word (the German
+	 *          sharp s staying as it is) */
+
+	public static String fold(CharSequence word) {
+		return fold(word, 0, word.length());
+	}
+
+	/** @return the characters [start, end) of the word, folded as by <code>fold(word)</code> */
+
+	public static String fold(CharSequence word, int start, int end) {
+		char[] chars = new char[end - start];
+		for(int i=0;i<chars.length;i++)chars[i] = Character.toUpperCase(word.charAt(start + i));
+		return new String(chars);
+	}
+
+	/** @return the number of words in the table */
+
+	public int size() {
+		return nextId.get();
+	}
+
+	private Stripe stripe(int hash) {
+		return stripes[(hash >>> 16) & (STRIPES-1)];
+	}
+
+	private static int hash(CharSequence word, int start, int end) {
+		int h = 0;
+		for(int i=start;i<end;i++)h = 31*h + word.charAt(i);
+		return h ^ (h >>> 16) * 0x45d9f3b;
+	}
+
+	private static boolean contentEquals(String str, CharSequence word, int start, int end) {
+		if(str.length()!=end-start)return false;
+		for(int i=0;i<str.length();i++)if(str.charAt(i)!=word.charAt(start+i))return false;
+		return true;
+	}
+}
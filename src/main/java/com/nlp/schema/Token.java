@@ -18,8 +18,10 @@ import com.nlp.ner.NamedEntity;
 
 public class Token {
 	String str;   // the actual content of the token itself
+	int wordId = -1;   // the id of str in a SymbolTable, or -1
 	int sentenceNumber;
-	String beforeSymbol;
+	long symbolCodes;    // the encoded surrounding symbols, see SymbolCodes
+	String beforeSymbol; // the surrounding symbols, only if they can't be encoded
 	String afterSymbol;
 	List<NamedEntity> namedEntities;
 	
@@ -29,6 +31,45 @@ public class Token {
 	
 	public Token(String str, String beforeSymbol, String afterSymbol, int sentenceNumber) {
 		this.str = str;
+		this.sentenceNumber = sentenceNumber;
+		this.symbolCodes = SymbolCodes.encode(beforeSymbol, afterSymbol);
+		if(symbolCodes==SymbolCodes.NOT_ENCODED) {
+			this.beforeSymbol = beforeSymbol;
+			this.afterSymbol = afterSymbol;
+		}
+	}
+	
+	/** Create a token for an interned word
+	 * 
+	 * @param symbols      the table the word was interned in
+	 * @param wordId       the id of the word in the table
+	 * @param beforeSymbol
+	 * @param afterSymbol
+	 * @param sentenceNumber
+	 */
+	
+	public Token(SymbolTable symbols, int wordId, String beforeSymbol, String afterSymbol, int sentenceNumber) {
+		this(symbols.get(wordId), beforeSymbol, afterSymbol, sentenceNumber);
+		this.wordId = wordId;
+	}
+	
+	/** Create a token for an interned word, with encoded surrounding symbols
+	 * 
+	 * @param symbols      the table the word was interned in
+	 * @param wordId       the id of the word in the table
+	 * @param symbolCodes  the surrounding symbols, encoded with <code>SymbolCodes.encode()</code> 
+	 * @param sentenceNumber
+	 */
+	
+	public Token(SymbolTable symbols, int wordId, long symbolCodes, int sentenceNumber) {
+		this(symbols, wordId, symbolCodes, null, null, sentenceNumber);
+		if(symbolCodes==SymbolCodes.NOT_ENCODED)throw new IllegalArgumentException("Symbols not encoded");
+	}
+	
+	Token(SymbolTable symbols, int wordId, long symbolCodes, String beforeSymbol, String afterSymbol, int sentenceNumber) {
+		this.str = symbols.get(wordId);
+		this.wordId = wordId;
+		this.symbolCodes = symbolCodes;
 		this.beforeSymbol = beforeSymbol;
 		this.afterSymbol = afterSymbol;
 		this.sentenceNumber = sentenceNumber;
@@ -37,7 +78,7 @@ public class Token {
 	public String toString() {
 		String ret = str;
 		ret += ","+ sentenceNumber;
-		if(beforeSymbol.length()>0 || afterSymbol.length()>0){ret+=" ["+beforeSymbol+","+afterSymbol+"]";}
+		if(symbolCodes!=SymbolCodes.NONE){ret+=" ["+getBeforeSymbol()+","+getAfterSymbol()+"]";}
 		return ret;
 	}
 	
@@ -46,8 +87,8 @@ public class Token {
 		Token otherToken = (Token) other;		
 		return  str.equals(otherToken.str) &&
 				sentenceNumber == otherToken.sentenceNumber &&
-				afterSymbol.equals(otherToken.afterSymbol) &&
-				beforeSymbol.equals(otherToken.beforeSymbol);
+				getAfterSymbol().equals(otherToken.getAfterSymbol()) &&
+				getBeforeSymbol().equals(otherToken.getBeforeSymbol());
 	}
 	
 	/** Outputs an xml representation of this token to the given StringBuilder.
@@ -60,8 +101,12 @@ public class Token {
 	public void toXml(StringBuilder sb, String indent) {
 		sb.append(indent).
 		  append("<word");
-		    if(beforeSymbol.length()>0)sb.append(" bef=\"").append(beforeSymbol).append("\"");
-		    if(afterSymbol.length()>0)sb.append(" aft=\"").append(afterSymbol).append("\"");
+		    if(symbolCodes!=SymbolCodes.NONE) {
+		    	String beforeSymbol = getBeforeSymbol(), afterSymbol = getAfterSymbol();
+		    	if(beforeSymbol.length()>0)sb.append(" bef=\"").append(beforeSymbol).append("\"");
+		    	if(afterSymbol.length()>0)sb.append(" aft=\"").append(afterSymbol).append("\"");
+		    }
+		    List<NamedEntity> namedEntities = getNamedEntities();
 		    if(namedEntities!=null){
 		    	sb.append(" entities=\"");
 		    	for(int i=0;i<namedEntities.size();i++)sb.append(namedEntities.get(i)).append(i<namedEntities.size()-1?",":"");
@@ -75,16 +120,46 @@ public class Token {
 		return str;
 	}
 
+	/** @return the id of the word in the symbol table the token was created with, or -1 if it was not interned */
+	
+	public int getWordId() {
+		return wordId;
+	}
+
 	public int getSentenceNumber() {
 		return sentenceNumber;
 	}
 
+	/** @return the symbols before the word, "" for none. Decoded on each call when they are encoded. */
+	
 	public String getBeforeSymbol() {
-		return beforeSymbol;
+		return symbolCodes==SymbolCodes.NOT_ENCODED ? beforeSymbol : SymbolCodes.decode(symbolCodes, false);
 	}
 
+	/** @return the symbols after the word, "" for none. Decoded on each call when they are encoded. */
+	
 	public String getAfterSymbol() {
-		return afterSymbol;
+		return symbolCodes==SymbolCodes.NOT_ENCODED ? afterSymbol : SymbolCodes.decode(symbolCodes, true);
+	}
+	
+	/** @return the encoded surrounding symbols, or <code>SymbolCodes.NOT_ENCODED</code> */
+	
+	public long getSymbolCodes() {
+		return symbolCodes;
+	}
+	
+	/** @return true if the given symbol is among the symbols before the word */
+	
+	public boolean hasBeforeSymbol(char symbol) {
+		if(symbolCodes==SymbolCodes.NOT_ENCODED)return beforeSymbol.indexOf(symbol)>=0;
+		return SymbolCodes.contains(symbolCodes, false, symbol);
+	}
+	
+	/** @return true if the given symbol is among the symbols after the word, e.g. the apostrophe in "Joe's" */
+	
+	public boolean hasAfterSymbol(char symbol) {
+		if(symbolCodes==SymbolCodes.NOT_ENCODED)return afterSymbol.indexOf(symbol)>=0;
+		return SymbolCodes.contains(symbolCodes, true, symbol);
 	}
 	
 	public List<NamedEntity> getNamedEntities() {
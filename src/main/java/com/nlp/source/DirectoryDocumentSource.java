@@ -0,0 +1,113 @@
+package com.nlp.source;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ *  The *.txt and gzipped *.txt.gz files of a directory and its sub directories, named by their path relative
+ *  to the directory (a gzipped file without its .gz extension). The directories are listed one at a time as
+ *  the iterator reaches them, in name order, so a large tree is walked as the documents are consumed.
+ */
+
+public class DirectoryDocumentSource implements DocumentSource {
+
+	/** Opens directories */
+
+	public static class Provider implements DocumentSourceProvider {
+		public boolean accepts(File file) {
+			return file.isDirectory();
+		}
+
+		public DocumentSource open(File file) {
+			return new DirectoryDocumentSource(file);
+		}
+	}
+
+	final File directory;
+
+	public DirectoryDocumentSource(File directory) {
+		this.directory = directory;
+	}
+
+	public Iterator<DocumentEntry> entries() {
+		return new Iterator<DocumentEntry>() {
+			// the files and directories left to visit, the next one first
+			final Deque<File> pending = new ArrayDeque<File>();
+			DocumentEntry next;
+
+			{
+				list(directory);
+				next = advance();
+			}
+
+			private void list(File dir) {
+				File[] files = dir.listFiles();
+				if(files==null)return;
+				Arrays.sort(files);
+				for(int i=files.length-1;i>=0;i--)pending.push(files[i]);
+			}
+
+			private DocumentEntry advance() {
+				while(!pending.isEmpty()) {
+					File file = pending.pop();
+					if(file.isDirectory())list(file);
+					else if(file.getName().endsWith(".txt"))return entry(file, name(file));
+					else if(file.getName().endsWith(".txt.gz")) {
+						String name = name(file);
+						return GzipDocumentSource.entry(file, name.substring(0, name.length() - 3));
+					}
+				}
+				return null;
+			}
+
+			public boolean hasNext() {
+				return next!=null;
+			}
+
+			public DocumentEntry next() {
+				if(next==null)throw new NoSuchElementException();
+				DocumentEntry ret = next;
+				next = advance();
+				return ret;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/** @return the path of the file relative to the directory, with / separators */
+
+	private String name(File file) {
+		String path = file.getPath().substring(directory.getPath().length());
+		if(path.startsWith(File.separator))path = path.substring(1);
+		return path.replace(File.separatorChar, '/');
+	}
+
+	private static DocumentEntry entry(final File file, final String name) {
+		return new DocumentEntry() {
+			public String getName() {
+				return name;
+			}
+
+			public long getSize() {
+				return file.length();
+			}
+
+			public InputStream open() throws IOException {
+				return new FileInputStream(file);
+			}
+		};
+	}
+
+	public void close() {
+	}
+}
@@ -0,0 +1,24 @@
+package com.nlp.source;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ *  A document of a <code>DocumentSource</code>, opened only when it is read : listing the documents of a
+ *  source holds no stream (and no inflater) open.
+ */
+
+public interface DocumentEntry {
+
+	/** @return the name of the document, e.g. its path in the source */
+
+	String getName();
+
+	/** @return the (uncompressed) size of the document in bytes, or -1 if unknown */
+
+	long getSize();
+
+	/** @return a new stream of the document's bytes, which the caller closes */
+
+	InputStream open() throws IOException;
+}
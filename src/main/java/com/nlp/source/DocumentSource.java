@@ -0,0 +1,30 @@
+package com.nlp.source;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ *  A source of documents, such as a zip file or a directory. The entries are listed lazily, as the iterator
+ *  is advanced, and each entry is opened only when it is read, so a worker opens (and decompresses) its
+ *  document when it is ready for it, and several workers can read entries of the same source in parallel.
+ *
+ *  The iterator may throw an <code>UncheckedIOException</code> if listing the entries fails. Closing the
+ *  source releases the resources it opened, after which its entries can't be opened anymore.
+ */
+
+public interface DocumentSource extends Closeable {
+
+	Iterator<DocumentEntry> entries();
+
+	/** Lists the entries, preparing only the given documents to be read, e.g. a worker's shard : a source that
+	 *  has to decompress its entries ahead of reading them does it for those only. The other entries may be
+	 *  listed, with their names and sizes, but not opened.
+	 *
+	 * @param names  the names of the documents to read, or null for all of them
+	 */
+
+	default Iterator<DocumentEntry> entries(Set<String> names) {
+		return entries();
+	}
+}
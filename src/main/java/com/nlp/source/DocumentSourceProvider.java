@@ -0,0 +1,19 @@
+package com.nlp.source;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ *  Opens a kind of document source, e.g. zip files. The providers are found with a <code>ServiceLoader</code>,
+ *  by their class name in a <code>META-INF/services/com.nlp.source.DocumentSourceProvider</code> file, so a
+ *  jar on the class path can add a kind of source. See <code>DocumentSources.open()</code>.
+ */
+
+public interface DocumentSourceProvider {
+
+	/** @return whether the provider can open the given file or directory, e.g. by its extension */
+
+	boolean accepts(File file);
+
+	DocumentSource open(File file) throws IOException;
+}
@@ -0,0 +1,26 @@
+package com.nlp.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ServiceLoader;
+
+/**
+ *  Opens the document source of a file or directory with the first provider accepting it. The built-in
+ *  providers open directories, tar files (optionally gzipped), gzip files and zip files.
+ */
+
+public class DocumentSources {
+
+	/**
+	 * @param file
+	 * @return the document source of the file or directory
+	 * @throws IOException  if no provider accepts the file, or it can't be opened
+	 */
+
+	public static DocumentSource open(File file) throws IOException {
+		for(DocumentSourceProvider provider : ServiceLoader.load(DocumentSourceProvider.class)) {
+			if(provider.accepts(file))return provider.open(file);
+		}
+		throw new IOException("No document source for " + file);
+	}
+}
@@ -0,0 +1,82 @@
+package com.nlp.source;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+
+/**
+ *  A gzip file holding a single document, named after the file without its .gz extension. Its size is read
+ *  from the gzip trailer (the uncompressed size modulo 4GB), and it is decompressed by the thread reading it.
+ */
+
+public class GzipDocumentSource implements DocumentSource {
+
+	static final int BUFFER_SIZE = 64*1024;
+
+	/** Opens *.gz files, other than gzipped tar files */
+
+	public static class Provider implements DocumentSourceProvider {
+		public boolean accepts(File file) {
+			return file.isFile() && file.getName().endsWith(".gz") && !file.getName().endsWith(".tar.gz");
+		}
+
+		public DocumentSource open(File file) throws IOException {
+			return new GzipDocumentSource(file);
+		}
+	}
+
+	final File file;
+
+	public GzipDocumentSource(File file) {
+		this.file = file;
+	}
+
+	public Iterator<DocumentEntry> entries() {
+		return Collections.singletonList(entry(file, file.getName().substring(0, file.getName().length() - 3))).iterator();
+	}
+
+	/** @return the entry of a gzipped document */
+
+	static DocumentEntry entry(final File file, final String name) {
+		return new DocumentEntry() {
+			public String getName() {
+				return name;
+			}
+
+			public long getSize() {
+				try {
+					return uncompressedSize(file);
+				} catch(IOException e) {
+					return -1;
+				}
+			}
+
+			public InputStream open() throws IOException {
+				return new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+			}
+		};
+	}
+
+	/** @return the uncompressed size of the gzip file, from its trailer, or -1 if the file is too short */
+
+	static long uncompressedSize(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if(raf.length()<18)return -1;
+			raf.seek(raf.length() - 4);
+			long size = 0;
+			for(int i=0;i<4;i++)size |= (long) raf.read() << (8*i);   // little endian
+			return size;
+		} finally {
+			raf.close();
+		}
+	}
+
+	public void close() {
+	}
+}
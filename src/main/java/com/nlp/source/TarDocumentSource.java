@@ -0,0 +1,324 @@
+package com.nlp.source;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ *  The *.txt regular files of a tar file (ustar, with GNU long names), optionally gzipped (.tar.gz or .tgz).
+ *
+ *  The headers are read as the iterator is advanced. The entries of a plain tar file are opened lazily, each
+ *  reading its range of the file, so they can be read in parallel. A gzipped tar file can only be decompressed
+ *  from its start, so its entries are decompressed one after the other as the iterator reaches them, into a
+ *  temporary file rather than the heap, and then read in parallel from their ranges of that file. Listing only
+ *  some documents (<code>entries(names)</code>) decompresses the whole file still, but spills those documents
+ *  only, and lists the others without being able to open them. The temporary files are deleted when the source
+ *  is closed.
+ */
+
+public class TarDocumentSource implements DocumentSource {
+
+	static final int BLOCK = 512;
+
+	/** Opens *.tar, *.tar.gz and *.tgz files */
+
+	public static class Provider implements DocumentSourceProvider {
+		public boolean accepts(File file) {
+			return file.isFile() && (file.getName().endsWith(".tar") || isCompressed(file));
+		}
+
+		public DocumentSource open(File file) {
+			return new TarDocumentSource(file);
+		}
+	}
+
+	final File file;
+	final boolean compressed;
+	final List<Closeable> listings = new ArrayList<Closeable>();
+	final List<File> spills = new ArrayList<File>();
+
+	public TarDocumentSource(File file) {
+		this.file = file;
+		this.compressed = isCompressed(file);
+	}
+
+	static boolean isCompressed(File file) {
+		return file.getName().endsWith(".tar.gz") || file.getName().endsWith(".tgz");
+	}
+
+	public Iterator<DocumentEntry> entries() {
+		return entries(null);
+	}
+
+	public Iterator<DocumentEntry> entries(final Set<String> names) {
+		final InputStream in;
+		try {
+			FileInputStream fis = new FileInputStream(file);
+			in = compressed ? new GZIPInputStream(fis, GzipDocumentSource.BUFFER_SIZE) : new BufferedInputStream(fis, GzipDocumentSource.BUFFER_SIZE);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		synchronized(listings) {
+			listings.add(in);
+		}
+
+		return new Iterator<DocumentEntry>() {
+			long offset;            // of the next header in the tar file
+			File spill;             // the decompressed entries of a gzipped tar file, and their size so far
+			OutputStream spillOut;
+			long spillSize;
+			DocumentEntry next = advance();
+
+			private DocumentEntry advance() {
+				try {
+					String longName = null;
+					byte[] header = new byte[BLOCK];
+					while(read(in, header, header.length) && !isZero(header)) {
+						offset += BLOCK;
+						String name = longName!=null ? longName : name(header);
+						longName = null;
+						long size = size(header);
+						byte type = header[156];
+
+						if(type=='L') {
+							longName = string(data(size), 0, (int) size);
+						} else if((type=='0' || type==0) && name.endsWith(".txt")) {
+							if(compressed && names!=null && !names.contains(name)) {
+								skip(size);
+								return unread(name, size);
+							}
+							if(compressed)return spill(name, size);
+							DocumentEntry entry = entry(file, name, offset, size);
+							skip(size);
+							return entry;
+						} else {
+							skip(size);
+						}
+					}
+					in.close();
+					if(spillOut!=null)spillOut.close();
+					return null;
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+
+			/** @return the data of the entry, skipping its padding */
+
+			private byte[] data(long size) throws IOException {
+				if(size>Integer.MAX_VALUE)throw new IOException("Entry larger than 2GB in " + file);
+				byte[] data = new byte[(int) size];
+				if(!read(in, data, data.length))throw new EOFException("Truncated tar file " + file);
+				skip(padding(size), size);
+				return data;
+			}
+
+			/** @return the entry, once copied from the decompressed stream to the spill file */
+
+			private DocumentEntry spill(String name, long size) throws IOException {
+				if(spill==null) {
+					spill = File.createTempFile("documents", ".tar");
+					spillOut = new FileOutputStream(spill);
+					synchronized(listings) {
+						spills.add(spill);
+						listings.add(spillOut);
+					}
+				}
+
+				byte[] buffer = new byte[(int) Math.min(size, GzipDocumentSource.BUFFER_SIZE)];
+				for(long remaining = size; remaining>0;) {
+					int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if(n<0)throw new EOFException("Truncated tar file " + file);
+					spillOut.write(buffer, 0, n);
+					remaining -= n;
+				}
+				spillOut.flush();
+				skip(padding(size), size);
+
+				DocumentEntry entry = entry(spill, name, spillSize, size);
+				spillSize += size;
+				return entry;
+			}
+
+			private void skip(long size) throws IOException {
+				skip(size + padding(size), 0);
+			}
+
+			/** skips count bytes, counted from the given number of bytes already read */
+
+			private void skip(long count, long read) throws IOException {
+				offset += read + count;
+				while(count>0) {
+					long n = in.skip(count);
+					if(n<=0) {
+						if(in.read()<0)throw new EOFException("Truncated tar file " + file);
+						n = 1;
+					}
+					count -= n;
+				}
+			}
+
+			public boolean hasNext() {
+				return next!=null;
+			}
+
+			public DocumentEntry next() {
+				if(next==null)throw new NoSuchElementException();
+				DocumentEntry ret = next;
+				next = advance();
+				return ret;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/** @return the entry of a range of the plain tar file, or of the spill file of a gzipped one */
+
+	private static DocumentEntry entry(final File file, final String name, final long offset, final long size) {
+		return new DocumentEntry() {
+			public String getName() {
+				return name;
+			}
+
+			public long getSize() {
+				return size;
+			}
+
+			public InputStream open() throws IOException {
+				FileInputStream fis = new FileInputStream(file);
+				fis.getChannel().position(offset);
+				return new RangeInputStream(fis, size);
+			}
+		};
+	}
+
+	/** @return the entry of a document of a gzipped tar file that was listed without being spilled */
+
+	private DocumentEntry unread(final String name, final long size) {
+		return new DocumentEntry() {
+			public String getName() {
+				return name;
+			}
+
+			public long getSize() {
+				return size;
+			}
+
+			public InputStream open() throws IOException {
+				throw new IOException(name + " wasn't selected when listing " + file);
+			}
+		};
+	}
+
+	/** The first bytes of a stream */
+
+	static class RangeInputStream extends FilterInputStream {
+		long remaining;
+
+		RangeInputStream(InputStream in, long size) {
+			super(in);
+			this.remaining = size;
+		}
+
+		public int read() throws IOException {
+			if(remaining<=0)return -1;
+			int b = in.read();
+			if(b>=0)remaining--;
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if(remaining<=0)return -1;
+			int n = in.read(b, off, (int) Math.min(len, remaining));
+			if(n>0)remaining -= n;
+			return n;
+		}
+
+		public long skip(long n) throws IOException {
+			long skipped = in.skip(Math.min(n, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+	}
+
+	/** @return whether the buffer was filled, false if the stream ended first */
+
+	static boolean read(InputStream in, byte[] buffer, int length) throws IOException {
+		for(int n, read = 0; read<length; read += n) {
+			n = in.read(buffer, read, length - read);
+			if(n<0)return false;
+		}
+		return true;
+	}
+
+	static long padding(long size) {
+		return (BLOCK - size % BLOCK) % BLOCK;
+	}
+
+	static boolean isZero(byte[] header) {
+		for(byte b : header)if(b!=0)return false;
+		return true;
+	}
+
+	/** @return the name of the entry, with its ustar prefix */
+
+	static String name(byte[] header) {
+		String name = string(header, 0, 100);
+		boolean ustar = header[257]=='u' && header[258]=='s' && header[259]=='t' && header[260]=='a' && header[261]=='r';
+		String prefix = ustar ? string(header, 345, 155) : "";
+		return prefix.isEmpty() ? name : prefix + "/" + name;
+	}
+
+	/** @return the size of the entry, in octal or (for large sizes) big endian binary */
+
+	static long size(byte[] header) {
+		long size = 0;
+		if((header[124] & 0x80)!=0) {
+			for(int i=125;i<136;i++)size = (size << 8) | (header[i] & 0xff);
+			return size;
+		}
+		for(int i=124;i<136;i++) {
+			if(header[i]>='0' && header[i]<='7')size = size*8 + (header[i] - '0');
+		}
+		return size;
+	}
+
+	/** @return the NUL terminated UTF-8 string of the field */
+
+	static String string(byte[] bytes, int start, int length) {
+		int end = start;
+		while(end<start+length && bytes[end]!=0)end++;
+		return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+	}
+
+	public void close() throws IOException {
+		synchronized(listings) {
+			for(Closeable listing : listings)listing.close();
+			listings.clear();
+			for(File spill : spills)spill.delete();
+			spills.clear();
+		}
+	}
+}
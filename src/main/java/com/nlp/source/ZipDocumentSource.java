@@ -0,0 +1,94 @@
+package com.nlp.source;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ *  The *.txt entries of a zip file, optionally under a given directory, other than the resource forks Mac OS
+ *  archivers add under __MACOSX/. An entry is inflated only when it is opened, by the thread reading it, so
+ *  tasks hold no inflater until they run and the entries of the same zip file are inflated in parallel.
+ */
+
+public class ZipDocumentSource implements DocumentSource {
+
+	/** Opens *.zip files */
+
+	public static class Provider implements DocumentSourceProvider {
+		public boolean accepts(File file) {
+			return file.isFile() && file.getName().endsWith(".zip");
+		}
+
+		public DocumentSource open(File file) throws IOException {
+			return new ZipDocumentSource(new ZipFile(file), "", true);
+		}
+	}
+
+	final ZipFile zipFile;
+	final String prefix;
+	final boolean owned;
+
+	/**
+	 * @param zipFile
+	 * @param prefix   the directory of the documents in the zip file, e.g. <code>nlp_data/</code>, or "" for all
+	 * @param owned    whether closing the source closes the zip file
+	 */
+
+	public ZipDocumentSource(ZipFile zipFile, String prefix, boolean owned) {
+		this.zipFile = zipFile;
+		this.prefix = prefix;
+		this.owned = owned;
+	}
+
+	public Iterator<DocumentEntry> entries() {
+		final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		return new Iterator<DocumentEntry>() {
+			ZipEntry next = advance();
+
+			private ZipEntry advance() {
+				while(entries.hasMoreElements()) {
+					ZipEntry entry = entries.nextElement();
+					String name = entry.getName();
+					if(!entry.isDirectory() && name.startsWith(prefix) && name.endsWith(".txt") && !name.startsWith("__MACOSX/"))return entry;
+				}
+				return null;
+			}
+
+			public boolean hasNext() {
+				return next!=null;
+			}
+
+			public DocumentEntry next() {
+				if(next==null)throw new NoSuchElementException();
+				final ZipEntry entry = next;
+				next = advance();
+				return new DocumentEntry() {
+					public String getName() {
+						return entry.getName();
+					}
+
+					public long getSize() {
+						return entry.getSize();
+					}
+
+					public InputStream open() throws IOException {
+						return zipFile.getInputStream(entry);
+					}
+				};
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public void close() throws IOException {
+		if(owned)zipFile.close();
+	}
+}
@@ -0,0 +1,147 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+import com.nlp.schema.Documents;
+
+public class CompletionsTest {
+
+	NamedEntitiesTagger tagger;
+	ExecutorService executor;
+
+	@Before
+	public void init() throws Exception {
+		tagger = new NamedEntitiesTagger("NER.txt");
+		executor = Executors.newFixedThreadPool(2);
+	}
+
+	@After
+	public void cleanup() {
+		executor.shutdownNow();
+	}
+
+	private Task task(String name, String text) throws Exception {
+		return new Task(new ByteArrayInputStream(text.getBytes("UTF-8")), name, tagger);
+	}
+
+	/** @return a task whose stream fails */
+
+	private Task failing(String name) {
+		return new Task(new InputStream() {
+			public int read() throws IOException {
+				throw new IOException("unreadable");
+			}
+		}, name, tagger);
+	}
+
+	/** @return a task whose stream blocks until the latch is counted down */
+
+	private Task waiting(String name, final CountDownLatch latch) throws Exception {
+		final InputStream is = new ByteArrayInputStream("Bob met Alice.".getBytes("UTF-8"));
+		return new Task(new InputStream() {
+			public int read() throws IOException {
+				try {
+					if(!latch.await(10, TimeUnit.SECONDS))throw new IOException("timed out");
+				} catch(InterruptedException e) {
+					throw new IOException(e);
+				}
+				return is.read();
+			}
+		}, name, tagger);
+	}
+
+	/** @return the exception the task's stream failed with, which the lexer may have wrapped */
+
+	private static Throwable rootCause(DocumentFailure failure) {
+		Throwable cause = failure.getCause();
+		while(cause.getCause()!=null)cause = cause.getCause();
+		return cause;
+	}
+
+	@Test
+	public void testCompletionOrder() throws Exception {
+		final CountDownLatch released = new CountDownLatch(1);
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(waiting("slow", released));
+		tasks.add(task("fast", "Isaac Newton met Bob."));
+
+		Completions completions = new Completions(executor);
+		completions.submitTasks(tasks);
+
+		// the fast document comes first, though submitted last
+		Document first = completions.take();
+		assertEquals("fast", first.getName());
+		assertEquals(1, completions.getCompleted());
+		assertTrue(completions.getTimeToFirstResult()>0);
+
+		released.countDown();
+		assertEquals("slow", completions.take().getName());
+		assertNull(completions.take());
+		assertEquals(2, completions.getSubmitted());
+		assertEquals(2, completions.getCompleted());
+		assertEquals(0, completions.getFailed());
+	}
+
+	@Test
+	public void testFailures() throws Exception {
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(task("first", "Bob met Alice."));
+		tasks.add(failing("broken"));
+		tasks.add(task("last", "Alice met Bob."));
+
+		Completions completions = new Completions(executor);
+		completions.submitTasks(tasks);
+		final List<String> completed = new ArrayList<String>();
+		final List<DocumentFailure> failed = new ArrayList<DocumentFailure>();
+		int count = completions.drain(new ResultListener() {
+			public void documentCompleted(Document document) {
+				completed.add(document.getName());
+			}
+
+			public void documentFailed(DocumentFailure failure) {
+				failed.add(failure);
+			}
+		});
+
+		assertEquals(2, count);
+		assertEquals(2, completed.size());
+		assertTrue(completed.contains("first") && completed.contains("last"));
+		assertEquals(1, failed.size());
+		assertEquals("broken", failed.get(0).getName());
+		assertTrue(rootCause(failed.get(0)) instanceof IOException);
+		assertEquals(1, completions.getFailed());
+		assertEquals(failed, completions.getFailures());
+	}
+
+	@Test
+	public void testWaitForCompletionRecordsFailures() throws Exception {
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(task("first", "Bob met Alice."));
+		tasks.add(failing("broken"));
+		Tasks.submitTasks(executor, tasks);
+
+		List<DocumentFailure> failures = new ArrayList<DocumentFailure>();
+		Documents documents = Tasks.waitForCompletion(tasks, failures);
+		assertEquals(1, documents.getDocuments().size());
+		assertEquals(1, failures.size());
+		assertEquals("broken", failures.get(0).getName());
+		assertEquals("unreadable", rootCause(failures.get(0)).getMessage());
+	}
+}
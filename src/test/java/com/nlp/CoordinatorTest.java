@@ -0,0 +1,118 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.zip.ZipFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.cluster.Coordinator;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Documents;
+
+public class CoordinatorTest {
+
+	String expectedXml;
+	EntityAggregator expectedCounts;
+
+	@Before
+	public void init() throws Exception {
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			Documents documents = new Documents();
+			expectedCounts = new EntityAggregator();
+			for(Task task : Tasks.getTasksFromZip(zipFile, new NamedEntitiesTagger("NER.txt"))) {
+				documents.addDocument(task.call());
+				expectedCounts.addDocument(documents.getDocuments().get(documents.getDocuments().size() - 1));
+			}
+			StringBuilder sb = new StringBuilder();
+			documents.toXml(sb, "");
+			expectedXml = sb.toString();
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private void assertMerged(Coordinator coordinator) throws IOException {
+		StringWriter out = new StringWriter();
+		coordinator.writeXml(out);
+		coordinator.close();
+		assertEquals(expectedXml, out.toString());
+		assertEquals(expectedCounts.topK(Integer.MAX_VALUE).toString(), coordinator.getAggregator().topK(Integer.MAX_VALUE).toString());
+		assertEquals(10, coordinator.getDocumentNames().size());
+		for(String name : coordinator.getDocumentNames())assertEquals(expectedCounts.getCounts(name), coordinator.getAggregator().getCounts(name));
+		assertTrue(coordinator.getFailures().isEmpty());
+	}
+
+	@Test
+	public void testWorkersMatchTasks() throws Exception {
+		Coordinator coordinator = new Coordinator("nlp_data.zip", "NER.txt", 2);
+		coordinator.run();
+		assertMerged(coordinator);
+		assertEquals(0, coordinator.getCrashes());
+	}
+
+	@Test
+	public void testBusyWorkerIsNotCrashed() throws Exception {
+		// the workers take longer than the timeout before their first document, but keep sending heartbeats
+		Coordinator coordinator = new Coordinator("nlp_data.zip", "NER.txt", 2);
+		coordinator.setTimeout(2000);
+		coordinator.setMaxRestarts(0);
+		coordinator.setWorkerClass(FaultyWorker.class);
+		coordinator.setJvmArguments(Arrays.asList("-Dnlp.test.delay=5000"));
+		coordinator.run();
+		assertMerged(coordinator);
+		assertEquals(0, coordinator.getCrashes());
+	}
+
+	@Test
+	public void testCrashedWorkerShardIsReassigned() throws Exception {
+		// the first worker to send two documents halts, whichever shards the workers took
+		File marker = marker();
+		try {
+			Coordinator coordinator = new Coordinator("nlp_data.zip", "NER.txt", 2);
+			coordinator.setPartitionBySize(false);
+			coordinator.setWorkerClass(FaultyWorker.class);
+			coordinator.setJvmArguments(Arrays.asList("-Dnlp.test.failAfter=2", "-Dnlp.test.failMarker=" + marker));
+			coordinator.run();
+			assertMerged(coordinator);
+			assertEquals(1, coordinator.getCrashes());
+			assertTrue(marker.exists());
+		} finally {
+			marker.delete();
+		}
+	}
+
+	@Test
+	public void testAllWorkersCrashed() throws Exception {
+		File marker = marker();
+		Coordinator coordinator = new Coordinator("nlp_data.zip", "NER.txt", 1);
+		coordinator.setMaxRestarts(0);
+		coordinator.setWorkerClass(FaultyWorker.class);
+		coordinator.setJvmArguments(Arrays.asList("-Dnlp.test.failAfter=1", "-Dnlp.test.failMarker=" + marker));
+		try {
+			coordinator.run();
+			fail();
+		} catch(IOException e) {
+			assertTrue(e.getMessage().startsWith("All the workers crashed"));
+		} finally {
+			coordinator.close();
+			marker.delete();
+		}
+		assertEquals(1, coordinator.getCrashes());
+	}
+
+	/** @return the path of a file that doesn't exist yet */
+
+	private static File marker() throws IOException {
+		File marker = File.createTempFile("crashed", ".marker");
+		marker.delete();
+		return marker;
+	}
+}
@@ -0,0 +1,98 @@
+package com.nlp;
+
+import java.io.BufferedReader;
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.nlp.ner.CaseInsensitiveMap;
+
+/**
+ *  Compares case-insensitive dictionary lookups of the words of nlp_data.zip (scaled up) in a <code>HashMap</code>
+ *  keyed by upper case Strings, which needs an upper case copy (and a substring for possessives) of every word,
+ *  with lookups in a <code>CaseInsensitiveMap</code>, which hashes and compares the words in place.
+ *
+ *  Run with : java -cp target/classes:target/test-classes com.nlp.DictionaryLookupBenchmark [megabytes]
+ */
+
+public class DictionaryLookupBenchmark {
+
+	public static void main(String s[]) throws Exception {
+		int megabytes = s.length>0 ? Integer.parseInt(s[0]) : 8;
+
+		final HashMap<String, String> hashMap = new HashMap<String, String>();
+		final CaseInsensitiveMap<String> caseInsensitiveMap = new CaseInsensitiveMap<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream("NER.txt"), "UTF-8"));
+		for(String line; (line = reader.readLine())!=null;) {
+			for(String part : line.split(" ")) {
+				hashMap.put(part.toUpperCase(), line);
+				caseInsensitiveMap.put(part, line);
+			}
+		}
+		reader.close();
+
+		// the words, and whether they are possessive
+		final List<String> words = new ArrayList<String>();
+		final List<Boolean> possessives = new ArrayList<Boolean>();
+		Lexer lex = new Lexer(new CharArrayReader(LexerBenchmark.scaledInput(new File("nlp_data.zip"), megabytes*1024*1024)));
+		while(lex.nextSpan()) {
+			WordSpan span = lex.getSpan();
+			words.add(span.toString());
+			possessives.add(span.hasAfterSymbol('\'') && span.length()>0 && Character.toLowerCase(span.charAt(span.length()-1))=='s');
+		}
+
+		for(int round=0;round<5;round++) {
+			boolean warmup = round<2;
+			report(warmup, "HashMap (toUpperCase, substring)", words.size(), new Run() {
+				public long run() {
+					long found = 0;
+					for(int i=0;i<words.size();i++) {
+						String word = words.get(i);
+						if(possessives.get(i))word = word.substring(0, word.length() - 1);
+						if(hashMap.get(word.toUpperCase())!=null)found++;
+					}
+					return found;
+				}
+			});
+			report(warmup, "CaseInsensitiveMap (in place)", words.size(), new Run() {
+				public long run() {
+					long found = 0;
+					for(int i=0;i<words.size();i++) {
+						String word = words.get(i);
+						if(caseInsensitiveMap.get(word, 0, possessives.get(i) ? word.length() - 1 : word.length())!=null)found++;
+					}
+					return found;
+				}
+			});
+			if(!warmup)System.out.println();
+		}
+	}
+
+	interface Run {
+		long run();
+	}
+
+	static void report(boolean warmup, String name, int lookups, Run run) {
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		long found = run.run();
+		long elapsed = System.nanoTime() - start;
+		bytes = allocatedBytes() - bytes;
+
+		if(warmup)return;
+		System.out.println(String.format("%-34s %8.1f ns/lookup %8.1f bytes/lookup (%d found)", name, (double) elapsed / lookups, (double) bytes / lookups, found));
+	}
+
+	/** @return the bytes allocated by the current thread, or 0 if the JVM can't tell */
+
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean)return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		return 0;
+	}
+}
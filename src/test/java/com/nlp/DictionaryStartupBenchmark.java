@@ -0,0 +1,64 @@
+package com.nlp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+import com.nlp.ner.DictionaryCompiler;
+import com.nlp.ner.EntityDictionary;
+import com.nlp.ner.HeapEntityDictionary;
+import com.nlp.ner.MappedEntityDictionary;
+import com.nlp.schema.SymbolTable;
+
+/**
+ *  Compares the startup time and heap of a large generated dictionary loaded in the heap from its text file,
+ *  with the same dictionary compiled once by the <code>DictionaryCompiler</code> and then mapped.
+ *
+ *  Run with : java -cp target/classes:target/test-classes com.nlp.DictionaryStartupBenchmark [entities]
+ */
+
+public class DictionaryStartupBenchmark {
+
+	public static void main(String s[]) throws Exception {
+		int count = s.length>0 ? Integer.parseInt(s[0]) : 1000000;
+
+		File text = File.createTempFile("entities", ".txt");
+		File compiled = File.createTempFile("entities", ".dict");
+		text.deleteOnExit();
+		compiled.deleteOnExit();
+
+		Random random = new Random(42);
+		Writer out = new OutputStreamWriter(new FileOutputStream(text), "UTF-8");
+		for(int i=0;i<count;i++) {
+			int parts = 1 + random.nextInt(3);
+			for(int p=0;p<parts;p++)out.append(p>0 ? " " : "").append("Name").append(Integer.toString(random.nextInt(count)));
+			out.append("\n");
+		}
+		out.close();
+
+		long start = System.nanoTime();
+		DictionaryCompiler.compile(text.getPath(), compiled.getPath());
+		System.out.printf("compiled %d entities in %d ms, %d MB%n", count, (System.nanoTime() - start)/1000000, compiled.length()>>20);
+
+		long heap = usedHeap();
+		start = System.nanoTime();
+		EntityDictionary dictionary = HeapEntityDictionary.load(text.getPath(), new SymbolTable(), 1);
+		System.out.printf("heap   : loaded in %5d ms, %4d MB of heap%n", (System.nanoTime() - start)/1000000, (usedHeap() - heap)>>20);
+		dictionary = null;
+
+		heap = usedHeap();
+		start = System.nanoTime();
+		dictionary = new MappedEntityDictionary(compiled.getPath(), 1);
+		System.out.printf("mapped : loaded in %5d ms, %4d MB of heap (%d entities)%n", (System.nanoTime() - start)/1000000, (usedHeap() - heap)>>20, dictionary.size());
+	}
+
+	private static long usedHeap() throws InterruptedException {
+		for(int i=0;i<3;i++) {
+			System.gc();
+			Thread.sleep(100);
+		}
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+}
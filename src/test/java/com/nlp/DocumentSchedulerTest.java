@@ -0,0 +1,133 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import com.nlp.DocumentScheduler.Report;
+import com.nlp.Tasks.MappedFileTask;
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.ColumnarDocument;
+import com.nlp.schema.Document;
+import com.nlp.schema.Documents;
+
+public class DocumentSchedulerTest {
+
+	private static String xml(Document document) {
+		StringBuilder sb = new StringBuilder();
+		document.toXml(sb, "    ");
+		return sb.toString();
+	}
+
+	@Test
+	public void testSplitDocumentsMatchTasks() throws Exception {
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+			List<String> expected = new ArrayList<String>();
+			for(Task task : Tasks.getTasksFromZip(zipFile, tagger))expected.add(xml(task.call()));
+
+			// every document is split, its sentences tagged in ranges of at least 64 sentences
+			List<Task> tasks = Tasks.getTasksFromZip(zipFile, tagger);
+			for(Task task : tasks)assertTrue(task.getSize()>0);
+			DocumentScheduler scheduler = new DocumentScheduler(3, 1);
+			Documents documents = scheduler.run(tasks);
+
+			List<String> actual = new ArrayList<String>();
+			for(Document document : documents.getDocuments())actual.add(xml(document));
+			assertEquals(expected, actual);
+
+			Report report = scheduler.getReport();
+			assertTrue(report.getMakespan()>0);
+			assertTrue(report.getWorkerCount()>=1 && report.getWorkerCount()<=3);
+			for(int i=0;i<report.getWorkerCount();i++)assertTrue(report.getUtilization(i)>=0);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void testSplitTaggingKeepsTagsSorted() throws Exception {
+		String data = new String(Files.readAllBytes(new File("nlp_data.txt").toPath()), "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<20;i++)sb.append(data).append(" Isaac Newton met Bob and Alice in Europe. ");
+		byte[] bytes = sb.toString().getBytes("UTF-8");
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+		String expected = xml(new Task(new ByteArrayInputStream(bytes), "doc", tagger).call());
+
+		Task task = new Task(new ByteArrayInputStream(bytes), "doc", tagger);
+		task.setSize(bytes.length);
+		Document document = new DocumentScheduler(4, 1).run(Collections.singletonList(task)).getDocuments().get(0);
+
+		// the ranges' tags are merged in word order, rather than interleaved and sorted again by each lookup
+		assertTrue(((ColumnarDocument) document).areTagsSorted());
+		assertEquals(expected, xml(document));
+	}
+
+	@Test
+	public void testLargestFirst() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+		List<Task> tasks = new ArrayList<Task>();
+		long[] sizes = { 10, 300, 20, 4000, 0 };
+		for(int i=0;i<sizes.length;i++) {
+			Task task = new Task(new ByteArrayInputStream(("Document " + i + ".").getBytes("UTF-8")), "doc" + i, tagger);
+			task.setSize(sizes[i]);
+			tasks.add(task);
+		}
+
+		final List<String> completed = Collections.synchronizedList(new ArrayList<String>());
+		for(Task task : tasks) {
+			task.setListener(new DocumentListener() {
+				public void documentCompleted(Document document) {
+					completed.add(document.getName());
+				}
+			});
+		}
+
+		// a single worker runs the tasks in the order they are submitted
+		Documents documents = new DocumentScheduler(1, DocumentScheduler.DEFAULT_SPLIT_SIZE).run(tasks);
+		assertEquals("[doc3, doc1, doc2, doc0, doc4]", completed.toString());
+		assertEquals("doc0", documents.getDocuments().get(0).getName());
+		assertEquals(5, documents.getDocuments().size());
+	}
+
+	@Test
+	public void testSplitMappedFile() throws Exception {
+		File file = File.createTempFile("document", ".txt");
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+			for(int i=0;i<2000;i++)out.write("Sentence " + i + " where Isaac Newton met Bob, who said \"hello\". ");
+			out.close();
+
+			NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+			String expected = xml(new MappedFileTask(file, tagger).call());
+
+			// lexed in chunks of 16KB on the scheduler's pool, then tagged in sentence ranges
+			List<Task> tasks = new ArrayList<Task>();
+			tasks.add(new MappedFileTask(file, tagger));
+			Documents documents = new DocumentScheduler(2, 16*1024).run(tasks);
+			assertEquals(expected, xml(documents.getDocuments().get(0)));
+			assertTrue(documents.getDocuments().get(0) instanceof ColumnarDocument);
+
+			// a single worker forks the chunks and runs them while joining them, rather than blocking on them
+			tasks.set(0, new MappedFileTask(file, tagger));
+			DocumentScheduler scheduler = new DocumentScheduler(1, 16*1024);
+			assertEquals(expected, xml(scheduler.run(tasks).getDocuments().get(0)));
+			assertEquals(1, scheduler.getReport().getWorkerCount());
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.source.DirectoryDocumentSource;
+import com.nlp.source.DocumentEntry;
+import com.nlp.source.DocumentSource;
+import com.nlp.source.DocumentSources;
+import com.nlp.source.GzipDocumentSource;
+import com.nlp.source.TarDocumentSource;
+import com.nlp.source.ZipDocumentSource;
+
+public class DocumentSourceTest {
+
+	File directory;
+
+	@Before
+	public void init() throws Exception {
+		directory = File.createTempFile("documents", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+	@After
+	public void cleanup() {
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] files = file.listFiles();
+		if(files!=null)for(File f : files)delete(f);
+		file.delete();
+	}
+
+	private static String read(DocumentEntry entry) throws IOException {
+		InputStream is = entry.open();
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			for(int b; (b = is.read())!=-1;)bos.write(b);
+			return bos.toString("UTF-8");
+		} finally {
+			is.close();
+		}
+	}
+
+	private static List<DocumentEntry> entries(DocumentSource source) {
+		List<DocumentEntry> ret = new ArrayList<DocumentEntry>();
+		for(Iterator<DocumentEntry> entries = source.entries(); entries.hasNext();)ret.add(entries.next());
+		return ret;
+	}
+
+	private static List<String> names(List<DocumentEntry> entries) {
+		List<String> ret = new ArrayList<String>();
+		for(DocumentEntry entry : entries)ret.add(entry.getName());
+		return ret;
+	}
+
+	private static void write(File file, byte[] bytes, boolean gzip) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if(gzip)out = new GZIPOutputStream(out);
+		out.write(bytes);
+		out.close();
+	}
+
+	/** @return a ustar header */
+
+	private static byte[] header(String name, long size, char type) {
+		byte[] header = new byte[512];
+		byte[] nameBytes = name.getBytes();
+		System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+		byte[] sizeBytes = String.format("%011o", size).getBytes();
+		System.arraycopy(sizeBytes, 0, header, 124, sizeBytes.length);
+		header[156] = (byte) type;
+		System.arraycopy("ustar".getBytes(), 0, header, 257, 5);
+		return header;
+	}
+
+	private static void tarEntry(ByteArrayOutputStream tar, String name, char type, byte[] data) throws IOException {
+		tar.write(header(name, data.length, type));
+		tar.write(data);
+		tar.write(new byte[(512 - data.length % 512) % 512]);
+	}
+
+	private static byte[] tar() throws IOException {
+		ByteArrayOutputStream tar = new ByteArrayOutputStream();
+		tarEntry(tar, "docs/", '5', new byte[0]);
+		tarEntry(tar, "docs/a.txt", '0', "Bob met Alice.".getBytes("UTF-8"));
+		tarEntry(tar, "docs/image.png", '0', new byte[700]);
+		StringBuilder longName = new StringBuilder("docs/");
+		for(int i=0;i<30;i++)longName.append("long");
+		longName.append(".txt");
+		tarEntry(tar, "././@LongLink", 'L', (longName + "\0").getBytes("UTF-8"));
+		tarEntry(tar, longName.substring(0, 100), '0', "Isaac Newton met Leibniz.".getBytes("UTF-8"));
+		tar.write(new byte[1024]);
+		return tar.toByteArray();
+	}
+
+	@Test
+	public void testZipTasksAreOpenedLazily() throws Exception {
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+			List<Task> tasks = Tasks.getTasksFromZip(zipFile, tagger);
+			assertEquals(10, tasks.size());
+			for(Task task : tasks) {
+				assertNull(task.is);
+				assertTrue(task.getSize()>0);
+				assertTrue(task.name.startsWith("nlp_data/"));
+			}
+
+			// the same documents as the provider of the zip file, without the __MACOSX resource forks
+			DocumentSource source = DocumentSources.open(new File("nlp_data.zip"));
+			assertTrue(source instanceof ZipDocumentSource);
+			List<String> names = new ArrayList<String>();
+			for(Task task : tasks)names.add(task.name);
+			assertEquals(names, names(entries(source)));
+			source.close();
+
+			assertEquals("nlp_data/d01.txt", tasks.get(0).call().getName());
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void testDirectory() throws Exception {
+		new File(directory, "sub").mkdir();
+		write(new File(directory, "b.txt"), "Bob met Alice.".getBytes("UTF-8"), false);
+		write(new File(directory, "sub/c.txt.gz"), "Isaac Newton met Leibniz.".getBytes("UTF-8"), true);
+		write(new File(directory, "a.txt"), "Alice.".getBytes("UTF-8"), false);
+		write(new File(directory, "notes.md"), "# notes".getBytes("UTF-8"), false);
+
+		DocumentSource source = DocumentSources.open(directory);
+		assertTrue(source instanceof DirectoryDocumentSource);
+		List<DocumentEntry> entries = entries(source);
+		assertEquals(Arrays.asList("a.txt", "b.txt", "sub/c.txt"), names(entries));
+		assertEquals("Isaac Newton met Leibniz.", read(entries.get(2)));
+		assertEquals(25, entries.get(2).getSize());
+		assertEquals(14, entries.get(1).getSize());
+	}
+
+	@Test
+	public void testGzip() throws Exception {
+		File file = new File(directory, "d.txt.gz");
+		write(file, "Bob met Alice.".getBytes("UTF-8"), true);
+
+		DocumentSource source = DocumentSources.open(file);
+		assertTrue(source instanceof GzipDocumentSource);
+		List<DocumentEntry> entries = entries(source);
+		assertEquals(Arrays.asList("d.txt"), names(entries));
+		assertEquals(14, entries.get(0).getSize());
+		assertEquals("Bob met Alice.", read(entries.get(0)));
+	}
+
+	@Test
+	public void testTar() throws Exception {
+		for(String name : new String[] { "docs.tar", "docs.tar.gz" }) {
+			File file = new File(directory, name);
+			write(file, tar(), name.endsWith(".gz"));
+
+			DocumentSource source = DocumentSources.open(file);
+			assertTrue(source instanceof TarDocumentSource);
+			List<DocumentEntry> entries = entries(source);
+			assertEquals(2, entries.size());
+			assertEquals("docs/a.txt", entries.get(0).getName());
+			assertEquals(129, entries.get(1).getName().length());
+			assertEquals(25, entries.get(1).getSize());
+
+			// the entries are read independently of each other
+			InputStream second = entries.get(1).open();
+			assertEquals("Bob met Alice.", read(entries.get(0)));
+			assertEquals('I', second.read());
+			second.close();
+			assertEquals("Isaac Newton met Leibniz.", read(entries.get(1)));
+			source.close();
+		}
+	}
+
+	@Test
+	public void testGzippedTarSpillsSelectedEntries() throws Exception {
+		File file = new File(directory, "docs.tar.gz");
+		write(file, tar(), true);
+		DocumentSource source = DocumentSources.open(file);
+		try {
+			List<DocumentEntry> entries = new ArrayList<DocumentEntry>();
+			for(Iterator<DocumentEntry> it = source.entries(Collections.singleton("docs/a.txt")); it.hasNext();)entries.add(it.next());
+
+			// both entries are listed with their sizes, only the selected one can be read
+			assertEquals(2, entries.size());
+			assertEquals("Bob met Alice.", read(entries.get(0)));
+			assertEquals(25, entries.get(1).getSize());
+			try {
+				entries.get(1).open();
+				fail();
+			} catch(IOException e) {
+			}
+		} finally {
+			source.close();
+		}
+	}
+
+	@Test
+	public void testTasksFromSource() throws Exception {
+		File file = new File(directory, "docs.tar");
+		write(file, tar(), false);
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+		DocumentSource source = DocumentSources.open(file);
+		List<Task> tasks = Tasks.getTasks(source, tagger);
+		assertEquals(2, tasks.size());
+		assertEquals(14, tasks.get(0).getSize());
+		assertEquals(1, tasks.get(0).call().getSentences().size());
+		source.close();
+	}
+}
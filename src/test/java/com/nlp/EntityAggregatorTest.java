@@ -0,0 +1,108 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import com.nlp.EntityAggregator.EntityCount;
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.ner.NamedEntity;
+import com.nlp.schema.Document;
+import com.nlp.schema.Documents;
+import com.nlp.schema.Sentence;
+import com.nlp.schema.Token;
+
+public class EntityAggregatorTest {
+
+	private static NamedEntity entity(String name) {
+		return new NamedEntity(name.split(" "));
+	}
+
+	private static Document tagged(NamedEntitiesTagger tagger, String name, String text) throws Exception {
+		return new Task(new ByteArrayInputStream(text.getBytes("UTF-8")), name, tagger).call();
+	}
+
+	@Test
+	public void testNamedEntityEquality() {
+		assertEquals(entity("Carl Benjamin Boyer"), entity("Carl Benjamin Boyer"));
+		assertEquals(entity("Carl Benjamin Boyer").hashCode(), entity("Carl Benjamin Boyer").hashCode());
+		assertFalse(entity("Carl Boyer").equals(entity("Carl Benjamin Boyer")));
+		assertFalse(entity("Bob").equals("Bob"));
+	}
+
+	@Test
+	public void testCounts() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("Carl Benjamin Boyer\nBob\nAlice"));
+		EntityAggregator aggregator = new EntityAggregator();
+		aggregator.addDocument(tagged(tagger, "first", "Carl Benjamin Boyer met Bob Bob. Boyer left. Alice stayed with Boyer Carl Benjamin Boyer."));
+
+		// a snapshot of the same dictionary counts the same entities
+		tagger.reload(new StringReader("Carl Benjamin Boyer\nBob\nAlice"));
+		aggregator.addDocument(tagged(tagger, "second", "Bob and Alice. Alice again."));
+
+		assertEquals(4, aggregator.getCount(entity("Carl Benjamin Boyer")));
+		assertEquals(3, aggregator.getCount(entity("Bob")));
+		assertEquals(3, aggregator.getCount(entity("Alice")));
+		assertEquals(0, aggregator.getCount(entity("Nobody")));
+		assertEquals(2, aggregator.getDocumentCount(entity("Bob")));
+		assertEquals(1, aggregator.getDocumentCount(entity("Carl Benjamin Boyer")));
+
+		assertEquals(2, aggregator.getCount("first", entity("Bob")));
+		assertEquals(2, aggregator.getCount("second", entity("Alice")));
+		assertEquals(0, aggregator.getCount("second", entity("Carl Benjamin Boyer")));
+		assertEquals(0, aggregator.getCount("third", entity("Bob")));
+		assertEquals(2, aggregator.getDocuments().size());
+
+		assertEquals("[Carl Benjamin Boyer=4, Alice=3]", aggregator.topK(2).toString());
+		assertEquals("[Carl Benjamin Boyer=4, Alice=3, Bob=3]", aggregator.topK(10).toString());
+		assertEquals("[Alice=2]", aggregator.topK("second", 1).toString());
+		assertEquals("[]", aggregator.topK(0).toString());
+	}
+
+	@Test
+	public void testAggregateAsTasksComplete() throws Exception {
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+			EntityAggregator aggregator = new EntityAggregator();
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			List<Task> tasks = Tasks.getTasksFromZip(zipFile, tagger);
+			Tasks.submitTasks(executor, tasks, aggregator);
+			Documents documents = Tasks.waitForCompletion(tasks);
+			executor.shutdown();
+
+			// the same counts as a single threaded pass over the documents
+			EntityAggregator expected = new EntityAggregator();
+			Map<NamedEntity, Integer> tagged = new HashMap<NamedEntity, Integer>();
+			for(Document document : documents.getDocuments()) {
+				expected.addDocument(document);
+				for(Sentence sentence : document.getSentences()) {
+					for(Token token : sentence.getWords()) {
+						if(token.getNamedEntities()==null)continue;
+						for(NamedEntity entity : token.getNamedEntities())tagged.put(entity, tagged.containsKey(entity) ? tagged.get(entity) + 1 : 1);
+					}
+				}
+			}
+
+			assertEquals(expected.topK(Integer.MAX_VALUE).toString(), aggregator.topK(Integer.MAX_VALUE).toString());
+			assertEquals(tagged.keySet().size(), aggregator.topK(Integer.MAX_VALUE).size());
+			for(EntityCount count : aggregator.topK(Integer.MAX_VALUE)) {
+				assertTrue(count.getCount()>0);
+				assertTrue(count.getCount()<=tagged.get(count.getEntity()));
+			}
+			for(Document document : documents.getDocuments())assertEquals(expected.getCounts(document.getName()), aggregator.getCounts(document.getName()));
+		} finally {
+			zipFile.close();
+		}
+	}
+}
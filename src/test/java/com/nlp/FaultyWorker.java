@@ -0,0 +1,44 @@
+package com.nlp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import com.nlp.cluster.Worker;
+
+/**
+ *  A worker for testing the recovery of the <code>Coordinator</code>, launched with
+ *  <code>Coordinator.setWorkerClass()</code> and configured by system properties of the workers' JVMs :
+ *
+ *  <pre>
+ *  nlp.test.delay       the milliseconds to sleep before the first shard, as if its first document were long
+ *  nlp.test.failAfter   the number of documents to send before halting, as if the worker crashed
+ *  nlp.test.failMarker  a file created by the worker that halts, so that only one worker of the run does,
+ *                       whichever shards it is sent
+ *  </pre>
+ */
+
+public class FaultyWorker extends Worker {
+
+	final long delay = Long.getLong("nlp.test.delay", 0);
+	final int failAfter = Integer.getInteger("nlp.test.failAfter", -1);
+	final String failMarker = System.getProperty("nlp.test.failMarker");
+	int shards, sent;
+
+	public static void main(String s[]) throws Exception {
+		new FaultyWorker().run(s);
+	}
+
+	protected void shardReceived(Set<String> names) throws InterruptedException {
+		if(shards++==0 && delay>0)Thread.sleep(delay);
+	}
+
+	protected void documentSent(String name) {
+		if(++sent!=failAfter || failMarker==null)return;
+		try {
+			if(new File(failMarker).createNewFile())Runtime.getRuntime().halt(1);
+		} catch(IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
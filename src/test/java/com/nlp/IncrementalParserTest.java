@@ -0,0 +1,88 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
+
+public class IncrementalParserTest {
+
+	NamedEntitiesTagger tagger;
+
+	@Before
+	public void init() throws Exception {
+		tagger = new NamedEntitiesTagger(new StringReader("John\nBob\nAlice\nEurope\nNewton Raphson"));
+	}
+
+	@Test
+	public void testEditReparsesOnlyAffectedSentences() {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<100;i++)sb.append("Sentence ").append(i).append(" about Bob. ");
+		IncrementalParser parser = new IncrementalParser("doc", sb, tagger);
+		assertEquals(100, parser.getDocument().getSentences().size());
+
+		int offset = parser.getText().indexOf("Bob. Sentence 50");
+		List<Sentence> reparsed = parser.edit(offset, 3, "Newton Raphson");
+		assertTrue(reparsed.size() <= 2);
+		assertEquals(xml(full(parser.getText())), xml(parser.getDocument()));
+
+		// splitting a sentence renumbers the following ones
+		offset = parser.getText().indexOf(" about", offset - 20);
+		reparsed = parser.edit(offset, 0, ". And");
+		assertTrue(reparsed.size() <= 3);
+		assertEquals(101, parser.getDocument().getSentences().size());
+		assertEquals(100, parser.getDocument().getSentences().get(100).getNum());
+		assertEquals(xml(full(parser.getText())), xml(parser.getDocument()));
+	}
+
+	@Test
+	public void testRandomEditsMatchFullParse() {
+		Random random = new Random(42);
+		String[] pieces = {"Bob", "Alice", "Newton", "Raphson", "word", " ", " ", ". ", ".", "...", "(", ")", "'", "3", "14", "!", "\n"};
+
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<200;i++)sb.append(pieces[random.nextInt(pieces.length)]);
+		IncrementalParser parser = new IncrementalParser("doc", sb, tagger);
+
+		for(int i=0;i<500;i++) {
+			int length = parser.getText().length();
+			int offset = random.nextInt(length + 1);
+			int removed = random.nextInt(Math.min(8, length - offset) + 1);
+			StringBuilder inserted = new StringBuilder();
+			for(int n=random.nextInt(3);n>0;n--)inserted.append(pieces[random.nextInt(pieces.length)]);
+
+			parser.edit(offset, removed, inserted);
+			assertEquals("edit " + i, xml(full(parser.getText())), xml(parser.getDocument()));
+		}
+	}
+
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testEditOutsideText() {
+		new IncrementalParser("doc", "One two.", tagger).edit(5, 10, "");
+	}
+
+	private Document full(String text) {
+		Parser parser = new Parser(new StringReader(text), "doc");
+		Document doc = parser.parseDocument();
+		for(Sentence sentence : doc.getSentences()) {
+			tagger.tagExact(sentence.getWords());
+			tagger.tagInexact(sentence.getWords());
+		}
+		return doc;
+	}
+
+	private String xml(Document doc) {
+		StringBuilder sb = new StringBuilder();
+		doc.toXml(sb, "");
+		for(Sentence sentence : doc.getSentences())sb.append(sentence.getNum()).append(sentence.getWords());
+		return sb.toString();
+	}
+}
@@ -0,0 +1,98 @@
+package com.nlp;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.nlp.schema.Token;
+
+/**
+ *  Compares the throughput (chars/sec) of the reference switch based lexer with the table driven
+ *  <code>Lexer</code>, with and without the bulk word scanning fast path, on the nlp_data/*.txt files
+ *  of nlp_data.zip scaled up to a larger input.
+ *
+ *  Run with : java -cp target/classes:target/test-classes com.nlp.LexerBenchmark [megabytes]
+ */
+
+public class LexerBenchmark {
+
+	public static void main(String s[]) throws Exception {
+		int megabytes = s.length>0 ? Integer.parseInt(s[0]) : 32;
+		char[] text = scaledInput(new File("nlp_data.zip"), megabytes*1024*1024);
+
+		for(int round=0;round<5;round++) {
+			boolean warmup = round<2;
+			report(warmup, "reference lexer (iterator)", text.length, time(text, new Run() { public long run(char[] text) { return referenceIterator(text); }}));
+			report(warmup, "table lexer (iterator)", text.length, time(text, new Run() { public long run(char[] text) { return iterator(text); }}));
+			report(warmup, "table lexer (spans, scalar)", text.length, time(text, new Run() { public long run(char[] text) { return spans(text, false); }}));
+			report(warmup, "table lexer (spans, fast scan)", text.length, time(text, new Run() { public long run(char[] text) { return spans(text, true); }}));
+			if(!warmup)System.out.println();
+		}
+	}
+
+	interface Run {
+		long run(char[] text);
+	}
+
+	static char[] scaledInput(File zip, int size) throws Exception {
+		StringBuilder data = new StringBuilder();
+		ZipFile zipFile = new ZipFile(zip);
+		for(Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+			ZipEntry entry = entries.nextElement();
+			if(!entry.getName().startsWith("nlp_data/") || !entry.getName().endsWith(".txt"))continue;
+			
+			Reader reader = new InputStreamReader(zipFile.getInputStream(entry), "UTF-8");
+			char[] buf = new char[4096];
+			for(int n; (n=reader.read(buf))!=-1;)data.append(buf, 0, n);
+			data.append('\n');
+			reader.close();
+		}
+		zipFile.close();
+		
+		StringBuilder sb = new StringBuilder(size + data.length());
+		while(sb.length()<size)sb.append(data);
+		char[] ret = new char[sb.length()];
+		sb.getChars(0, sb.length(), ret, 0);
+		return ret;
+	}
+
+	static long time(char[] text, Run run) {
+		long start = System.nanoTime();
+		long words = run.run(text);
+		long elapsed = System.nanoTime() - start;
+		if(words<0)throw new IllegalStateException();
+		return elapsed;
+	}
+
+	static void report(boolean warmup, String name, int chars, long nanos) {
+		if(warmup)return;
+		System.out.println(String.format("%-34s %8.1f Mchars/sec", name, chars / (nanos / 1e9) / 1e6));
+	}
+
+	static long referenceIterator(char[] text) {
+		long words = 0;
+		Iterator<Token> it = new ReferenceLexer(new CharArrayReader(text)).iterator();
+		while(it.hasNext())if(it.next()!=null)words++;
+		return words;
+	}
+
+	static long iterator(char[] text) {
+		long words = 0;
+		Iterator<Token> it = new Lexer(new CharArrayReader(text)).iterator();
+		while(it.hasNext())if(it.next()!=null)words++;
+		return words;
+	}
+
+	static long spans(char[] text, boolean fastScan) {
+		long words = 0;
+		Lexer lex = new Lexer(new CharArrayReader(text));
+		lex.fastScan = fastScan;
+		while(lex.nextSpan())words++;
+		return words;
+	}
+}
@@ -1,12 +1,26 @@
 package com.nlp;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 import org.junit.Test;
 
+import com.nlp.schema.Sentence;
 import com.nlp.schema.Token;
 
 public class LexerTest {
@@ -97,12 +111,203 @@ public class LexerTest {
 	}
 	
 	
+	@Test 
+	public void testSpans() {		
+		Lexer lex = new Lexer(";;One' :two\" Three. (Joe's)");
+		WordSpan span = lex.getSpan();
+		
+		assertTrue(lex.nextSpan());
+		assertEquals("One", span.toString());
+		assertEquals(";;", span.getBeforeSymbol().toString());
+		assertEquals("'", span.getAfterSymbol().toString());
+		assertTrue(lex.nextSpan());
+		assertEquals(new Token("two", ":", "\"", 0), span.toToken());
+		assertTrue(lex.nextSpan());
+		assertTrue(span.contentEqualsIgnoreCase("THREE"));
+		assertTrue(lex.nextSpan());
+		assertSame(span, lex.getSpan());
+		assertEquals(new Token("Joes", "(", "')", 1), span.toToken());
+		assertTrue(span.hasAfterSymbol('\''));
+		assertFalse(lex.nextSpan());
+		assertFalse(lex.hasMoreInput());
+	}
+	
+	@Test 
+	public void testSpansMatchIterator() {
+		String text = "Test ...(A') .3 0.14...\n\n\n word. One. ... Two. Three? Yes! hyphenated-word 3. Four";
+		List<Token> expected = lex(text);
+		expected.remove(null);
+		
+		Lexer lex = new Lexer(text);
+		List<Token> tokens = new ArrayList<Token>();
+		while(lex.nextSpan())tokens.add(lex.getSpan().toToken());
+		assertEquals(expected, tokens);
+	}
+	
+	@Test 
+	public void testByteBufferLexer() throws Exception {
+		String[] texts = new String[]{"", "Test ", "One. ... Two. Three. ... Four", "Test ...(A') .3 0.14...\n\n\n word.",
+				"Broyden\u2013Fletcher\u2013Goldfarb\u2013Shanno (Gr\u00fc\u00dfe) na\u00efve caf\u00e9. \ud83d\ude00smile\ud83d\ude00 \u65e5\u672c\u8a9e."};
+		
+		for(String text : texts) {
+			assertEquals(lex(text), lex(new ByteBufferLexer(ByteBuffer.wrap(text.getBytes("UTF-8")))));
+		}
+	}
+	
+	@Test 
+	public void testByteBufferLexerMalformedInput() throws Exception {
+		byte[] bytes = new byte[]{'a', (byte)0xe2, (byte)0x82, 'b', ' ', (byte)0x80, 'c', (byte)0xc3};
+		Lexer expected = new Lexer(new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8"));
+		assertEquals(lex(expected), lex(new ByteBufferLexer(ByteBuffer.wrap(bytes))));
+	}
+	
+	@Test 
+	public void testByteBufferLexerMappedWindows() throws Exception {
+		String text = "Caf\u00e9 \u65e5\u672c\u8a9e. (Joe's) \ud83d\ude00 3.14 end...";
+		File file = File.createTempFile("lexer", ".txt");
+		try {
+			FileOutputStream os = new FileOutputStream(file);
+			os.write(text.getBytes("UTF-8"));
+			os.close();
+			
+			// windows small enough that multi-byte sequences straddle window ends
+			for(int windowSize=4;windowSize<=16;windowSize++) {
+				FileInputStream is = new FileInputStream(file);
+				assertEquals(lex(text), lex(new ByteBufferLexer(is.getChannel(), 0, file.length(), windowSize)));
+				is.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test 
+	public void testEquivalentToReferenceLexer() {
+		String alphabet = "  \n\n...!?();:'\",aBcZ09-&\u00e9\u65e5";
+		Random random = new Random(42);
+		
+		for(int i=0;i<5000;i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = random.nextInt(40);
+			for(int j=0;j<length;j++)sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			
+			String text = sb.toString();
+			// the reference lexer reads past its buffer when the input is a single character
+			if(text.length()==1)continue;
+			assertEquals(text, lex(new ReferenceLexer(text).iterator()), lex(text));
+		}
+	}
+	
+	@Test 
+	public void testSingleCharacterInput() {
+		assertEquals(Arrays.asList(new Token("s", 0)), lex("s"));
+		assertEquals(Arrays.asList(new Token("7", 0)), lex("7"));
+	}
+	
+	@Test 
+	public void testFastScanAcrossBufferBoundaries() {
+		String alphabet = "abcdefghij-&\u00e9 ...!?();:'\",0123";
+		Random random = new Random(7);
+		StringBuilder sb = new StringBuilder();
+		while(sb.length()<20000) {
+			int wordLength = random.nextInt(10)==0 ? random.nextInt(3000) : random.nextInt(12);
+			for(int j=0;j<wordLength;j++)sb.append(alphabet.charAt(random.nextInt(wordLength>100 ? 12 : alphabet.length())));
+			sb.append(' ');
+		}
+		String text = sb.toString();
+		
+		Lexer scalar = new Lexer(text);
+		scalar.fastScan = false;
+		List<Token> expected = lex(scalar);
+		
+		assertEquals(lex(new ReferenceLexer(text).iterator()), expected);
+		assertEquals(expected, lex(text));
+	}
+	
+	@Test 
+	public void testConfiguredTable() {
+		LexerTable table = new LexerTable(" \n\t", "()[]", "!?;");
+		List<Token> tokens = lex(new Lexer(new StringReader("[One]\ttwo; three's"), table));
+		assertEquals(Arrays.asList(new Token("One", "[", "]", 0), new Token("two", 0), new Token("three's", 1)), tokens);
+	}
+	
+	@Test 
+	public void testTokenStream() {
+		String text = "Test ...(A') .3 0.14...\n\n\n word.";
+		List<Token> expected = lex(text);
+		expected.remove(null);
+		
+		assertEquals(expected, new Lexer(text).tokens().collect(Collectors.toList()));
+		assertEquals(expected, TokenStreams.tokens(text).collect(Collectors.toList()));
+		assertEquals(expected.size(), TokenStreams.tokens(text).spliterator().getExactSizeIfKnown());
+	}
+	
+	@Test 
+	public void testSentenceStream() {
+		List<Sentence> sentences = new Lexer("One two. Three! ( . Four").sentences().collect(Collectors.toList());
+		
+		assertEquals(3, sentences.size());
+		assertEquals(Arrays.asList(new Token("One", 0), new Token("two", 0)), sentences.get(0).getWords());
+		assertEquals(Arrays.asList(new Token("Four", "(", "", 3)), sentences.get(2).getWords());
+	}
+	
+	@Test 
+	public void testParallelStreams() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		String data = new String(Files.readAllBytes(new File("nlp_data.txt").toPath()), "UTF-8");
+		for(int i=0;i<50;i++)sb.append(data).append(" (Joe's) ... 3.14. ( . x ").append(i).append("! ");
+		String text = sb.toString();
+		
+		List<Token> expected = lex(text);
+		expected.remove(null);
+		
+		assertEquals(expected, TokenStreams.tokens(text).parallel().collect(Collectors.toList()));
+		assertEquals(expected.size(), TokenStreams.tokens(text).parallel().count());
+		
+		List<Sentence> sentences = TokenStreams.sentences(text).parallel().collect(Collectors.toList());
+		List<Token> words = new ArrayList<Token>();
+		for(Sentence sentence : sentences) {
+			for(Token word : sentence.getWords())assertEquals(sentence.getNum(), word.getSentenceNumber());
+			words.addAll(sentence.getWords());
+		}
+		assertEquals(expected, words);
+		assertEquals(sentences.size(), TokenStreams.sentences(text).spliterator().getExactSizeIfKnown());
+	}
+	
+	@Test 
+	public void testSplitOnSentenceBoundaries() {
+		Spliterator<Sentence> suffix = TokenStreams.sentences("One two. Three four. Five six. Seven").spliterator();
+		assertEquals(4, suffix.estimateSize());
+		
+		Spliterator<Sentence> prefix = suffix.trySplit();
+		assertEquals(2, prefix.estimateSize());
+		assertEquals(2, suffix.estimateSize());
+		
+		final List<Sentence> sentences = new ArrayList<Sentence>();
+		Consumer<Sentence> add = new Consumer<Sentence>() {
+			public void accept(Sentence sentence) {
+				sentences.add(sentence);
+			}
+		};
+		prefix.forEachRemaining(add);
+		suffix.forEachRemaining(add);
+		
+		assertEquals(4, sentences.size());
+		for(int i=0;i<4;i++)assertEquals(i, sentences.get(i).getNum());
+		assertEquals(Arrays.asList(new Token("Five", 2), new Token("six", 2)), sentences.get(2).getWords());
+	}
+	
 	private List<Token> lex(String string) {
+		return lex(new Lexer(string));
+	}
+	
+	private List<Token> lex(Lexer lex) {
+		return lex(lex.iterator());
+	}
+	
+	private List<Token> lex(Iterator<Token> it) {
 		ArrayList<Token> ret = new ArrayList<Token>();		
 		
-		Lexer lex = new Lexer(string);		
-		Iterator<Token> it = lex.iterator();
-		
 		while(it.hasNext())ret.add(it.next());
 		return ret;
 	}
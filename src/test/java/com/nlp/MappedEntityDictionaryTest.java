@@ -0,0 +1,141 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.DictionaryCompiler;
+import com.nlp.ner.EntityDictionary;
+import com.nlp.ner.MappedEntityDictionary;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+public class MappedEntityDictionaryTest {
+
+	File compiled;
+
+	@Before
+	public void init() throws Exception {
+		compiled = File.createTempFile("entities", ".dict");
+	}
+
+	@After
+	public void cleanup() {
+		compiled.delete();
+	}
+
+	private MappedEntityDictionary compile(String entities) throws Exception {
+		FileOutputStream out = new FileOutputStream(compiled);
+		DictionaryCompiler.compile(new StringReader(entities), out);
+		out.close();
+		return new MappedEntityDictionary(compiled.getPath(), 1);
+	}
+
+	@Test
+	public void testLookups() throws Exception {
+		MappedEntityDictionary dictionary = compile("Newton Raphson\nBob\nA B C D\nB C E\nC\n\nStra\u00dfe Nord");
+		assertEquals(6, dictionary.size());
+		assertEquals("A B C D", dictionary.getEntity(2).toString());
+		assertEquals("Stra\u00dfe", dictionary.getEntity(5).getPart(0));
+		assertSame(dictionary.getEntity(1), dictionary.getEntity(1));
+
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(dictionary, new SymbolTable());
+		List<Token> tokens = Arrays.asList(new Token("A", 0), new Token("b", 0), new Token("C", 0), new Token("E", 0), new Token("newton", 0),
+				new Token("Bobs", "", "'", 0), new Token("raphsons", "", "'", 0), new Token("STRA\u00dfE", 0), new Token("Nord", 0));
+		tagger.tag(tokens);
+
+		assertEquals("[B C E]", tokens.get(1).getNamedEntities().toString());
+		assertEquals("[B C E, C]", tokens.get(2).getNamedEntities().toString());
+		assertEquals("[Newton Raphson]", tokens.get(4).getNamedEntities().toString());
+		assertEquals("[Bob]", tokens.get(5).getNamedEntities().toString());
+		assertEquals("[Newton Raphson]", tokens.get(6).getNamedEntities().toString());
+		assertEquals("[Stra\u00dfe Nord]", tokens.get(7).getNamedEntities().toString());
+		assertSame(tokens.get(1).getNamedEntities().get(0), tokens.get(2).getNamedEntities().get(0));
+	}
+
+	@Test
+	public void testMatchesHeapDictionary() throws Exception {
+		DictionaryCompiler.compile("NER.txt", compiled.getPath());
+		assertTrue(EntityDictionary.isCompiled(compiled.getPath()));
+		assertFalse(EntityDictionary.isCompiled("NER.txt"));
+
+		NamedEntitiesTagger heap = new NamedEntitiesTagger("NER.txt");
+		NamedEntitiesTagger mapped = new NamedEntitiesTagger(compiled.getPath());
+		assertTrue(mapped.getDictionary() instanceof MappedEntityDictionary);
+		assertEquals(heap.getDictionary().size(), mapped.getDictionary().size());
+
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			List<Task> heapTasks = Tasks.getTasksFromZip(zipFile, heap), mappedTasks = Tasks.getTasksFromZip(zipFile, mapped);
+			for(int i=0;i<heapTasks.size();i++)assertEquals(xml(heapTasks.get(i).call()), xml(mappedTasks.get(i).call()));
+		} finally {
+			zipFile.close();
+		}
+
+		// with possessives and case changes, and tokens interned in another table
+		String text = "Sun Microsystems' IBM's ibm, Einstein's theory. NEWTON met Carl Benjamin Boyer's friends.";
+		Document a = new Task(new ByteArrayInputStream(text.getBytes("UTF-8")), "doc", heap).call();
+		Document b = new Parser(new StringReader(text), "doc").parseDocument();
+		mapped.tag(b);
+		assertEquals(xml(a), xml(b));
+	}
+
+	@Test
+	public void testFoldingIgnoresLocale() throws Exception {
+		Locale locale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));     // where "i".toUpperCase() is a dotted capital I
+		try {
+			String entities = "Smith\nStra\u00dfe Nord";
+			NamedEntitiesTagger heap = new NamedEntitiesTagger(new StringReader(entities));
+			NamedEntitiesTagger mapped = new NamedEntitiesTagger(compile(entities), new SymbolTable());
+
+			// the words of parsed documents are looked up by their folded ids, folded a character at a time by
+			// both dictionaries whatever the locale
+			String text = "smith met SMITH. Stra\u00dfe Nord, STRA\u00dfE Nord and STRASSE Nord.";
+			String[] xml = new String[2];
+			NamedEntitiesTagger[] taggers = { heap, mapped };
+			for(int i=0;i<2;i++)xml[i] = xml(new Task(new ByteArrayInputStream(text.getBytes("UTF-8")), "doc", taggers[i]).call());
+			assertEquals(xml[0], xml[1]);
+			assertTrue(xml[0].contains("entities=\"Smith\">smith<") && xml[0].contains("entities=\"Smith\">SMITH<"));
+			assertTrue(xml[0].contains("entities=\"Stra\u00dfe Nord\">STRA\u00dfE<"));
+			assertFalse(xml[0].contains("entities=\"Stra\u00dfe Nord\">STRASSE<"));
+		} finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	public void testReloadCompiled() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("Alice"));
+		compile("Carol\nBob");
+		EntityDictionary reloaded = tagger.reload(compiled.getPath());
+		assertTrue(reloaded instanceof MappedEntityDictionary);
+		assertEquals(2, reloaded.getVersion());
+
+		List<Token> tokens = new ArrayList<Token>(Arrays.asList(new Token("Alice", 0), new Token("Bob", 0)));
+		tagger.tag(tokens);
+		assertNull(tokens.get(0).getNamedEntities());
+		assertEquals("[Bob]", tokens.get(1).getNamedEntities().toString());
+	}
+
+	private static String xml(Document document) {
+		StringBuilder sb = new StringBuilder();
+		document.toXml(sb, "");
+		return sb.toString();
+	}
+}
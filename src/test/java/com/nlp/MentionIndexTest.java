@@ -0,0 +1,143 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.ner.NamedEntity;
+import com.nlp.schema.Document;
+import com.nlp.schema.Documents;
+import com.nlp.schema.Sentence;
+import com.nlp.schema.Token;
+
+public class MentionIndexTest {
+
+	NamedEntitiesTagger tagger;
+
+	@Before
+	public void init() throws Exception {
+		tagger = new NamedEntitiesTagger(new StringReader("Alice\nBob\nCarol Smith"));
+	}
+
+	private Document tagged(String name, String text) throws Exception {
+		return new Task(new ByteArrayInputStream(text.getBytes("UTF-8")), name, tagger).call();
+	}
+
+	private static NamedEntity entity(Document document, String word) {
+		for(Sentence sentence : document.getSentences()) {
+			for(Token token : sentence.getWords()) {
+				if(token.getStr().equals(word) && token.getNamedEntities()!=null)return token.getNamedEntities().get(0);
+			}
+		}
+		return null;
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		Document first = tagged("first", "Alice met Bob. Carol Smith stayed home. Bob and alice left.");
+		Document second = tagged("second", "Nobody came. Then Carol Smith met Bob.");
+		NamedEntity alice = entity(first, "Alice"), bob = entity(first, "Bob"), carol = entity(first, "Carol");
+
+		MentionIndex index = new MentionIndex(tagger.getSymbolTable());
+		assertEquals(0, index.addDocument(first));
+		assertEquals(1, index.addDocument(second));
+		assertEquals(2, index.getDocumentCount());
+		assertEquals("second", index.getDocumentName(1));
+
+		// (document, sentence, position) triples, a mention per word of the entity
+		assertArrayEquals(new int[] {0, 0, 0, 0, 2, 2}, index.getMentions(alice));
+		assertArrayEquals(new int[] {0, 1, 0, 0, 1, 1, 1, 1, 1, 1, 1, 2}, index.getMentions(carol));
+
+		assertArrayEquals(new int[] {0, 1}, index.documentsMentioning(bob));
+		assertArrayEquals(new int[] {0}, index.documentsMentioning(alice));
+		assertArrayEquals(new int[] {1}, index.documentsContaining("nobody"));
+		assertArrayEquals(new int[] {0, 1}, index.documentsContaining("MET"));
+		assertArrayEquals(new int[0], index.documentsContaining("unknown"));
+
+		long[] sentences = index.sentencesMentioning(bob);
+		assertEquals(3, sentences.length);
+		assertEquals(0, MentionIndex.documentOf(sentences[1]));
+		assertEquals(2, MentionIndex.sentenceNumberOf(sentences[1]));
+		assertEquals(1, MentionIndex.documentOf(sentences[2]));
+		assertEquals(1, MentionIndex.sentenceNumberOf(sentences[2]));
+
+		assertArrayEquals(new long[] {MentionIndex.sentence(0, 0), MentionIndex.sentence(0, 2)}, index.sentencesMentioningBoth(alice, bob));
+		assertArrayEquals(new long[] {MentionIndex.sentence(1, 1)}, index.sentencesMentioningBoth(carol, bob));
+		assertArrayEquals(new long[] {MentionIndex.sentence(0, 0), MentionIndex.sentence(1, 1)}, index.sentencesContaining("met"));
+	}
+
+	@Test
+	public void testLargePositions() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<300;i++)sb.append("word ");
+		sb.append("Alice. ");
+		for(int i=0;i<200;i++)sb.append("Short sentence. ");
+		sb.append("Alice.");
+
+		Document document = tagged("long", sb.toString());
+		MentionIndex index = new MentionIndex();
+		index.addDocument(document);
+		assertArrayEquals(new int[] {0, 0, 300, 0, 201, 0}, index.getMentions(entity(document, "Alice")));
+		assertEquals(200, index.sentencesContaining("sentence").length);
+	}
+
+	@Test
+	public void testIndexAsTasksComplete() throws Exception {
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			tagger = new NamedEntitiesTagger("NER.txt");
+			MentionIndex index = new MentionIndex(tagger.getSymbolTable());
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			List<Task> tasks = Tasks.getTasksFromZip(zipFile, tagger);
+			Tasks.submitTasks(executor, tasks, index);
+			Documents documents = Tasks.waitForCompletion(tasks);
+			executor.shutdown();
+
+			assertEquals(documents.getDocuments().size(), index.getDocumentCount());
+
+			// every tagged token is found in the index, and the index finds nothing else
+			Set<String> expected = new HashSet<String>(), actual = new HashSet<String>();
+			Set<NamedEntity> entities = new HashSet<NamedEntity>();
+			for(int id=0;id<index.getDocumentCount();id++) {
+				Document document = documents.getDocuments().get(position(documents, index.getDocumentName(id)));
+				for(Sentence sentence : document.getSentences()) {
+					for(int i=0;i<sentence.getWords().size();i++) {
+						List<NamedEntity> tags = sentence.getWords().get(i).getNamedEntities();
+						if(tags==null)continue;
+						for(NamedEntity entity : tags) {
+							entities.add(entity);
+							expected.add(entity + "@" + id + "," + sentence.getNum() + "," + i);
+						}
+					}
+				}
+			}
+			for(NamedEntity entity : entities) {
+				int[] mentions = index.getMentions(entity);
+				for(int i=0;i<mentions.length;i+=3)actual.add(entity + "@" + mentions[i] + "," + mentions[i+1] + "," + mentions[i+2]);
+			}
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, actual);
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private static int position(Documents documents, String name) {
+		List<String> names = new ArrayList<String>();
+		for(Document document : documents.getDocuments())names.add(document.getName());
+		return names.indexOf(name);
+	}
+}
@@ -1,18 +1,26 @@
 package com.nlp;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.nlp.ner.CaseInsensitiveMap;
+import com.nlp.ner.EntityDictionary;
 import com.nlp.ner.NamedEntitiesTagger;
 import com.nlp.ner.NamedEntity;
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
 import com.nlp.schema.Token;
 
 public class NamedEntitiesTaggerTest {
@@ -69,6 +77,273 @@ public class NamedEntitiesTaggerTest {
 		assertTrue(hasNamedEntity(tokens[0],"Newton Raphson"));		
 	}
 	
+	@Test
+	public void testInternedTokens() {		
+		Lexer lex = new Lexer("Test NEWTON raphson. (Bob's) europe Alice's Raphson");
+		List<Token> tokens = new ArrayList<Token>();
+		while(lex.nextSpan())tokens.add(lex.getSpan().toToken(nerTagger.getSymbolTable()));
+		
+		nerTagger.tagExact(tokens);
+		nerTagger.tagInexact(tokens);
+		
+		assertTrue(tokens.get(1).getWordId()>=0);
+		assertTrue(!hasNamedEntity(tokens.get(0)));
+		assertTrue(hasNamedEntity(tokens.get(1),"Newton Raphson"));
+		assertTrue(hasNamedEntity(tokens.get(2),"Newton Raphson"));
+		assertTrue(hasNamedEntity(tokens.get(3),"Bob"));
+		assertTrue(hasNamedEntity(tokens.get(4),"Europe"));
+		assertTrue(hasNamedEntity(tokens.get(5),"Alice"));
+		assertTrue(hasNamedEntity(tokens.get(6),"Newton Raphson"));
+	}
+	
+	@Test
+	public void testEntitiesSharingFirstWord() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("Franz Ferdinand\nFranz Joseph\nFranz\nJoseph Haydn"));
+		Token[] tokens = new Token[]{new Token("Franz", 0), new Token("Joseph", 0), new Token("Haydn", 0), new Token("and", 0), new Token("Franz", 0), new Token("ferdinand", 0)};
+		tagger.tagExact(Arrays.asList(tokens));
+		
+		assertEquals("[Franz Joseph, Franz]", tokens[0].getNamedEntities().toString());
+		assertEquals("[Franz Joseph, Joseph Haydn]", tokens[1].getNamedEntities().toString());
+		assertEquals("[Joseph Haydn]", tokens[2].getNamedEntities().toString());
+		assertTrue(!hasNamedEntity(tokens[3]));
+		assertEquals("[Franz Ferdinand, Franz]", tokens[4].getNamedEntities().toString());
+		assertEquals("[Franz Ferdinand]", tokens[5].getNamedEntities().toString());
+	}
+	
+	@Test
+	public void testMatchAfterPartialMatch() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("A B C D\nB C E\nC"));
+		Token[] tokens = new Token[]{new Token("A", 0), new Token("B", 0), new Token("C", 0), new Token("E", 0)};
+		tagger.tagExact(Arrays.asList(tokens));
+		
+		assertTrue(!hasNamedEntity(tokens[0]));
+		assertEquals("[B C E]", tokens[1].getNamedEntities().toString());
+		assertEquals("[B C E, C]", tokens[2].getNamedEntities().toString());
+		assertEquals("[B C E]", tokens[3].getNamedEntities().toString());
+	}
+	
+	@Test
+	public void testLargeDictionary() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<20000;i++)sb.append("Word").append(i).append(" Word").append(i+1).append(" Word").append(i+2).append("\n");
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader(sb.toString()));
+		
+		Token[] tokens = new Token[]{new Token("word500", 0), new Token("WORD501", 0), new Token("Word502", 0), new Token("Word503", 0)};
+		tagger.tagExact(Arrays.asList(tokens));
+		
+		assertEquals("[Word500 Word501 Word502]", tokens[0].getNamedEntities().toString());
+		assertEquals("[Word500 Word501 Word502, Word501 Word502 Word503]", tokens[1].getNamedEntities().toString());
+		assertEquals("[Word501 Word502 Word503]", tokens[3].getNamedEntities().toString());
+	}
+	
+	@Test
+	public void testFusedTaggingMatchesTwoPasses() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("A B C D\nB C E\nC\nA B\nE F\nD"));
+		String[] words = {"a", "b", "c", "d", "e", "f", "g", "B", "As", "Cs"};
+		Random random = new Random(42);
+		
+		for(int n=0;n<2000;n++) {
+			List<Token> fused = new ArrayList<Token>(), twoPasses = new ArrayList<Token>();
+			for(int i=random.nextInt(12);i>0;i--) {
+				String word = words[random.nextInt(words.length)];
+				String after = random.nextInt(4)==0 ? "'" : "";
+				fused.add(new Token(word, "", after, 0));
+				twoPasses.add(new Token(word, "", after, 0));
+			}
+			
+			tagger.tag(fused);
+			tagger.tagExact(twoPasses);
+			tagger.tagInexact(twoPasses);
+			for(int i=0;i<fused.size();i++)assertEquals(twoPasses.toString(), String.valueOf(twoPasses.get(i).getNamedEntities()), String.valueOf(fused.get(i).getNamedEntities()));
+		}
+	}
+	
+	@Test
+	public void testTagDocument() throws Exception {
+		Document document = new Parser(new StringReader("Bob met Newton Raphson. Alice's europe trip. Test."), "doc").parseDocument();
+		nerTagger.tag(document);
+		
+		List<Token> words = document.getSentences().get(0).getWords();
+		assertTrue(hasNamedEntity(words.get(0), "Bob"));
+		assertTrue(!hasNamedEntity(words.get(1)));
+		assertEquals("[Newton Raphson]", words.get(2).getNamedEntities().toString());
+		assertTrue(hasNamedEntity(document.getSentences().get(1).getWords().get(0), "Alice"));
+		assertTrue(hasNamedEntity(document.getSentences().get(1).getWords().get(1), "Europe"));
+		assertTrue(!hasNamedEntity(document.getSentences().get(2).getWords().get(0)));
+	}
+	
+	@Test
+	public void testReload() throws Exception {
+		EntityDictionary initial = nerTagger.getDictionary();
+		assertEquals(1, initial.getVersion());
+		
+		EntityDictionary reloaded = nerTagger.reload(new StringReader("Carol\nNewton"));
+		assertEquals(2, reloaded.getVersion());
+		assertSame(reloaded, nerTagger.getDictionary());
+		assertEquals(5, initial.size());
+		
+		Document document = new Parser(new StringReader("Bob met Carol Newton."), "doc").parseDocument();
+		nerTagger.tag(document);
+		assertEquals(2, document.getDictionaryVersion());
+		List<Token> words = document.getSentences().get(0).getWords();
+		assertTrue(!hasNamedEntity(words.get(0)));
+		assertTrue(hasNamedEntity(words.get(2), "Carol"));
+		assertTrue(hasNamedEntity(words.get(3), "Newton"));
+		
+		// a previous snapshot still tags as before
+		document = new Parser(new StringReader("Bob met Carol Newton."), "doc").parseDocument();
+		nerTagger.tag(document, initial);
+		assertEquals(1, document.getDictionaryVersion());
+		words = document.getSentences().get(0).getWords();
+		assertTrue(hasNamedEntity(words.get(0), "Bob"));
+		assertTrue(!hasNamedEntity(words.get(2)));
+		assertTrue(hasNamedEntity(words.get(3), "Newton Raphson"));
+	}
+	
+	@Test
+	public void testReloadWhileTagging() throws Exception {
+		final String text = "Bob met Alice. Carol went to Europe. Bob and Carol left.";
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] threads = new Thread[4];
+		for(int t=0;t<threads.length;t++) {
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						for(int i=0;i<200;i++) {
+							Document document = new Parser(new StringReader(text), "doc").parseDocument();
+							nerTagger.tag(document);
+							
+							// each document is tagged with a single snapshot : the odd ones know Bob, the even ones Carol
+							boolean odd = document.getDictionaryVersion()%2==1;
+							for(Sentence sentence : document.getSentences()) {
+								for(Token token : sentence.getWords()) {
+									if(token.getStr().equals("Bob"))assertEquals(odd, hasNamedEntity(token, "Bob"));
+									if(token.getStr().equals("Carol"))assertEquals(!odd, hasNamedEntity(token, "Carol"));
+								}
+							}
+						}
+					} catch(Throwable e) {
+						synchronized(errors) {
+							errors.add(e);
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		
+		for(int i=0;i<50;i++)nerTagger.reload(new StringReader(i%2==0 ? "Carol\nEurope" : "Bob\nAlice\nEurope"));
+		for(Thread thread : threads)thread.join();
+		assertEquals(51, nerTagger.getDictionary().getVersion());
+		assertEquals(Collections.emptyList(), errors);
+	}
+	
+	@Test
+	public void testFuzzyMatching() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("Albert Einstein\nIsaac Newton\nBob\nEurope"));
+		tagger.setFuzzyMatching(1, 4);
+		List<Token> tokens = Arrays.asList(new Token("Newtom", 0), new Token("Isac", 0), new Token("Europpe", 0), new Token("newtom", 0), 
+				new Token("Bop", 0), new Token("Einstien", 0), new Token("Newtoms", "", "'", 0), new Token("Albert", 0));
+		tagger.tag(tokens);
+		
+		assertTrue(hasNamedEntity(tokens.get(0), "Isaac Newton"));
+		assertTrue(hasNamedEntity(tokens.get(1), "Isaac Newton"));
+		assertTrue(hasNamedEntity(tokens.get(2), "Europe"));
+		assertTrue(!hasNamedEntity(tokens.get(3)));    // not capitalized
+		assertTrue(!hasNamedEntity(tokens.get(4)));    // too short
+		assertTrue(!hasNamedEntity(tokens.get(5)));    // a transposition is 2 edits
+		assertTrue(hasNamedEntity(tokens.get(6), "Isaac Newton"));
+		assertEquals("[Albert Einstein]", tokens.get(7).getNamedEntities().toString());
+		
+		tagger.setFuzzyMatching(2, 4);
+		tokens = Arrays.asList(new Token("Einstien", 0));
+		tagger.tag(tokens);
+		assertTrue(hasNamedEntity(tokens.get(0), "Albert Einstein"));
+		
+		// the index is rebuilt with a reloaded dictionary
+		tagger.reload(new StringReader("Marie Curie"));
+		tokens = Arrays.asList(new Token("Newtom", 0), new Token("Cury", 0));
+		tagger.tag(tokens);
+		assertTrue(!hasNamedEntity(tokens.get(0)));
+		assertTrue(hasNamedEntity(tokens.get(1), "Marie Curie"));
+		
+		tagger.setFuzzyMatching(0, 4);
+		tokens = Arrays.asList(new Token("Cury", 0));
+		tagger.tag(tokens);
+		assertTrue(!hasNamedEntity(tokens.get(0)));
+	}
+	
+	@Test
+	public void testFuzzyMatchingChoosesLastEntityOfWord() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("Isaac Newton\nNewton Raphson"));
+		tagger.setFuzzyMatching(1, 4);
+		List<Token> tokens = Arrays.asList(new Token("Newton", 0), new Token("Newtom", 0));
+		tagger.tagInexact(tokens);
+		
+		// the same entity as an inexact match of the word itself
+		assertEquals("[Newton Raphson]", tokens.get(0).getNamedEntities().toString());
+		assertEquals("[Newton Raphson]", tokens.get(1).getNamedEntities().toString());
+	}
+	
+	@Test
+	public void testFuzzyMatchingFindsClosestWords() throws Exception {
+		Random random = new Random(7);
+		List<String> words = new ArrayList<String>();
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<2000;i++) {
+			String word = "Q" + randomWord(random, 3 + random.nextInt(6));
+			words.add(word.toUpperCase());
+			sb.append(word).append("\n");
+		}
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader(sb.toString()));
+		tagger.setFuzzyMatching(2, 4);
+		
+		for(int i=0;i<2000;i++) {
+			String query = "Q" + randomWord(random, 3 + random.nextInt(6));
+			int closest = Integer.MAX_VALUE;
+			for(String word : words)closest = Math.min(closest, distance(query.toUpperCase(), word));
+			
+			Token token = new Token(query, 0);
+			tagger.tag(Arrays.asList(token));
+			if(closest>2) {
+				assertTrue(query, !hasNamedEntity(token));
+			} else {
+				assertTrue(query, hasNamedEntity(token));
+				assertEquals(query, closest, distance(query.toUpperCase(), token.getNamedEntities().get(0).toString().toUpperCase()));
+			}
+		}
+	}
+	
+	private static String randomWord(Random random, int length) {
+		char[] chars = new char[length];
+		for(int i=0;i<length;i++)chars[i] = "abcde".charAt(random.nextInt(5));
+		return new String(chars);
+	}
+	
+	private static int distance(String a, String b) {
+		int[][] d = new int[a.length()+1][b.length()+1];
+		for(int i=0;i<=a.length();i++)d[i][0] = i;
+		for(int j=0;j<=b.length();j++)d[0][j] = j;
+		for(int i=1;i<=a.length();i++) {
+			for(int j=1;j<=b.length();j++)d[i][j] = Math.min(Math.min(d[i-1][j] + 1, d[i][j-1] + 1), d[i-1][j-1] + (a.charAt(i-1)==b.charAt(j-1) ? 0 : 1));
+		}
+		return d[a.length()][b.length()];
+	}
+	
+	@Test
+	public void testCaseInsensitiveMap() {
+		CaseInsensitiveMap<String> map = new CaseInsensitiveMap<String>();
+		for(int i=0;i<1000;i++)assertEquals(null, map.put("Word" + i, "value" + i));
+		assertEquals("value7", map.put("WORD7", "seven"));
+		
+		assertEquals(1000, map.size());
+		assertEquals("seven", map.get("word7"));
+		assertEquals("value999", map.get("wOrD999"));
+		assertEquals("value12", map.get("(Word12's)", 1, 7));
+		assertEquals(null, map.get("Word1000"));
+		assertEquals(null, map.get("Word1", 0, 4));
+	}
+	
 	private boolean hasNamedEntity(Token token, String string) {
 		if(token.getNamedEntities()==null)return false;
 		for(NamedEntity entity : token.getNamedEntities())if(entity.toString().equals(string))return true;
@@ -0,0 +1,240 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.ColumnarDocument;
+import com.nlp.schema.Document;
+import com.nlp.schema.Sentence;
+
+public class ParserTest {
+
+	File file;
+	ExecutorService executor;
+
+	@Before
+	public void init() throws Exception {
+		file = File.createTempFile("parser", ".txt");
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void cleanup() {
+		executor.shutdown();
+		file.delete();
+	}
+
+	@Test
+	public void testParse() {
+		Document doc = new Parser(new StringReader("One two. (Three) 3.14 ... Four"), "doc").parseDocument();
+
+		assertEquals(2, doc.getSentences().size());
+		assertEquals(0, doc.getSentences().get(0).getNum());
+		assertEquals(2, doc.getSentences().get(0).getWords().size());
+		assertEquals(1, doc.getSentences().get(1).getNum());
+		assertEquals(3, doc.getSentences().get(1).getWords().size());
+	}
+
+	@Test
+	public void testParallelParseMatchesSequential() throws Exception {
+		String data = new String(Files.readAllBytes(new File("nlp_data.txt").toPath()), "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<20;i++) {
+			sb.append(data).append(" Pi is 3.14159, ").append(i).append(".5 (Joe's) ... na\u00efve \u65e5\u672c\u8a9e! more ");
+		}
+		write(sb.toString());
+
+		String expected = xml(sequential());
+		for(long chunkSize=16;chunkSize<=4096;chunkSize*=2) {
+			assertEquals("chunk size " + chunkSize, expected, xml(parallel(chunkSize)));
+		}
+	}
+
+	@Test
+	public void testParallelParseSentenceAcrossChunks() throws Exception {
+		write("one two three four five six seven eight nine ten. eleven twelve");
+
+		Document doc = parallel(8);
+		assertTrue(doc instanceof ColumnarDocument);
+		assertEquals(2, doc.getSentences().size());
+		assertEquals(10, doc.getSentences().get(0).getWords().size());
+		assertEquals(1, doc.getSentences().get(1).getWords().get(0).getSentenceNumber());
+	}
+
+	@Test
+	public void testParallelParseWithoutBoundaries() throws Exception {
+		write("12345678901234567890 3.14159265358979");
+		assertEquals(xml(sequential()), xml(parallel(4)));
+	}
+
+	@Test
+	public void testColumnarDocumentMatchesObjectDocument() throws Exception {
+		String data = new String(Files.readAllBytes(new File("nlp_data.txt").toPath()), "UTF-8") + " (Bob's) [Newton Raphson] ... Alice.";
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("John\nBob\nAlice\nEurope\nNewton Raphson"));
+
+		Parser parser = new Parser(new StringReader(data), "doc");
+		parser.setSymbolTable(tagger.getSymbolTable());
+		Document expected = parser.parseDocument();
+		tag(tagger, expected);
+
+		parser = new Parser(new StringReader(data), "doc");
+		parser.setSymbolTable(tagger.getSymbolTable());
+		ColumnarDocument columnar = parser.parseColumnarDocument();
+		tag(tagger, columnar);
+
+		assertEquals(xml(expected), xml(columnar));
+
+		int words = 0;
+		for(Sentence sentence : expected.getSentences())words += sentence.getWords().size();
+		assertEquals(words, columnar.getWordCount());
+	}
+
+	@Test(expected=UnsupportedOperationException.class)
+	public void testColumnarDocumentIsReadOnly() {
+		Parser parser = new Parser(new StringReader("One two. Three"), "doc");
+		ColumnarDocument doc = parser.parseColumnarDocument();
+		doc.getSentences().get(0).addWord(doc.getSentences().get(1).getWords().get(0));
+	}
+
+	@Test
+	public void testColumnarDocumentWithoutSymbolTable() {
+		ColumnarDocument doc = new Parser(new StringReader("(One) two. Three's"), "doc").parseColumnarDocument();
+		assertEquals(2, doc.getSentences().size());
+		assertEquals("(", doc.getSentences().get(0).getWords().get(0).getBeforeSymbol());
+		assertEquals(")", doc.getSentences().get(0).getWords().get(0).getAfterSymbol());
+		assertEquals("", doc.getSentences().get(0).getWords().get(1).getAfterSymbol());
+		assertEquals(1, doc.getSentences().get(1).getWords().get(0).getSentenceNumber());
+		assertNotNull(doc.getSymbolTable());
+	}
+
+	@Test
+	public void testColumnarDocumentWithConfiguredSymbols() {
+		LexerTable table = new LexerTable(" \n", "()[]'", "!?");
+		String text = "[One] (two) [[three']] four";
+		Document expected = new Parser(new Lexer(new StringReader(text), table), "doc").parseDocument();
+		ColumnarDocument columnar = new Parser(new Lexer(new StringReader(text), table), "doc").parseColumnarDocument();
+
+		assertEquals(xml(expected), xml(columnar));
+		assertTrue(columnar.getSentences().get(0).getWords().get(2).hasAfterSymbol('\''));
+	}
+
+	@Test
+	public void testParseWithListener() throws Exception {
+		final List<Sentence> sentences = new ArrayList<Sentence>();
+		int count = new Parser(new StringReader("One two. (Three) 3.14 ... Four"), "doc").parse(new SentenceListener() {
+			public void sentence(Sentence sentence) {
+				sentences.add(sentence);
+			}
+		});
+
+		assertEquals(2, count);
+		assertEquals(xml(new Parser(new StringReader("One two. (Three) 3.14 ... Four"), "doc").parseDocument()), xml(toDocument(sentences)));
+	}
+
+	@Test
+	public void testStreamingTaskMatchesDocumentXml() throws Exception {
+		String data = new String(Files.readAllBytes(new File("nlp_data.txt").toPath()), "UTF-8");
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("John\nBob\nAlice\nEurope\nNewton Raphson"));
+
+		Document document = new Tasks.Task(new ByteArrayInputStream(data.getBytes("UTF-8")), "doc", tagger).call();
+		StringBuilder expected = new StringBuilder();
+		document.toXml(expected, "");
+
+		StringWriter out = new StringWriter();
+		Document streamed = new Tasks.StreamingTask(new ByteArrayInputStream(data.getBytes("UTF-8")), "doc", tagger, out).call();
+		assertEquals(expected.toString(), out.toString());
+		assertEquals(0, streamed.getSentences().size());
+	}
+
+	@Test
+	public void testStreamingTaskNotifiesListenerAndClosesReader() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger(new StringReader("Bob"));
+		final boolean[] closed = new boolean[1];
+		final List<Document> completed = new ArrayList<Document>();
+
+		Tasks.StreamingTask task = new Tasks.StreamingTask(new ByteArrayInputStream("Bob met Alice.".getBytes("UTF-8")), "doc", tagger, new StringWriter());
+		task.setListener(new DocumentListener() {
+			public void documentCompleted(Document document) {
+				completed.add(document);
+			}
+		});
+		assertSame(task.call(), completed.get(0));
+
+		// the writer fails
+		task = new Tasks.StreamingTask(new ByteArrayInputStream("Bob met Alice.".getBytes("UTF-8")) {
+			public void close() {
+				closed[0] = true;
+			}
+		}, "doc", tagger, new StringWriter() {
+			public StringWriter append(CharSequence csq) {
+				throw new IllegalStateException("disk full");
+			}
+		});
+		try {
+			task.call();
+			fail();
+		} catch(IllegalStateException e) {
+			assertTrue(closed[0]);
+		}
+	}
+
+	private Document toDocument(List<Sentence> sentences) {
+		Document doc = new Document("doc");
+		for(Sentence sentence : sentences)doc.addSentence(sentence);
+		return doc;
+	}
+
+	private void tag(NamedEntitiesTagger tagger, Document doc) {
+		for(Sentence sentence : doc.getSentences()) {
+			tagger.tagExact(sentence.getWords());
+			tagger.tagInexact(sentence.getWords());
+		}
+	}
+
+	private void write(String text) throws Exception {
+		FileOutputStream os = new FileOutputStream(file);
+		os.write(text.getBytes("UTF-8"));
+		os.close();
+	}
+
+	private Document sequential() throws Exception {
+		FileInputStream is = new FileInputStream(file);
+		try {
+			return new Parser(new ByteBufferLexer(is.getChannel()), "doc").parseDocument();
+		} finally {
+			is.close();
+		}
+	}
+
+	private Document parallel(long chunkSize) throws Exception {
+		FileInputStream is = new FileInputStream(file);
+		try {
+			return new ParallelParser(is.getChannel(), "doc", executor, chunkSize).parseDocument();
+		} finally {
+			is.close();
+		}
+	}
+
+	private String xml(Document doc) {
+		StringBuilder sb = new StringBuilder();
+		doc.toXml(sb, "");
+		for(Sentence sentence : doc.getSentences())sb.append(sentence.getNum()).append(sentence.getWords());
+		return sb.toString();
+	}
+}
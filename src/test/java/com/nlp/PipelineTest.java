@@ -0,0 +1,158 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+
+public class PipelineTest {
+
+	ZipFile zipFile;
+	NamedEntitiesTagger tagger;
+
+	@Before
+	public void init() throws Exception {
+		zipFile = new ZipFile("nlp_data.zip");
+		tagger = new NamedEntitiesTagger("NER.txt");
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		zipFile.close();
+	}
+
+	@Test
+	public void testPipelineMatchesTasks() throws Exception {
+		List<String> expected = new ArrayList<String>();
+		for(Task task : Tasks.getTasksFromZip(zipFile, tagger)) {
+			StringBuilder sb = new StringBuilder();
+			task.call().toXml(sb, "    ");
+			expected.add(sb.toString());
+		}
+
+		StringWriter out = new StringWriter();
+		Pipeline pipeline = new Pipeline(tagger, out);
+		pipeline.setThreads(2, 3, 3, 1);
+		pipeline.run(Tasks.getTasksFromZip(zipFile, tagger));
+
+		assertTrue(out.toString().startsWith("<documents>\n"));
+		assertTrue(out.toString().endsWith("</documents>"));
+		assertEquals(sorted(expected), sorted(documents(out.toString())));
+		assertTrue(pipeline.getFailures().isEmpty());
+	}
+
+	@Test
+	public void testSlowSinkAppliesBackpressure() throws Exception {
+		final List<Task> tasks = new ArrayList<Task>();
+		for(int i=0;i<40;i++)tasks.add(new Task(new ByteArrayInputStream(("Bob met Alice. Document " + i + ".").getBytes("UTF-8")), "doc" + i, tagger));
+
+		final int[] maxDepth = new int[1];
+		final Pipeline[] pipeline = new Pipeline[1];
+		StringWriter out = new StringWriter() {
+			public StringWriter append(CharSequence csq) {
+				for(int depth : pipeline[0].getQueueDepths().values())maxDepth[0] = Math.max(maxDepth[0], depth);
+				try {
+					Thread.sleep(5);
+				} catch(InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				return super.append(csq);
+			}
+		};
+
+		pipeline[0] = new Pipeline(tagger, out);
+		pipeline[0].setQueueCapacity(2);
+		pipeline[0].setThreads(1, 2, 2, 1);
+		pipeline[0].run(tasks);
+
+		assertEquals(40, documents(out.toString()).size());
+		assertTrue(maxDepth[0] <= 2);
+		assertEquals(0, pipeline[0].getQueueDepth(Pipeline.TAG));
+	}
+
+	@Test
+	public void testFailedDocumentIsReported() throws Exception {
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(new Task(new ByteArrayInputStream("One.".getBytes("UTF-8")), "one", tagger));
+		tasks.add(new Task(new InputStream() {
+			public int read() throws IOException {
+				throw new IOException("broken");
+			}
+		}, "broken", tagger));
+		tasks.add(new Task(new ByteArrayInputStream("Two.".getBytes("UTF-8")), "two", tagger));
+
+		StringWriter out = new StringWriter();
+		Pipeline pipeline = new Pipeline(tagger, out);
+		pipeline.run(tasks);
+
+		assertEquals(2, documents(out.toString()).size());
+		assertEquals(1, pipeline.getFailures().size());
+		assertEquals("broken", pipeline.getFailures().get(0).getName());
+		assertEquals("broken", pipeline.getFailures().get(0).getCause().getMessage());
+	}
+
+	@Test(timeout=10000)
+	public void testErrorDoesNotStopPipeline() throws Exception {
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(new Task(new ByteArrayInputStream("One.".getBytes("UTF-8")), "one", tagger));
+		tasks.add(new Task(null, "huge", tagger) {
+			InputStream open() {
+				throw new OutOfMemoryError("Java heap space");
+			}
+		});
+		tasks.add(new Task(new ByteArrayInputStream("Two.".getBytes("UTF-8")), "two", tagger));
+
+		StringWriter out = new StringWriter();
+		Pipeline pipeline = new Pipeline(tagger, out);
+		pipeline.setThreads(1, 1, 1, 1);
+		pipeline.run(tasks);
+
+		assertEquals(2, documents(out.toString()).size());
+		assertEquals(1, pipeline.getFailures().size());
+		assertEquals("huge", pipeline.getFailures().get(0).getName());
+		assertTrue(pipeline.getFailures().get(0).getCause() instanceof OutOfMemoryError);
+	}
+
+	@Test
+	public void testEmptyDocument() throws Exception {
+		StringWriter out = new StringWriter();
+		List<Task> tasks = new ArrayList<Task>();
+		tasks.add(new Task(new ByteArrayInputStream(new byte[0]), "empty", tagger));
+		new Pipeline(tagger, out).run(tasks);
+
+		StringBuilder expected = new StringBuilder("<documents>\n");
+		new Document("empty").toXml(expected, "    ");
+		assertEquals(expected.append("\n</documents>").toString(), out.toString());
+	}
+
+	private List<String> documents(String xml) {
+		List<String> ret = new ArrayList<String>();
+		int start = xml.indexOf("    <document ");
+		while(start>=0) {
+			int end = xml.indexOf("</document>", start) + "</document>".length();
+			ret.add(xml.substring(start, end));
+			start = xml.indexOf("    <document ", end);
+		}
+		return ret;
+	}
+
+	private List<String> sorted(List<String> list) {
+		Collections.sort(list);
+		return list;
+	}
+}
@@ -0,0 +1,220 @@
+package com.nlp;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+import com.nlp.schema.Token;
+
+/**    The original, switch based implementation of the <code>Lexer</code> state machine.
+ *     
+ *     Kept as a reference to verify the table driven <code>Lexer</code> against, and as a baseline
+ *     for the lexer benchmarks. 
+ **/
+
+public class ReferenceLexer implements Iterable<Token> {
+
+    private Reader reader;
+    
+    // char buffer, stores next n chars
+    private char[] cb = new char[1024];
+
+    // current char index, -1 when no char in buffer
+    private int p = -1;
+    
+    // current number of characters in buffer
+    private int charsInBuffer = 0;
+
+    // null char
+    private static final char nil = 0xffff;
+
+    // The various states of the state machine 
+    enum State {
+    	BEFORE_WORD,
+    	IN_MIDDLE_OF_WORD,
+    	DOT_SEQUENCE,
+    	IN_MIDDLE_OF_DIGIT
+    }
+    
+    private final Iterator<Token> iter = new Iterator<Token>() {
+
+    	boolean hasNext = true;
+    	public boolean hasNext() {
+            return hasNext;
+        }
+
+    	// stores symbols surrounding (before and after) the word, if any
+    	String beforeSymbol="", afterSymbol="";  
+        
+        int dots = 0;
+        
+        // keeps track of the sentence number
+        int sentenceNumber;  
+                 
+        // the current state of the state machine
+        State state = State.BEFORE_WORD;
+        
+        // the currently matched word
+        StringBuilder sb;
+        
+        // the token we will return
+        Token matchedToken = null; 
+
+        // final state indicator (when about to return a matched token)
+        boolean fnl = false;
+        
+        public Token next() {
+            // first invoke
+            if (charsInBuffer == 0) {
+                readToBuffer(0);
+            }
+            
+            sb = new StringBuilder();
+            
+			while (!fnl) {
+				char c = peek();	
+				if(c==nil){hasNext = false; if(sb.length()>0)matchTokenAndGoToState(State.BEFORE_WORD); else return null;}
+				
+				switch (state) {
+				
+				case BEFORE_WORD:
+					if (isBlank(c)) { // skip over white spaces and newlines						
+					} else if (isSurroundingSymbol(c)) {
+						beforeSymbol += c;
+					} else if (Character.isLetter(c)) {
+						sb.append(c);
+						state = State.IN_MIDDLE_OF_WORD;
+					} else if (Character.isDigit(c)) {
+						sb.append(c);
+						state = State.IN_MIDDLE_OF_DIGIT;
+					}
+					else if (c == '.') {
+						dots = 1;
+						state = State.DOT_SEQUENCE;
+					}
+					advance();
+					break;
+				case DOT_SEQUENCE:  // dot sequence in between words
+					if(c=='.'){dots++;advance();}
+					else if (c!='.') {												
+						if (dots == 1)sentenceNumber++; // just one dot (followed by a non dot) indicates an end of a sentence, more than one dot is an ellipsis 'word'						
+						state = State.BEFORE_WORD;
+					}
+					break;
+				case IN_MIDDLE_OF_WORD:
+					if(isPunctuation(c)) {						
+						while(isPunctuation(c=peek())){advance();} // skip remaining punctuation (i.e. dots, exclamation marks, question marks) 
+						matchTokenAndGoToState(State.BEFORE_WORD);
+						sentenceNumber++;
+					}					
+					else if(isBlank(c)) {
+						matchTokenAndGoToState(State.BEFORE_WORD);
+						advance();
+					} 
+					else if(isSurroundingSymbol(c)) {
+						afterSymbol += c;
+						advance();
+					}
+					else {
+						sb.append(c);
+						advance();
+					}
+					break;
+				case IN_MIDDLE_OF_DIGIT:
+					if(Character.isDigit(c))sb.append(c);
+					else if(c=='.') {						
+						if(Character.isDigit(peekNext()) && sb.indexOf(".")==-1)sb.append(c);     // if this is the first . in number, and the next character after . is a digit, then treat is as a decimal point
+						else {state = State.IN_MIDDLE_OF_WORD; continue;}                         // otherwise process as dots in middle of word 
+					}
+					else matchTokenAndGoToState(State.BEFORE_WORD);
+					advance();
+					break;
+				}
+			}
+            
+			fnl = false;
+			return matchedToken;
+        }
+        
+        private void matchTokenAndGoToState(State nextState) {
+			matchedToken = new Token(sb.toString(), beforeSymbol, afterSymbol, sentenceNumber);
+			state = State.BEFORE_WORD;
+			fnl = true;
+			beforeSymbol = "";
+			afterSymbol = "";
+        }
+        
+        private boolean isBlank(char c) {
+			if(c=='\n' || c==' ')return true;
+			return false;
+		} 
+        
+        private boolean isSurroundingSymbol(char c) {
+			if(c=='(' || c==')' || c==';' || c==':' || c=='\'' || c=='"' || c==',')return true;
+			return false;
+		}
+        
+        public boolean isPunctuation(char c) {
+        	if(c=='.' || c=='!' || c=='?')return true;
+        	return false;
+        }
+
+		private void advance() {
+        	p++;
+        	if (p >= charsInBuffer - 1) {
+                cb[0] = cb[p];
+            	readToBuffer(1);            	
+            }
+        }
+        
+        private void readToBuffer(int offset) {
+            try {
+                int numRead = reader.read(cb, offset, cb.length-offset);
+                if (numRead != -1) {
+                    charsInBuffer = offset + numRead;                	
+                } else {
+                    cb[offset] = nil;
+                	charsInBuffer = offset+1;                	
+                }
+                p=0;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        
+        private char peek() {
+        	return cb[p];        	
+        }
+        
+        private char peekNext() {
+        	return cb[p+1];
+        }               
+
+        public void remove() {
+            throw new UnsupportedOperationException("Not supported.");
+        }
+    };
+
+    /**
+     * Lex the given string
+     * 
+     * @param code
+     */
+    public ReferenceLexer(String code) {
+        this.reader = new CharArrayReader(code.toCharArray());
+    }
+
+    /**
+     * Lex the given reader
+     * 
+     * @param reader
+     */
+    public ReferenceLexer(Reader reader) {
+        this.reader = reader;
+    }
+
+    public Iterator<Token> iterator() {
+        return this.iter;
+    }
+}
@@ -0,0 +1,118 @@
+package com.nlp;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.nlp.DocumentScheduler.Report;
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+
+/**
+ *  Compares the makespan and the worker utilization of the fixed pool of the <code>Driver</code> with the
+ *  <code>DocumentScheduler</code>, on many small generated documents and a huge one submitted last. Then
+ *  compares tagging a 2MB document in sentence ranges on the scheduler with tagging it whole, which it
+ *  shouldn't be much slower than.
+ *
+ *  Run with : java -cp target/classes:target/test-classes com.nlp.SchedulerBenchmark [documents] [huge document MB]
+ */
+
+public class SchedulerBenchmark {
+
+	public static void main(String s[]) throws Exception {
+		int count = s.length>0 ? Integer.parseInt(s[0]) : 200;
+		int hugeSize = (s.length>1 ? Integer.parseInt(s[1]) : 16) << 20;
+		int threads = Runtime.getRuntime().availableProcessors();
+
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+		List<byte[]> documents = new ArrayList<byte[]>();
+		Random random = new Random(42);
+		for(int i=0;i<count;i++)documents.add(generate(random, 16*1024 + random.nextInt(64*1024)));
+		documents.add(generate(random, hugeSize));
+
+		for(int run=0;run<3;run++) {
+			System.out.println("fixed pool : " + fixedPool(tasks(documents, tagger), threads*2));
+
+			DocumentScheduler scheduler = new DocumentScheduler(threads, DocumentScheduler.DEFAULT_SPLIT_SIZE);
+			scheduler.run(tasks(documents, tagger));
+			System.out.println("scheduler  : " + scheduler.getReport());
+		}
+		splitTagging(tagger);
+	}
+
+	/** Times tagging a 2MB document, most of whose tokens are tagged inexactly, whole and in sentence ranges */
+
+	private static void splitTagging(NamedEntitiesTagger tagger) throws Exception {
+		String data = new String(Files.readAllBytes(new File("nlp_data.txt").toPath()), "UTF-8");
+		StringBuilder sb = new StringBuilder();
+		while(sb.length()<2*1024*1024)sb.append(data).append(" Isaac Newton met Bob and Alice in Europe. ");
+		byte[] bytes = sb.toString().getBytes("UTF-8");
+
+		for(int run=0;run<3;run++) {
+			long start = System.nanoTime();
+			new Task(new ByteArrayInputStream(bytes), "doc", tagger).call();
+			long unsplit = System.nanoTime() - start;
+
+			Task task = new Task(new ByteArrayInputStream(bytes), "doc", tagger);
+			task.setSize(bytes.length);
+			start = System.nanoTime();
+			new DocumentScheduler(4, 1).run(Collections.singletonList(task));
+			long split = System.nanoTime() - start;
+			System.out.println(String.format("2MB document : unsplit %.1f ms, split %.1f ms", unsplit/1e6, split/1e6));
+		}
+	}
+
+	/** Runs the tasks as the <code>Driver</code> does, measuring the CPU time of each thread of the pool */
+
+	private static Report fixedPool(List<Task> tasks, int threads) throws Exception {
+		final List<Thread> workers = Collections.synchronizedList(new ArrayList<Thread>());
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable);
+				workers.add(thread);
+				return thread;
+			}
+		});
+
+		long start = System.nanoTime();
+		Tasks.submitTasks(executor, tasks);
+		Tasks.waitForCompletion(tasks);
+		long makespan = System.nanoTime() - start;
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		long[] workerTimes = new long[workers.size()];
+		for(int i=0;i<workerTimes.length;i++)workerTimes[i] = Math.max(0, bean.getThreadCpuTime(workers.get(i).getId()));
+		executor.shutdown();
+		return new Report(makespan, workerTimes);
+	}
+
+	private static List<Task> tasks(List<byte[]> documents, NamedEntitiesTagger tagger) {
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i=0;i<documents.size();i++) {
+			Task task = new Task(new ByteArrayInputStream(documents.get(i)), "doc" + i, tagger);
+			task.setSize(documents.get(i).length);
+			tasks.add(task);
+		}
+		return tasks;
+	}
+
+	private static byte[] generate(Random random, int size) throws Exception {
+		String[] words = { "Isaac", "Newton", "met", "Bob", "in", "the", "garden", "and", "said", "hello", "Leibniz", "of", "calculus" };
+		StringBuilder sb = new StringBuilder(size + 64);
+		while(sb.length()<size) {
+			int length = 5 + random.nextInt(15);
+			for(int w=0;w<length;w++)sb.append(w>0 ? " " : "").append(words[random.nextInt(words.length)]);
+			sb.append(". ");
+		}
+		return sb.toString().getBytes("UTF-8");
+	}
+}
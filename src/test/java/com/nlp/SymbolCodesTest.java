@@ -0,0 +1,58 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.nlp.schema.SymbolCodes;
+import com.nlp.schema.SymbolTable;
+import com.nlp.schema.Token;
+
+public class SymbolCodesTest {
+
+	@Test
+	public void testRoundTrip() {
+		String[] symbols = {"", "(", ")", "'", "\"", "()", "')", "(\"", ",;:'()\"", "))))"};
+		for(String before : symbols) {
+			for(String after : symbols) {
+				long codes = SymbolCodes.encode(before, after);
+				assertTrue(codes!=SymbolCodes.NOT_ENCODED);
+				assertEquals(before, SymbolCodes.decode(codes, false));
+				assertEquals(after, SymbolCodes.decode(codes, true));
+				assertEquals(before.length(), SymbolCodes.count(codes, false));
+				assertEquals(after.indexOf('\'')>=0, SymbolCodes.contains(codes, true, '\''));
+				assertEquals(before.indexOf('(')>=0, SymbolCodes.contains(codes, false, '('));
+			}
+		}
+		assertEquals(SymbolCodes.NONE, SymbolCodes.encode("", ""));
+	}
+
+	@Test
+	public void testNotEncodable() {
+		assertEquals(SymbolCodes.NOT_ENCODED, SymbolCodes.encode("[", ""));
+		assertEquals(SymbolCodes.NOT_ENCODED, SymbolCodes.encode("", "''''''''"));
+		assertEquals(SymbolCodes.NOT_ENCODED, SymbolCodes.encode("\u00ab", ""));
+	}
+
+	@Test
+	public void testTokenSymbols() {
+		Token encoded = new Token("Bob", "(", "')", 0);
+		assertEquals("(", encoded.getBeforeSymbol());
+		assertEquals("')", encoded.getAfterSymbol());
+		assertTrue(encoded.hasAfterSymbol('\''));
+		assertFalse(encoded.hasBeforeSymbol('\''));
+
+		Token fallback = new Token("Bob", "[", "']", 0);
+		assertEquals(SymbolCodes.NOT_ENCODED, fallback.getSymbolCodes());
+		assertEquals("[", fallback.getBeforeSymbol());
+		assertTrue(fallback.hasAfterSymbol('\''));
+		assertTrue(fallback.hasAfterSymbol(']'));
+
+		SymbolTable symbols = new SymbolTable();
+		assertEquals(encoded, new Token(symbols, symbols.intern("Bob"), SymbolCodes.encode("(", "')"), 0));
+
+		StringBuilder sb = new StringBuilder();
+		encoded.toXml(sb, "");
+		assertEquals("<word bef=\"(\" aft=\"')\">Bob</>", sb.toString());
+	}
+}
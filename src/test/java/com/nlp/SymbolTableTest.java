@@ -0,0 +1,83 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.nlp.schema.SymbolTable;
+
+public class SymbolTableTest {
+
+	@Test
+	public void testIntern() {
+		SymbolTable symbols = new SymbolTable();
+		int bob = symbols.intern("Bob");
+		
+		assertEquals(0, bob);
+		assertEquals(bob, symbols.intern(new StringBuilder("Bob")));
+		assertEquals(bob, symbols.intern("Bobs", 0, 3));
+		assertEquals(1, symbols.intern("Alice"));
+		assertEquals("Bob", symbols.get(bob));
+		assertSame(symbols.get(bob), symbols.get(symbols.intern("Bob")));
+		assertEquals(2, symbols.size());
+	}
+	
+	@Test
+	public void testLookup() {
+		SymbolTable symbols = new SymbolTable();
+		symbols.intern("Bob");
+		
+		assertEquals(0, symbols.lookup("Bob"));
+		assertEquals(-1, symbols.lookup("bob"));
+		assertEquals(-1, symbols.lookup("Alice"));
+		assertEquals(1, symbols.size());
+	}
+	
+	@Test
+	public void testFoldedId() {
+		SymbolTable symbols = new SymbolTable();
+		int upper = symbols.intern("BOB");
+		
+		assertEquals(upper, symbols.foldedId(symbols.intern("Bob")));
+		assertEquals(upper, symbols.foldedId(symbols.intern("bob")));
+		assertEquals(upper, symbols.foldedId(upper));
+		assertEquals("ALICE", symbols.get(symbols.foldedId(symbols.intern("Alice"))));
+	}
+	
+	@Test
+	public void testConcurrentInterning() throws Exception {
+		final SymbolTable symbols = new SymbolTable();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<int[]>> futures = new ArrayList<Future<int[]>>();
+		
+		for(int t=0;t<8;t++) {
+			futures.add(executor.submit(new Callable<int[]>() {
+				public int[] call() {
+					int[] ids = new int[20000];
+					for(int i=0;i<ids.length;i++)ids[i] = symbols.intern("word" + i);
+					return ids;
+				}
+			}));
+		}
+		
+		int[] expected = futures.get(0).get();
+		for(Future<int[]> future : futures)assertArrayEquals(expected, future.get());
+		executor.shutdown();
+		
+		// ids are dense
+		assertEquals(20000, symbols.size());
+		boolean[] seen = new boolean[20000];
+		for(int i=0;i<expected.length;i++) {
+			seen[expected[i]] = true;
+			assertEquals("word" + i, symbols.get(expected[i]));
+		}
+		for(boolean b : seen)assertTrue(b);
+	}
+}
@@ -0,0 +1,117 @@
+package com.nlp;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipFile;
+
+import org.junit.Test;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+import com.nlp.schema.Document;
+import com.nlp.schema.Documents;
+
+public class VirtualTaskRunnerTest {
+
+	private static String xml(Document document) {
+		StringBuilder sb = new StringBuilder();
+		document.toXml(sb, "    ");
+		return sb.toString();
+	}
+
+	@Test
+	public void testRunnerMatchesTasks() throws Exception {
+		ZipFile zipFile = new ZipFile("nlp_data.zip");
+		try {
+			NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+			List<String> expected = new ArrayList<String>();
+			for(Task task : Tasks.getTasksFromZip(zipFile, tagger))expected.add(xml(task.call()));
+
+			VirtualTaskRunner runner = new VirtualTaskRunner(2);
+			List<Task> tasks = Tasks.getTasksFromZip(zipFile, tagger);
+			runner.submitTasks(tasks);
+			Documents documents = Tasks.waitForCompletion(tasks);
+			assertTrue(runner.shutdown(10000));
+
+			List<String> actual = new ArrayList<String>();
+			for(Document document : documents.getDocuments())actual.add(xml(document));
+			assertEquals(expected, actual);
+			assertEquals(0, runner.getReading());
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void testReadsAreNotLimitedByPermits() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+		final int count = 20;
+		final CountDownLatch allReading = new CountDownLatch(count);
+
+		// each stream blocks until all the documents are being read, which a single permit doesn't prevent
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i=0;i<count;i++) {
+			final InputStream is = new ByteArrayInputStream(("Bob met Alice. Document " + i + ".").getBytes("UTF-8"));
+			tasks.add(new Task(new InputStream() {
+				boolean first = true;
+
+				public int read() throws IOException {
+					if(first) {
+						first = false;
+						allReading.countDown();
+						try {
+							if(!allReading.await(10, TimeUnit.SECONDS))throw new IOException("documents read one at a time");
+						} catch(InterruptedException e) {
+							throw new IOException(e);
+						}
+					}
+					return is.read();
+				}
+			}, "doc" + i, tagger));
+		}
+
+		VirtualTaskRunner runner = new VirtualTaskRunner(1);
+		runner.submitTasks(tasks);
+		Documents documents = Tasks.waitForCompletion(tasks);
+		assertTrue(runner.shutdown(10000));
+
+		assertEquals(count, documents.getDocuments().size());
+		assertEquals(count, runner.getMaxReading());
+		assertEquals(2, documents.getDocuments().get(0).getSentences().size());
+	}
+
+	@Test
+	public void testDocumentsInFlightAreBounded() throws Exception {
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i=0;i<50;i++) {
+			final InputStream is = new ByteArrayInputStream(("Bob met Alice. Document " + i + ".").getBytes("UTF-8"));
+			tasks.add(new Task(new InputStream() {
+				public int read() throws IOException {
+					try {
+						Thread.sleep(1);
+					} catch(InterruptedException e) {
+						throw new IOException(e);
+					}
+					return is.read();
+				}
+			}, "doc" + i, tagger));
+		}
+
+		// at most 4 documents are read or waiting to be parsed at a time
+		VirtualTaskRunner runner = new VirtualTaskRunner(1, 4);
+		runner.submitTasks(tasks);
+		Documents documents = Tasks.waitForCompletion(tasks);
+		assertTrue(runner.shutdown(10000));
+
+		assertEquals(50, documents.getDocuments().size());
+		assertTrue(runner.getMaxReading()>=1 && runner.getMaxReading()<=4);
+	}
+}
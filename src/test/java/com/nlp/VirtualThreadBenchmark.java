@@ -0,0 +1,74 @@
+package com.nlp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.nlp.Tasks.Task;
+import com.nlp.ner.NamedEntitiesTagger;
+
+/**
+ *  Compares the fixed pool of the <code>Driver</code> with the <code>VirtualTaskRunner</code> on documents read
+ *  from a slow source, each read of a buffer of which waits for a simulated latency.
+ *
+ *  Run with : java -cp target/classes:target/test-classes com.nlp.VirtualThreadBenchmark [documents] [latency ms]
+ */
+
+public class VirtualThreadBenchmark {
+
+	public static void main(String s[]) throws Exception {
+		int count = s.length>0 ? Integer.parseInt(s[0]) : 2000;
+		int latency = s.length>1 ? Integer.parseInt(s[1]) : 20;
+		int threads = Runtime.getRuntime().availableProcessors();
+		NamedEntitiesTagger tagger = new NamedEntitiesTagger("NER.txt");
+
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<200;i++)sb.append("Isaac Newton met Bob in the garden, and said \"hello\" to Leibniz. ");
+		byte[] document = sb.toString().getBytes("UTF-8");
+
+		for(int run=0;run<3;run++) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads*2);
+			List<Task> tasks = tasks(document, count, latency, tagger);
+			long start = System.nanoTime();
+			Tasks.submitTasks(executor, tasks);
+			Tasks.waitForCompletion(tasks);
+			System.out.printf("fixed pool (%d threads) : %6d ms%n", threads*2, (System.nanoTime() - start)/1000000);
+			executor.shutdown();
+
+			VirtualTaskRunner runner = new VirtualTaskRunner();
+			tasks = tasks(document, count, latency, tagger);
+			start = System.nanoTime();
+			runner.submitTasks(tasks);
+			Tasks.waitForCompletion(tasks);
+			System.out.printf("%s (%d permits) : %6d ms, up to %d documents read at a time%n", runner.isVirtual() ? "virtual threads" : "cached pool",
+					threads, (System.nanoTime() - start)/1000000, runner.getMaxReading());
+			runner.shutdown(Long.MAX_VALUE);
+		}
+	}
+
+	private static List<Task> tasks(byte[] document, int count, final int latency, NamedEntitiesTagger tagger) {
+		List<Task> tasks = new ArrayList<Task>();
+		for(int i=0;i<count;i++) {
+			final InputStream is = new ByteArrayInputStream(document);
+			tasks.add(new Task(new InputStream() {
+				public int read() throws IOException {
+					return is.read();
+				}
+
+				public int read(byte[] b, int off, int len) throws IOException {
+					try {
+						Thread.sleep(latency);
+					} catch(InterruptedException e) {
+						throw new IOException(e);
+					}
+					return is.read(b, off, Math.min(len, 8192));
+				}
+			}, "doc" + i, tagger));
+		}
+		return tasks;
+	}
+}